@@ -0,0 +1,100 @@
+package com.beetexting.workspace.benchmark;
+
+import com.beetexting.workspace.model.DocumentChange;
+
+import java.util.Random;
+
+/**
+ * Deterministic inputs shared by the benchmarks. Edit mixes are balanced so a
+ * document keeps roughly its starting size over a measurement iteration.
+ */
+public final class BenchmarkData {
+
+    private static final String[] WORDS = {
+        "meeting", "roadmap", "ticket", "release", "customer", "the", "and", "of", "to", "a",
+        "deploy", "review", "quarter", "budget", "notes", "action", "item", "owner", "risk", "team"
+    };
+
+    private BenchmarkData() {
+    }
+
+    public static String text(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(length + 16);
+        int lineLength = 0;
+        while (sb.length() < length) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            sb.append(word);
+            lineLength += word.length();
+            if (lineLength > 60 + random.nextInt(20)) {
+                sb.append('\n');
+                lineLength = 0;
+            } else {
+                sb.append(' ');
+            }
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+
+    // Relative positions keep a pre-generated edit valid whatever the current length is
+    public static EditScript edits(String mix, int count, long seed) {
+        Random random = new Random(seed);
+        EditScript script = new EditScript(count);
+        for (int i = 0; i < count; i++) {
+            script.positions[i] = random.nextDouble();
+            switch (mix) {
+                case "typing":
+                    // Keystrokes and backspaces
+                    boolean insert = random.nextBoolean();
+                    script.operations[i] = insert ? "INSERT" : "DELETE";
+                    script.lengths[i] = 1;
+                    script.texts[i] = insert ? String.valueOf((char) ('a' + random.nextInt(26))) : null;
+                    break;
+                case "mixed":
+                    int roll = random.nextInt(10);
+                    int length = 1 + random.nextInt(16);
+                    script.operations[i] = roll < 4 ? "INSERT" : roll < 8 ? "DELETE" : "REPLACE";
+                    script.lengths[i] = length;
+                    script.texts[i] = roll < 4 || roll >= 8 ? text(length, seed + i) : null;
+                    break;
+                case "paste":
+                    script.operations[i] = "REPLACE";
+                    script.lengths[i] = 1024;
+                    script.texts[i] = text(1024, seed + i);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown op mix: " + mix);
+            }
+        }
+        return script;
+    }
+
+    public static final class EditScript {
+        private final double[] positions;
+        private final String[] operations;
+        private final int[] lengths;
+        private final String[] texts;
+        private int cursor;
+
+        EditScript(int count) {
+            this.positions = new double[count];
+            this.operations = new String[count];
+            this.lengths = new int[count];
+            this.texts = new String[count];
+        }
+
+        // Fills a reusable change with the next edit, clamped to the current content length
+        public DocumentChange next(DocumentChange change, int contentLength) {
+            int i = cursor;
+            cursor = (cursor + 1) % positions.length;
+            int start = (int) (positions[i] * contentLength);
+            int end = Math.min(start + lengths[i], contentLength);
+            change.setOperation(operations[i]);
+            change.setStartPosition(start);
+            change.setEndPosition("INSERT".equals(operations[i]) ? start : end);
+            change.setText(texts[i]);
+            return change;
+        }
+    }
+}
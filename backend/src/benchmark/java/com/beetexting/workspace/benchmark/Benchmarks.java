@@ -0,0 +1,19 @@
+package com.beetexting.workspace.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    // Same settings Spring Boot applies to the application's ObjectMapper
+    public static ObjectMapper objectMapper() {
+        return JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.beetexting.workspace.benchmark;
+
+import com.beetexting.workspace.storage.BlobStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Keeps blob I/O out of CPU-focused measurements
+public class InMemoryBlobStore implements BlobStore {
+
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+
+    @Override
+    public String put(byte[] data) {
+        String key = BlobStore.keyFor(data);
+        blobs.putIfAbsent(key, data);
+        return key;
+    }
+
+    @Override
+    public InputStream open(String key) {
+        byte[] data = blobs.get(key);
+        if (data == null) {
+            throw new IllegalArgumentException("Blob not found: " + key);
+        }
+        return new ByteArrayInputStream(data);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return blobs.containsKey(key);
+    }
+
+    @Override
+    public void delete(String key) {
+        blobs.remove(key);
+    }
+
+    public int size() {
+        return blobs.size();
+    }
+}
@@ -0,0 +1,179 @@
+package com.beetexting.workspace.benchmark;
+
+import com.beetexting.workspace.model.Note;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic notes spread over several tenants, and queries that
+ * match them. Words, tags and tenant sizes follow Zipf distributions, so a few
+ * terms, tags and tenants dominate the way they do in real workspaces, and
+ * note lengths are log-normal around the configured mean. The same seed
+ * always yields the same corpus, so runs of different strategies compare.
+ */
+public final class SearchCorpus {
+
+    private static final String CONSONANTS = "bcdfghklmnprstv";
+    private static final String VOWELS = "aeiou";
+    private static final int SYLLABLES = CONSONANTS.length() * VOWELS.length();
+    // Ranks this common are the corpus' stop words; queries skip them
+    private static final int COMMON_WORDS = 50;
+    private static final int AUTHORS_PER_TENANT = 20;
+    private static final Duration HISTORY = Duration.ofDays(365);
+
+    private final int tenants;
+    private final int notes;
+    private final int meanWords;
+    private final double lengthSpread;
+    private final int tagsPerNote;
+    private final long seed;
+    private final Instant now = Instant.now();
+    private final String[] vocabulary;
+    private final Zipf words;
+    private final Zipf tags;
+    private final Zipf tenantSizes;
+
+    public SearchCorpus(int tenants, int notes, int vocabulary, double wordSkew, int tags, double tagSkew,
+                        int tagsPerNote, double tenantSkew, int meanWords, double lengthSpread, long seed) {
+        this.tenants = tenants;
+        this.notes = notes;
+        this.meanWords = meanWords;
+        this.lengthSpread = lengthSpread;
+        this.tagsPerNote = tagsPerNote;
+        this.seed = seed;
+        this.vocabulary = new String[vocabulary];
+        for (int rank = 0; rank < vocabulary; rank++) {
+            this.vocabulary[rank] = word(rank);
+        }
+        this.words = new Zipf(vocabulary, wordSkew);
+        this.tags = new Zipf(tags, tagSkew);
+        this.tenantSizes = new Zipf(tenants, tenantSkew);
+    }
+
+    public int notes() {
+        return notes;
+    }
+
+    public List<String> tenantIds() {
+        List<String> ids = new ArrayList<>(tenants);
+        for (int t = 0; t < tenants; t++) {
+            ids.add(tenantId(t));
+        }
+        return ids;
+    }
+
+    // The i-th note, identical on every call; ids are left to MongoDB
+    public Note note(int i) {
+        Random random = new Random(seed * 31 + i);
+        Note note = new Note();
+        note.setTenantId(tenantId(tenantSizes.sample(random)));
+        note.setTitle(sentence(random, 3 + random.nextInt(6)));
+        double length = meanWords * Math.exp(lengthSpread * random.nextGaussian() - lengthSpread * lengthSpread / 2);
+        String content = sentence(random, Math.max(1, (int) length));
+        note.setContent(content);
+        note.setContentLength(content.length());
+        for (int t = 0; t < tagsPerNote; t++) {
+            note.getTags().add(tag(tags.sample(random)));
+        }
+        note.setCreatedBy(note.getTenantId() + "-user-" + random.nextInt(AUTHORS_PER_TENANT));
+        note.setLastModifiedBy(note.getCreatedBy());
+        Instant updatedAt = now.minusSeconds((long) (random.nextDouble() * HISTORY.toSeconds()));
+        note.setCreatedAt(updatedAt.minusSeconds(random.nextInt(86_400)));
+        note.setUpdatedAt(updatedAt);
+        note.setVersion(0L);
+        return note;
+    }
+
+    public String tenant(Random random) {
+        return tenantId(tenantSizes.sample(random));
+    }
+
+    // One or two terms, weighted like the corpus but past the stop words
+    public String textQuery(Random random) {
+        return random.nextInt(3) == 0 ? queryWord(random) + " " + queryWord(random) : queryWord(random);
+    }
+
+    // A run of letters inside a longer word, as typed into a find box
+    public String fragment(Random random) {
+        String word;
+        do {
+            word = queryWord(random);
+        } while (word.length() < 6);
+        int length = 4 + random.nextInt(Math.min(word.length(), 8) - 3);
+        int start = random.nextInt(word.length() - length + 1);
+        return word.substring(start, start + length);
+    }
+
+    public String tag(Random random) {
+        return tag(tags.sample(random));
+    }
+
+    // A short passage, as pasted into a "notes like this" box
+    public String passage(Random random) {
+        return sentence(random, 8 + random.nextInt(16));
+    }
+
+    private String queryWord(Random random) {
+        int rank;
+        do {
+            rank = words.sample(random);
+        } while (rank < COMMON_WORDS && vocabulary.length > COMMON_WORDS);
+        return vocabulary[rank];
+    }
+
+    private String sentence(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length * 8);
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                sb.append(random.nextInt(12) == 0 ? ". " : " ");
+            }
+            sb.append(vocabulary[words.sample(random)]);
+        }
+        return sb.toString();
+    }
+
+    private static String tenantId(int index) {
+        return "bench-" + index;
+    }
+
+    private static String tag(int rank) {
+        return "tag" + rank;
+    }
+
+    // Consonant-vowel syllables parse only one way, so distinct ranks give distinct words
+    private static String word(int rank) {
+        StringBuilder sb = new StringBuilder();
+        int value = rank + SYLLABLES;
+        while (value > 0) {
+            int syllable = value % SYLLABLES;
+            sb.append(CONSONANTS.charAt(syllable / VOWELS.length())).append(VOWELS.charAt(syllable % VOWELS.length()));
+            value /= SYLLABLES;
+        }
+        return sb.toString();
+    }
+
+    // Samples ranks 0..n-1 with probability proportional to 1 / (rank + 1)^skew
+    private static final class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n, double skew) {
+            cumulative = new double[n];
+            double total = 0;
+            for (int rank = 0; rank < n; rank++) {
+                total += 1 / Math.pow(rank + 1, skew);
+                cumulative[rank] = total;
+            }
+        }
+
+        int sample(Random random) {
+            double target = random.nextDouble() * cumulative[cumulative.length - 1];
+            int index = Arrays.binarySearch(cumulative, target);
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.beetexting.workspace.loadtest;
+
+import com.beetexting.workspace.WorkspaceApplication;
+import com.beetexting.workspace.benchmark.BenchmarkData;
+import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.model.User;
+import com.beetexting.workspace.repository.NoteRepository;
+import com.beetexting.workspace.repository.UserRepository;
+import com.beetexting.workspace.security.JwtTokenProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.commands.MongodArguments;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.config.Storage;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import de.flapdoodle.reverse.transitions.Start;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the application against an embedded single-node replica set and an
+ * in-process Redis stand-in, then drives it with simulated editors over STOMP.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec \
+ *     -Dbenchmark.main=com.beetexting.workspace.loadtest.CollaborationLoadTest \
+ *     -Dbenchmark.args="--clients 200 --documents 20 --duration 60"
+ * </pre>
+ */
+public class CollaborationLoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(CollaborationLoadTest.class);
+    private static final String TENANT_ID = "loadtest";
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Path blobDir = Files.createTempDirectory("loadtest-blobs");
+
+        try (TransitionWalker.ReachedState<RunningMongodProcess> mongod = startReplicaSet();
+             LocalRedisServer redis = new LocalRedisServer()) {
+            ServerAddress address = mongod.current().getServerAddress();
+            String mongoUri = "mongodb://" + address.getHost() + ":" + address.getPort()
+                + "/workspace?directConnection=true";
+
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(WorkspaceApplication.class)
+                .properties(applicationProperties(mongoUri, redis.getPort(), blobDir))
+                .run();
+            try {
+                run(context, options);
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    // Transactions in DocumentService.applyChange need a replica set, so start a single-member one
+    private static TransitionWalker.ReachedState<RunningMongodProcess> startReplicaSet() {
+        TransitionWalker.ReachedState<RunningMongodProcess> mongod = Mongod.instance()
+            .withMongodArguments(Start.to(MongodArguments.class)
+                .initializedWith(MongodArguments.defaults().withReplication(Storage.of("rs0", 0))))
+            .start(Version.Main.V6_0);
+
+        ServerAddress address = mongod.current().getServerAddress();
+        try (MongoClient client = MongoClients.create(
+                "mongodb://" + address.getHost() + ":" + address.getPort() + "/?directConnection=true")) {
+            Document member = new Document("_id", 0).append("host", address.getHost() + ":" + address.getPort());
+            client.getDatabase("admin").runCommand(new Document("replSetInitiate",
+                new Document("_id", "rs0").append("members", List.of(member))));
+            waitForPrimary(client);
+        }
+        return mongod;
+    }
+
+    private static void waitForPrimary(MongoClient client) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            Document hello = client.getDatabase("admin").runCommand(new Document("hello", 1));
+            if (Boolean.TRUE.equals(hello.getBoolean("isWritablePrimary"))) {
+                return;
+            }
+            sleep(100);
+        }
+        throw new IllegalStateException("Embedded replica set did not elect a primary");
+    }
+
+    static Map<String, Object> applicationProperties(String mongoUri, int redisPort, Path blobDir) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.data.mongodb.uri", mongoUri);
+        properties.put("MONGODB_URI", mongoUri);
+        properties.put("spring.redis.host", "localhost");
+        properties.put("spring.redis.port", String.valueOf(redisPort));
+        properties.put("app.storage.type", "local");
+        properties.put("app.storage.local-path", blobDir.toString());
+        properties.put("logging.level.com.beetexting.workspace", "INFO");
+        properties.put("logging.file.name", "");
+        // Placeholders in application.yml that have no defaults
+        for (String placeholder : List.of("GOOGLE_CLIENT_ID", "GOOGLE_CLIENT_SECRET", "GITHUB_CLIENT_ID",
+                "GITHUB_CLIENT_SECRET", "AWS_ACCESS_KEY", "AWS_SECRET_KEY", "SES_FROM_EMAIL", "PROD_FRONTEND_URL")) {
+            properties.put(placeholder, "loadtest");
+        }
+        return properties;
+    }
+
+    private static void run(ConfigurableApplicationContext context, Options options) throws Exception {
+        int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        String contextPath = context.getEnvironment().getProperty("server.servlet.context-path", "");
+        String url = "ws://localhost:" + port + contextPath + "/ws/websocket";
+
+        List<Note> documents = seedDocuments(context.getBean(NoteRepository.class), options);
+        List<User> users = seedUsers(context.getBean(UserRepository.class), options);
+        JwtTokenProvider tokenProvider = context.getBean(JwtTokenProvider.class);
+
+        ThreadPoolTaskScheduler heartbeatScheduler = new ThreadPoolTaskScheduler();
+        heartbeatScheduler.setPoolSize(2);
+        heartbeatScheduler.initialize();
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(context.getBean(ObjectMapper.class));
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(converter);
+        stompClient.setTaskScheduler(heartbeatScheduler);
+
+        LoadTestMetrics metrics = new LoadTestMetrics();
+        List<SimulatedClient> clients = new ArrayList<>(options.clients);
+        List<StompSession> sessions = new ArrayList<>(options.clients);
+        for (int i = 0; i < options.clients; i++) {
+            Note document = documents.get(i % documents.size());
+            SimulatedClient client = new SimulatedClient(i, document.getId(),
+                document.getVersion().intValue(), document.getContentLength(), metrics);
+
+            WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+            headers.setBearerAuth(tokenProvider.generateToken(users.get(i)));
+            StompSession session = stompClient
+                .connectAsync(url, headers, new StompHeaders(), new StompSessionHandlerAdapter() { })
+                .get(10, TimeUnit.SECONDS);
+            client.attach(session);
+            clients.add(client);
+            sessions.add(session);
+        }
+        logger.info("Connected {} clients across {} documents", clients.size(), documents.size());
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(options.threads);
+        for (SimulatedClient client : clients) {
+            client.heartbeat(true);
+            schedule(scheduler, client::type, options.keystrokesPerSecond);
+            schedule(scheduler, client::moveCursor, options.cursorMovesPerSecond);
+            schedule(scheduler, () -> client.heartbeat(true), 1.0 / options.presenceIntervalSeconds);
+        }
+
+        logger.info("Warming up for {}s", options.warmupSeconds);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmupSeconds));
+        metrics.reset();
+        long start = System.nanoTime();
+        logger.info("Measuring for {}s", options.durationSeconds);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(options.durationSeconds));
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        // Let in-flight acks land before reporting
+        sleep(1000);
+        System.out.printf("%nclients=%d documents=%d keystrokes/s/client=%.1f duration=%.1fs%n",
+            options.clients, documents.size(), options.keystrokesPerSecond, elapsed);
+        metrics.report(System.out, elapsed);
+
+        sessions.forEach(StompSession::disconnect);
+        stompClient.stop();
+        heartbeatScheduler.shutdown();
+    }
+
+    private static void schedule(ScheduledExecutorService scheduler, Runnable task, double perSecond) {
+        if (perSecond <= 0) {
+            return;
+        }
+        long periodMicros = (long) (1_000_000 / perSecond);
+        long initialDelay = ThreadLocalRandom.current().nextLong(periodMicros);
+        scheduler.scheduleAtFixedRate(task, initialDelay, periodMicros, TimeUnit.MICROSECONDS);
+    }
+
+    private static List<Note> seedDocuments(NoteRepository noteRepository, Options options) {
+        List<Note> documents = new ArrayList<>(options.documents);
+        for (int i = 0; i < options.documents; i++) {
+            Note note = new Note();
+            note.setTenantId(TENANT_ID);
+            note.setTitle("Load test document " + i);
+            note.setContent(BenchmarkData.text(options.documentSize, i));
+            note.getTags().add("loadtest");
+            documents.add(noteRepository.save(note));
+        }
+        return documents;
+    }
+
+    private static List<User> seedUsers(UserRepository userRepository, Options options) {
+        List<User> users = new ArrayList<>(options.clients);
+        for (int i = 0; i < options.clients; i++) {
+            User user = new User();
+            user.setId("loadtest-user-" + i);
+            user.setEmail("user" + i + "@loadtest.local");
+            user.setName("Load Test User " + i);
+            user.setTenantId(TENANT_ID);
+            user.setProvider(User.AuthProvider.GITHUB);
+            user.setProviderId("loadtest-" + i);
+            user.addRole("USER");
+            users.add(userRepository.save(user));
+        }
+        return users;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static class Options {
+        int clients = 100;
+        int documents = 10;
+        int documentSize = 16 * 1024;
+        double keystrokesPerSecond = 5;
+        double cursorMovesPerSecond = 2;
+        double presenceIntervalSeconds = 10;
+        int warmupSeconds = 10;
+        int durationSeconds = 60;
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--clients": options.clients = Integer.parseInt(value); break;
+                    case "--documents": options.documents = Integer.parseInt(value); break;
+                    case "--document-size": options.documentSize = Integer.parseInt(value); break;
+                    case "--keystrokes": options.keystrokesPerSecond = Double.parseDouble(value); break;
+                    case "--cursor-moves": options.cursorMovesPerSecond = Double.parseDouble(value); break;
+                    case "--presence-interval": options.presenceIntervalSeconds = Double.parseDouble(value); break;
+                    case "--warmup": options.warmupSeconds = Integer.parseInt(value); break;
+                    case "--duration": options.durationSeconds = Integer.parseInt(value); break;
+                    case "--threads": options.threads = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (options.documents > options.clients) {
+                options.documents = options.clients;
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.beetexting.workspace.loadtest;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.LongAdder;
+
+class LoadTestMetrics {
+    final LatencyRecorder ackLatency = new LatencyRecorder();
+    final LatencyRecorder broadcastLatency = new LatencyRecorder();
+    final LongAdder editsSent = new LongAdder();
+    final LongAdder editsAcked = new LongAdder();
+    final LongAdder editsRejected = new LongAdder();
+    final LongAdder broadcastsReceived = new LongAdder();
+    final LongAdder cursorsSent = new LongAdder();
+    final LongAdder cursorsReceived = new LongAdder();
+    final LongAdder presenceSent = new LongAdder();
+    final LongAdder presenceReceived = new LongAdder();
+    final LongAdder sendFailures = new LongAdder();
+
+    void reset() {
+        ackLatency.reset();
+        broadcastLatency.reset();
+        for (LongAdder counter : new LongAdder[] {editsSent, editsAcked, editsRejected, broadcastsReceived,
+                cursorsSent, cursorsReceived, presenceSent, presenceReceived, sendFailures}) {
+            counter.reset();
+        }
+    }
+
+    void report(PrintStream out, double seconds) {
+        out.println();
+        out.printf("%-22s %10s %10s %10s %10s %10s%n", "latency (ms)", "samples", "p50", "p99", "p999", "max");
+        row(out, "edit ack", ackLatency.snapshot());
+        row(out, "edit broadcast", broadcastLatency.snapshot());
+        out.println();
+        out.printf("%-22s %12s %12s%n", "throughput", "total", "per second");
+        rate(out, "edits sent", editsSent.sum(), seconds);
+        rate(out, "edits acked", editsAcked.sum(), seconds);
+        rate(out, "edits rejected", editsRejected.sum(), seconds);
+        rate(out, "broadcasts received", broadcastsReceived.sum(), seconds);
+        rate(out, "cursors sent", cursorsSent.sum(), seconds);
+        rate(out, "cursors received", cursorsReceived.sum(), seconds);
+        rate(out, "presence sent", presenceSent.sum(), seconds);
+        rate(out, "presence received", presenceReceived.sum(), seconds);
+        rate(out, "send failures", sendFailures.sum(), seconds);
+    }
+
+    private static void row(PrintStream out, String name, LatencyRecorder.Snapshot snapshot) {
+        out.printf("%-22s %10d %10.2f %10.2f %10.2f %10.2f%n", name, snapshot.count(),
+            snapshot.percentileMillis(50), snapshot.percentileMillis(99), snapshot.percentileMillis(99.9),
+            snapshot.maxMillis());
+    }
+
+    private static void rate(PrintStream out, String name, long total, double seconds) {
+        out.printf("%-22s %12d %12.1f%n", name, total, total / seconds);
+    }
+}
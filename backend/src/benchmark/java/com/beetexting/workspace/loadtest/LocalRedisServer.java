@@ -0,0 +1,298 @@
+package com.beetexting.workspace.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-in for Redis speaking RESP2, covering the string and hash
+ * commands the application issues. Keys and fields are held as ISO-8859-1
+ * strings so arbitrary bytes round-trip unchanged.
+ */
+public class LocalRedisServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LocalRedisServer.class);
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "local-redis");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Object> data = new ConcurrentHashMap<>();
+    private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    public LocalRedisServer() throws IOException {
+        this.serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        connections.submit(this::acceptLoop);
+        logger.info("Local Redis stand-in listening on port {}", getPort());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.submit(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+            while (running) {
+                List<String> command = readCommand(in);
+                execute(command, out);
+                // Lettuce pipelines; only flush once the client has nothing more buffered
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException e) {
+            // Client closed the connection
+        } catch (IOException e) {
+            if (running) {
+                logger.debug("Connection closed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private List<String> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            throw new EOFException();
+        }
+        if (type != '*') {
+            throw new IOException("Expected array, got '" + (char) type + "'");
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<String> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected bulk string");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length < length) {
+                throw new EOFException();
+            }
+            in.read();
+            in.read();
+            args.add(new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+        return args;
+    }
+
+    private String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c == -1) {
+                throw new EOFException();
+            }
+            sb.append((char) c);
+        }
+        in.read();
+        return sb.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void execute(List<String> command, OutputStream out) throws IOException {
+        String name = command.get(0).toUpperCase(Locale.ROOT);
+        switch (name) {
+            case "PING":
+                simple(out, "PONG");
+                break;
+            case "SELECT":
+            case "CLIENT":
+            case "AUTH":
+                simple(out, "OK");
+                break;
+            case "SET":
+                data.put(command.get(1), command.get(2));
+                expiries.remove(command.get(1));
+                simple(out, "OK");
+                break;
+            case "GET": {
+                Object value = live(command.get(1));
+                bulk(out, value instanceof String ? (String) value : null);
+                break;
+            }
+            case "DEL": {
+                int removed = 0;
+                for (String key : command.subList(1, command.size())) {
+                    if (data.remove(key) != null) {
+                        removed++;
+                    }
+                    expiries.remove(key);
+                }
+                integer(out, removed);
+                break;
+            }
+            case "EXISTS":
+                integer(out, live(command.get(1)) != null ? 1 : 0);
+                break;
+            case "EXPIRE":
+            case "PEXPIRE": {
+                long amount = Long.parseLong(command.get(2));
+                long millis = "EXPIRE".equals(name) ? amount * 1000 : amount;
+                if (live(command.get(1)) != null) {
+                    expiries.put(command.get(1), System.currentTimeMillis() + millis);
+                    integer(out, 1);
+                } else {
+                    integer(out, 0);
+                }
+                break;
+            }
+            case "HSET": {
+                Map<String, String> hash = (Map<String, String>) data.computeIfAbsent(command.get(1),
+                    k -> new LinkedHashMap<String, String>());
+                int added = 0;
+                synchronized (hash) {
+                    for (int i = 2; i + 1 < command.size(); i += 2) {
+                        if (hash.put(command.get(i), command.get(i + 1)) == null) {
+                            added++;
+                        }
+                    }
+                }
+                integer(out, added);
+                break;
+            }
+            case "HGET": {
+                Map<String, String> hash = (Map<String, String>) live(command.get(1));
+                String value = null;
+                if (hash != null) {
+                    synchronized (hash) {
+                        value = hash.get(command.get(2));
+                    }
+                }
+                bulk(out, value);
+                break;
+            }
+            case "HDEL": {
+                Map<String, String> hash = (Map<String, String>) live(command.get(1));
+                int removed = 0;
+                if (hash != null) {
+                    synchronized (hash) {
+                        for (String field : command.subList(2, command.size())) {
+                            if (hash.remove(field) != null) {
+                                removed++;
+                            }
+                        }
+                    }
+                }
+                integer(out, removed);
+                break;
+            }
+            case "HVALS":
+            case "HKEYS":
+            case "HGETALL": {
+                Map<String, String> hash = (Map<String, String>) live(command.get(1));
+                List<String> items = new ArrayList<>();
+                if (hash != null) {
+                    synchronized (hash) {
+                        for (Map.Entry<String, String> entry : hash.entrySet()) {
+                            if (!"HVALS".equals(name)) {
+                                items.add(entry.getKey());
+                            }
+                            if (!"HKEYS".equals(name)) {
+                                items.add(entry.getValue());
+                            }
+                        }
+                    }
+                }
+                array(out, items);
+                break;
+            }
+            case "HLEN": {
+                Map<String, String> hash = (Map<String, String>) live(command.get(1));
+                int size = 0;
+                if (hash != null) {
+                    synchronized (hash) {
+                        size = hash.size();
+                    }
+                }
+                integer(out, size);
+                break;
+            }
+            default:
+                // Includes HELLO, which makes Lettuce fall back to RESP2
+                error(out, "ERR unknown command '" + command.get(0) + "'");
+        }
+    }
+
+    private Object live(String key) {
+        Long expiry = expiries.get(key);
+        if (expiry != null && expiry < System.currentTimeMillis()) {
+            data.remove(key);
+            expiries.remove(key);
+            return null;
+        }
+        return data.get(key);
+    }
+
+    private static void simple(OutputStream out, String value) throws IOException {
+        out.write(("+" + value + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void error(OutputStream out, String message) throws IOException {
+        out.write(("-" + message + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void integer(OutputStream out, long value) throws IOException {
+        out.write((":" + value + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void bulk(OutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.ISO_8859_1));
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.write(bytes);
+        out.write("\r\n".getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void array(OutputStream out, List<String> items) throws IOException {
+        out.write(("*" + items.size() + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        for (String item : items) {
+            bulk(out, item);
+        }
+    }
+}
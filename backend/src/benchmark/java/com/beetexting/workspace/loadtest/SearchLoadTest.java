@@ -0,0 +1,388 @@
+package com.beetexting.workspace.loadtest;
+
+import com.beetexting.workspace.WorkspaceApplication;
+import com.beetexting.workspace.benchmark.SearchCorpus;
+import com.beetexting.workspace.repository.NoteRepository;
+import com.beetexting.workspace.search.NoteQuery;
+import com.beetexting.workspace.search.SearchIndexService;
+import com.beetexting.workspace.search.SemanticIndexService;
+import com.beetexting.workspace.search.SimilarityIndexService;
+import com.beetexting.workspace.service.SearchService;
+import com.mongodb.client.MongoCollection;
+import de.flapdoodle.embed.mongo.commands.ServerAddress;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Loads a synthetic multi-tenant corpus into an embedded MongoDB, builds the
+ * application's in-process indexes over it, then runs a weighted mix of
+ * search strategies from several threads and reports per-strategy latency
+ * percentiles and throughput, alongside build times and on-disk sizes.
+ * Strategies go through the same services the endpoints use, with the
+ * response cache off so every query does the work.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec \
+ *     -Dbenchmark.main=com.beetexting.workspace.loadtest.SearchLoadTest \
+ *     -Dbenchmark.args="--tenants 10 --notes 100000 --mix index=4,mongo-text=2,regex=1,substring=1"
+ * </pre>
+ */
+public class SearchLoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(SearchLoadTest.class);
+    private static final Pageable PAGE = PageRequest.of(0, 20);
+    private static final Pageable NEWEST_PAGE = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "updatedAt"));
+    private static final int INSERT_BATCH = 1000;
+    private static final int SAMPLED_IDS_PER_TENANT = 1000;
+    private static final long BUILD_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Path dataDir = Files.createTempDirectory("search-loadtest");
+
+        try (TransitionWalker.ReachedState<RunningMongodProcess> mongod = Mongod.instance().start(Version.Main.V6_0);
+             LocalRedisServer redis = new LocalRedisServer()) {
+            ServerAddress address = mongod.current().getServerAddress();
+            String mongoUri = "mongodb://" + address.getHost() + ":" + address.getPort()
+                + "/workspace?directConnection=true";
+
+            Map<String, Object> properties = CollaborationLoadTest.applicationProperties(
+                mongoUri, redis.getPort(), dataDir.resolve("blobs"));
+            properties.put("app.search.index-path", dataDir.resolve("search-index").toString());
+            properties.put("app.semantic.index-path", dataDir.resolve("semantic-index").toString());
+            properties.put("app.search.cache-max-entries", String.valueOf(options.cache ? 1000 : 0));
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(WorkspaceApplication.class)
+                .properties(properties)
+                .run();
+            try {
+                run(context, options, dataDir);
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private static void run(ConfigurableApplicationContext context, Options options, Path dataDir) throws Exception {
+        SearchCorpus corpus = new SearchCorpus(options.tenants, options.notes, options.vocabulary, options.wordSkew,
+            options.tags, options.tagSkew, options.tagsPerNote, options.tenantSkew, options.words,
+            options.lengthSpread, options.seed);
+        MongoTemplate mongoTemplate = context.getBean(MongoTemplate.class);
+        Map<String, String> builds = new LinkedHashMap<>();
+
+        long start = System.nanoTime();
+        Map<String, List<String>> noteIds = load(mongoTemplate, corpus);
+        builds.put("mongodb load", String.format("%.1fs (%.0f notes/s)",
+            seconds(start), corpus.notes() / seconds(start)));
+
+        // Indexes build per tenant on first use, so touch every tenant once and time it
+        SearchIndexService searchIndex = context.getBean(SearchIndexService.class);
+        start = System.nanoTime();
+        for (String tenantId : corpus.tenantIds()) {
+            searchIndex.search(tenantId, new NoteQuery("warmup"), 0, 1);
+        }
+        builds.put("search index", String.format("%.1fs", seconds(start)));
+
+        // The other indexes are only built when the mix queries them
+        if (options.mix.containsKey("similar")) {
+            SimilarityIndexService similarity = context.getBean(SimilarityIndexService.class);
+            start = System.nanoTime();
+            for (Map.Entry<String, List<String>> tenant : noteIds.entrySet()) {
+                similarity.similar(tenant.getKey(), tenant.getValue().get(0), 1);
+            }
+            builds.put("similarity index", String.format("%.1fs", seconds(start)));
+        }
+        if (options.mix.containsKey("semantic")) {
+            SemanticIndexService semantic = context.getBean(SemanticIndexService.class);
+            start = System.nanoTime();
+            builds.put("semantic index", awaitSemantic(semantic, corpus.tenantIds())
+                ? String.format("%.1fs", seconds(start))
+                : "not ready after " + TimeUnit.MILLISECONDS.toMinutes(BUILD_TIMEOUT_MILLIS) + " min");
+        }
+
+        Map<String, Strategy> strategies = strategies(context, corpus, noteIds, options.mix);
+        Map<String, LatencyRecorder> latencies = new LinkedHashMap<>();
+        Map<String, LongAdder> errors = new HashMap<>();
+        strategies.keySet().forEach(name -> {
+            latencies.put(name, new LatencyRecorder());
+            errors.put(name, new LongAdder());
+        });
+
+        logger.info("Warming up for {}s", options.warmupSeconds);
+        drive(corpus, strategies, latencies, errors, options, options.warmupSeconds);
+        latencies.values().forEach(LatencyRecorder::reset);
+        errors.values().forEach(LongAdder::reset);
+        logger.info("Measuring for {}s on {} threads", options.durationSeconds, options.threads);
+        double elapsed = drive(corpus, strategies, latencies, errors, options, options.durationSeconds);
+
+        PrintStream out = System.out;
+        out.printf("%ntenants=%d notes=%d words/note=%d tags=%d threads=%d duration=%.1fs cache=%s%n",
+            options.tenants, options.notes, options.words, options.tags, options.threads, elapsed, options.cache);
+        out.println();
+        out.printf("%-18s %10s %10s %10s %10s %10s %10s %8s%n",
+            "latency (ms)", "samples", "p50", "p90", "p99", "max", "per second", "errors");
+        for (Map.Entry<String, LatencyRecorder> entry : latencies.entrySet()) {
+            LatencyRecorder.Snapshot snapshot = entry.getValue().snapshot();
+            out.printf("%-18s %10d %10.2f %10.2f %10.2f %10.2f %10.1f %8d%n", entry.getKey(), snapshot.count(),
+                snapshot.percentileMillis(50), snapshot.percentileMillis(90), snapshot.percentileMillis(99),
+                snapshot.maxMillis(), snapshot.count() / elapsed, errors.get(entry.getKey()).sum());
+        }
+        out.println();
+        out.printf("%-18s %s%n", "build", "time");
+        builds.forEach((name, time) -> out.printf("%-18s %s%n", name, time));
+        out.println();
+        out.printf("%-18s %12s%n", "size", "MB");
+        Document stats = mongoTemplate.executeCommand(new Document("collStats", "notes"));
+        out.printf("%-18s %12.1f%n", "mongodb data", megabytes(stats.get("size")));
+        out.printf("%-18s %12.1f%n", "mongodb storage", megabytes(stats.get("storageSize")));
+        Document indexSizes = stats.get("indexSizes", Document.class);
+        for (String index : indexSizes.keySet()) {
+            out.printf("%-18s %12.1f%n", "  " + index, megabytes(indexSizes.get(index)));
+        }
+        out.printf("%-18s %12.1f%n", "search index", directorySize(dataDir.resolve("search-index")) / 1e6);
+        out.printf("%-18s %12.1f%n", "semantic index", directorySize(dataDir.resolve("semantic-index")) / 1e6);
+    }
+
+    /**
+     * Inserts straight into the collection, as a restored dataset would
+     * arrive, so save listeners stay out of the load time and each index
+     * builds from MongoDB the way it does for an existing tenant.
+     */
+    private static Map<String, List<String>> load(MongoTemplate mongoTemplate, SearchCorpus corpus) {
+        MongoCollection<Document> collection = mongoTemplate.getCollection("notes");
+        Map<String, List<String>> noteIds = new LinkedHashMap<>();
+        List<Document> batch = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < corpus.notes(); i++) {
+            Document document = new Document();
+            mongoTemplate.getConverter().write(corpus.note(i), document);
+            batch.add(document);
+            if (batch.size() == INSERT_BATCH || i == corpus.notes() - 1) {
+                collection.insertMany(batch);
+                for (Document inserted : batch) {
+                    List<String> ids = noteIds.computeIfAbsent(inserted.getString("tenantId"), t -> new ArrayList<>());
+                    if (ids.size() < SAMPLED_IDS_PER_TENANT) {
+                        ids.add(inserted.getObjectId("_id").toHexString());
+                    }
+                }
+                batch.clear();
+            }
+            if ((i + 1) % 100_000 == 0) {
+                logger.info("Loaded {} of {} notes", i + 1, corpus.notes());
+            }
+        }
+        return noteIds;
+    }
+
+    private static boolean awaitSemantic(SemanticIndexService semantic, List<String> tenantIds) {
+        long deadline = System.currentTimeMillis() + BUILD_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            // Every call also starts the build of a tenant not yet opened
+            if (tenantIds.stream().allMatch(semantic::isReady)) {
+                return true;
+            }
+            sleep(100);
+        }
+        return false;
+    }
+
+    private interface Strategy {
+        void run(String tenantId, Random random);
+    }
+
+    private static Map<String, Strategy> strategies(ConfigurableApplicationContext context, SearchCorpus corpus,
+                                                    Map<String, List<String>> noteIds, Map<String, Integer> mix) {
+        SearchService searchService = context.getBean(SearchService.class);
+        NoteRepository noteRepository = context.getBean(NoteRepository.class);
+        Map<String, Strategy> available = new LinkedHashMap<>();
+        // Ranked BM25 in the local index
+        available.put("index", (tenantId, random) ->
+            searchService.searchNotesSlice(tenantId, new NoteQuery(corpus.textQuery(random)), PAGE));
+        // The MongoDB $text index, with the count the repository query pages with
+        available.put("mongo-text", (tenantId, random) ->
+            noteRepository.searchByTenantIdAndContent(tenantId, corpus.textQuery(random), PAGE));
+        // Trigram candidates verified in MongoDB
+        available.put("substring", (tenantId, random) ->
+            searchService.searchNotesSlice(tenantId, substring(corpus.fragment(random)), PAGE));
+        // A sorted listing sends the same fragment to a MongoDB regex over the tenant
+        available.put("regex", (tenantId, random) ->
+            searchService.searchNotesSlice(tenantId, substring(corpus.fragment(random)), NEWEST_PAGE));
+        available.put("tags", (tenantId, random) ->
+            searchService.searchNotesSlice(tenantId, tag(corpus.tag(random)), PAGE));
+        // The same filter from the tenant_tags index, newest first
+        available.put("tags-mongo", (tenantId, random) ->
+            searchService.searchNotesSlice(tenantId, tag(corpus.tag(random)), NEWEST_PAGE));
+        available.put("semantic", (tenantId, random) ->
+            searchService.semanticSearch(tenantId, corpus.passage(random), 10));
+        available.put("similar", (tenantId, random) -> {
+            List<String> ids = noteIds.get(tenantId);
+            if (ids == null) {
+                return;
+            }
+            searchService.findSimilarNotes(tenantId, ids.get(random.nextInt(ids.size())), 10);
+        });
+
+        Map<String, Strategy> selected = new LinkedHashMap<>();
+        for (String name : mix.keySet()) {
+            Strategy strategy = available.get(name);
+            if (strategy == null) {
+                throw new IllegalArgumentException("Unknown strategy " + name + "; expected one of " + available.keySet());
+            }
+            selected.put(name, strategy);
+        }
+        return selected;
+    }
+
+    private static NoteQuery substring(String fragment) {
+        NoteQuery query = new NoteQuery();
+        query.setSubstring(fragment);
+        return query;
+    }
+
+    private static NoteQuery tag(String tag) {
+        NoteQuery query = new NoteQuery();
+        query.setTags(Set.of(tag));
+        return query;
+    }
+
+    // Each thread picks strategies by weight and tenants by size until the time is up; returns seconds run
+    private static double drive(SearchCorpus corpus, Map<String, Strategy> strategies,
+                                Map<String, LatencyRecorder> latencies, Map<String, LongAdder> errors,
+                                Options options, int durationSeconds) throws InterruptedException {
+        List<String> names = new ArrayList<>();
+        options.mix.forEach((name, weight) -> {
+            for (int w = 0; w < weight; w++) {
+                names.add(name);
+            }
+        });
+        ExecutorService workers = Executors.newFixedThreadPool(options.threads);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        for (int t = 0; t < options.threads; t++) {
+            Random random = new Random(options.seed + t);
+            workers.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    String name = names.get(random.nextInt(names.size()));
+                    String tenantId = corpus.tenant(random);
+                    long begin = System.nanoTime();
+                    try {
+                        strategies.get(name).run(tenantId, random);
+                        latencies.get(name).record(System.nanoTime() - begin);
+                    } catch (RuntimeException e) {
+                        errors.get(name).increment();
+                        logger.debug("{} query failed", name, e);
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(durationSeconds + 60L, TimeUnit.SECONDS);
+        return seconds(start);
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static double megabytes(Object bytes) {
+        return bytes instanceof Number ? ((Number) bytes).doubleValue() / 1e6 : Double.NaN;
+    }
+
+    private static double seconds(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static class Options {
+        int tenants = 10;
+        int notes = 100_000;
+        double tenantSkew = 1.0;
+        int vocabulary = 30_000;
+        double wordSkew = 1.0;
+        int words = 200;
+        double lengthSpread = 0.8;
+        int tags = 200;
+        double tagSkew = 1.1;
+        int tagsPerNote = 3;
+        Map<String, Integer> mix = parseMix("index=4,mongo-text=2,substring=1,regex=1,tags=1,tags-mongo=1");
+        int warmupSeconds = 20;
+        int durationSeconds = 60;
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        boolean cache = false;
+        long seed = 42;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--tenants": options.tenants = Integer.parseInt(value); break;
+                    case "--notes": options.notes = Integer.parseInt(value); break;
+                    case "--tenant-skew": options.tenantSkew = Double.parseDouble(value); break;
+                    case "--vocabulary": options.vocabulary = Integer.parseInt(value); break;
+                    case "--word-skew": options.wordSkew = Double.parseDouble(value); break;
+                    case "--words": options.words = Integer.parseInt(value); break;
+                    case "--length-spread": options.lengthSpread = Double.parseDouble(value); break;
+                    case "--tags": options.tags = Integer.parseInt(value); break;
+                    case "--tag-skew": options.tagSkew = Double.parseDouble(value); break;
+                    case "--tags-per-note": options.tagsPerNote = Integer.parseInt(value); break;
+                    case "--mix": options.mix = parseMix(value); break;
+                    case "--warmup": options.warmupSeconds = Integer.parseInt(value); break;
+                    case "--duration": options.durationSeconds = Integer.parseInt(value); break;
+                    case "--threads": options.threads = Integer.parseInt(value); break;
+                    case "--cache": options.cache = Boolean.parseBoolean(value); break;
+                    case "--seed": options.seed = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            return options;
+        }
+
+        // name=weight pairs; a bare name weighs 1
+        private static Map<String, Integer> parseMix(String value) {
+            Map<String, Integer> mix = new LinkedHashMap<>();
+            for (String part : value.split(",")) {
+                String[] pair = part.trim().split("=");
+                mix.put(pair[0], pair.length > 1 ? Integer.parseInt(pair[1]) : 1);
+            }
+            return mix;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.beetexting.workspace.loadtest;
+
+import com.beetexting.workspace.model.DocumentChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One simulated editor on one document. It tracks the document version and
+ * length from the change broadcasts so its edits stay valid, and records ack
+ * latency for its own edits and broadcast latency for everyone's.
+ */
+class SimulatedClient {
+    private static final Logger logger = LoggerFactory.getLogger(SimulatedClient.class);
+
+    private final int clientIndex;
+    private final String documentId;
+    private final LoadTestMetrics metrics;
+    private final Random random;
+    private final Map<String, Long> pendingEdits = new ConcurrentHashMap<>();
+    private final AtomicInteger version;
+    private final AtomicInteger contentLength;
+    private final AtomicLong sequence = new AtomicLong();
+    private StompSession session;
+    private int cursorLine;
+    private int cursorColumn;
+
+    SimulatedClient(int clientIndex, String documentId, int initialVersion, int initialLength,
+            LoadTestMetrics metrics) {
+        this.clientIndex = clientIndex;
+        this.documentId = documentId;
+        this.metrics = metrics;
+        this.random = new Random(clientIndex);
+        this.version = new AtomicInteger(initialVersion);
+        this.contentLength = new AtomicInteger(initialLength);
+    }
+
+    void attach(StompSession session) {
+        this.session = session;
+        String base = "/document/" + documentId;
+
+        session.subscribe("/topic" + base + "/changes", handler(DocumentChange.class, payload -> {
+            DocumentChange change = (DocumentChange) payload;
+            version.accumulateAndGet(change.getVersion() + 1, Math::max);
+            int delta = change.getText() != null ? change.getText().length() : 0;
+            if (!"INSERT".equals(change.getOperation())) {
+                delta -= change.getEndPosition() - change.getStartPosition();
+            }
+            contentLength.addAndGet(delta);
+            long sentAt = sentAt(change.getId());
+            if (sentAt > 0) {
+                metrics.broadcastLatency.record(System.nanoTime() - sentAt);
+            }
+            metrics.broadcastsReceived.increment();
+        }));
+        session.subscribe("/user/queue" + base + "/ack", handler(Map.class, payload -> {
+            Long sentAt = pendingEdits.remove(String.valueOf(((Map<?, ?>) payload).get("changeId")));
+            if (sentAt != null) {
+                metrics.ackLatency.record(System.nanoTime() - sentAt);
+                metrics.editsAcked.increment();
+            }
+        }));
+        session.subscribe("/user/queue" + base + "/error", handler(Map.class, payload -> {
+            pendingEdits.remove(String.valueOf(((Map<?, ?>) payload).get("changeId")));
+            metrics.editsRejected.increment();
+        }));
+        session.subscribe("/topic" + base + "/cursors", handler(Map.class, payload ->
+            metrics.cursorsReceived.increment()));
+        session.subscribe("/topic" + base + "/presence", handler(Map.class, payload ->
+            metrics.presenceReceived.increment()));
+    }
+
+    // Mostly single keystrokes near the previous edit, with some backspaces and short pastes
+    void type() {
+        int length = contentLength.get();
+        DocumentChange change = new DocumentChange();
+        change.setId(clientIndex + "-" + sequence.incrementAndGet() + "-" + System.nanoTime());
+        change.setVersion(version.get());
+        int position = Math.min(length, Math.max(0, cursorColumn + cursorLine * 80));
+        int roll = random.nextInt(100);
+        if (roll < 80 || length == 0) {
+            change.setOperation("INSERT");
+            change.setStartPosition(position);
+            change.setEndPosition(position);
+            change.setText(String.valueOf((char) ('a' + random.nextInt(26))));
+        } else if (roll < 95) {
+            int start = Math.max(0, position - 1);
+            change.setOperation("DELETE");
+            change.setStartPosition(start);
+            change.setEndPosition(Math.min(length, start + 1));
+        } else {
+            change.setOperation("INSERT");
+            change.setStartPosition(position);
+            change.setEndPosition(position);
+            change.setText("pasted text block " + sequence.get() + "\n");
+        }
+
+        pendingEdits.put(change.getId(), System.nanoTime());
+        metrics.editsSent.increment();
+        send("/app/document/" + documentId + "/edit", change);
+        cursorColumn++;
+    }
+
+    void moveCursor() {
+        if (random.nextInt(10) == 0) {
+            cursorLine = random.nextInt(Math.max(1, contentLength.get() / 80));
+            cursorColumn = random.nextInt(80);
+        }
+        send("/app/document/" + documentId + "/cursor", Map.of("line", cursorLine, "column", cursorColumn));
+        metrics.cursorsSent.increment();
+    }
+
+    void heartbeat(boolean active) {
+        send("/app/document/" + documentId + "/presence", Map.of("active", active));
+        metrics.presenceSent.increment();
+    }
+
+    private void send(String destination, Object payload) {
+        try {
+            session.send(destination, payload);
+        } catch (RuntimeException e) {
+            metrics.sendFailures.increment();
+            logger.debug("Client {} failed to send to {}: {}", clientIndex, destination, e.getMessage());
+        }
+    }
+
+    private static long sentAt(String changeId) {
+        if (changeId == null) {
+            return -1;
+        }
+        int separator = changeId.lastIndexOf('-');
+        try {
+            return Long.parseLong(changeId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static StompFrameHandler handler(Class<?> type, java.util.function.Consumer<Object> consumer) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return type;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                consumer.accept(payload);
+            }
+        };
+    }
+}
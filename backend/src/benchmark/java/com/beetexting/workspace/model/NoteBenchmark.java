@@ -0,0 +1,93 @@
+package com.beetexting.workspace.model;
+
+import com.beetexting.workspace.benchmark.BenchmarkData;
+import com.beetexting.workspace.benchmark.Benchmarks;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NoteBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    private int documentSize;
+
+    @Param({"0", "100", "1000"})
+    private int existingVersions;
+
+    private ObjectMapper objectMapper;
+    private String content;
+    private List<Note.NoteVersion> history;
+    private Note note;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        objectMapper = Benchmarks.objectMapper();
+        content = BenchmarkData.text(documentSize, 42);
+
+        // Legacy embedded history; bodies share one string as they would after deserialization dedupe
+        history = new ArrayList<>(existingVersions);
+        for (int i = 0; i < existingVersions; i++) {
+            Note.NoteVersion version = new Note.NoteVersion();
+            version.setContent(content);
+            version.setVersion((long) i);
+            version.setUserId("user-" + (i % 8));
+            version.setChangeType("INSERT");
+            version.setTags(Set.of("roadmap", "q3"));
+            history.add(version);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        note = new Note();
+        note.setId("note-1");
+        note.setTenantId("tenant-1");
+        note.setTitle("Weekly all-hands");
+        note.setContent(content);
+        note.setVersion((long) existingVersions);
+        note.setVersions(new ArrayList<>(history));
+        note.setTags(new HashSet<>(Set.of("roadmap", "q3", "all-hands")));
+        note.setCollaborators(new HashSet<>(Set.of("user-1", "user-2", "user-3")));
+        note.updateSentiment("NEUTRAL", Map.of("POSITIVE", 0.2, "NEGATIVE", 0.1, "NEUTRAL", 0.7, "MIXED", 0.0));
+    }
+
+    @Benchmark
+    public Note addVersion() {
+        // Keep the history near its configured size so the list does not grow for the whole iteration
+        List<Note.NoteVersion> versions = note.getVersions();
+        if (versions.size() >= existingVersions + 4096) {
+            versions.subList(existingVersions, versions.size()).clear();
+        }
+        note.addVersion(content, "user-1", "INSERT", null);
+        return note;
+    }
+
+    @Benchmark
+    public byte[] serializeNote() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(note);
+    }
+}
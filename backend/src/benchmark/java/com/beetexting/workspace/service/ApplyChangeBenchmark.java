@@ -0,0 +1,81 @@
+package com.beetexting.workspace.service;
+
+import com.beetexting.workspace.benchmark.BenchmarkData;
+import com.beetexting.workspace.benchmark.InMemoryBlobStore;
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.model.DocumentChange;
+import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.storage.ChunkedContent;
+import com.beetexting.workspace.storage.NoteContentStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The keystroke path of {@link DocumentService#applyChange}: applying one edit to
+ * an inline body, and to a chunked body including the chunk flush that follows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplyChangeBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    private int documentSize;
+
+    @Param({"typing", "mixed", "paste"})
+    private String opMix;
+
+    private String initialContent;
+    private BenchmarkData.EditScript script;
+    private NoteContentStore contentStore;
+    private Note note;
+    private ChunkedContent chunked;
+    private DocumentChange change;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        initialContent = BenchmarkData.text(documentSize, 42);
+        script = BenchmarkData.edits(opMix, 4096, 7);
+        contentStore = new NoteContentStore(new InMemoryBlobStore(), new AppProperties());
+        change = new DocumentChange();
+    }
+
+    // Edit mixes are length-neutral on average; resetting per iteration removes the remaining drift
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        note = new Note();
+        note.setContent(initialContent);
+
+        Note chunkedNote = new Note();
+        chunkedNote.setContentChunks(contentStore.storeChunks(initialContent));
+        chunked = contentStore.openChunked(chunkedNote);
+    }
+
+    @Benchmark
+    public Note inlineContent() {
+        DocumentService.applyChangeToContent(note, script.next(change, note.getContent().length()));
+        return note;
+    }
+
+    @Benchmark
+    public List<Note.ContentChunk> chunkedContent() {
+        DocumentService.applyChangeToContent(chunked, script.next(change, chunked.length()));
+        return chunked.flush();
+    }
+}
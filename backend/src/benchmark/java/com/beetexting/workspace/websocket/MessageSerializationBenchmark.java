@@ -0,0 +1,110 @@
+package com.beetexting.workspace.websocket;
+
+import com.beetexting.workspace.benchmark.Benchmarks;
+import com.beetexting.workspace.model.CursorInfo;
+import com.beetexting.workspace.model.DocumentChange;
+import com.beetexting.workspace.model.PresenceInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-message JSON cost of the STOMP traffic handled by {@link CollaborationHandler}:
+ * inbound edits, the edit broadcast and ack, and cursor and presence updates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageSerializationBenchmark {
+
+    // Size of the text carried by an edit: a keystroke, a word, a paste
+    @Param({"1", "16", "1024"})
+    private int editTextLength;
+
+    private ObjectMapper objectMapper;
+    private DocumentChange change;
+    private byte[] changeJson;
+    private ChangeAcknowledgment ack;
+    private CursorPosition cursorPosition;
+    private CursorInfo cursorInfo;
+    private PresenceStatus presenceStatus;
+    private PresenceInfo presenceInfo;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Benchmarks.objectMapper();
+
+        change = new DocumentChange();
+        change.setId("change-0001");
+        change.setUserId("user-1");
+        change.setVersion(1742);
+        change.setOperation("INSERT");
+        change.setStartPosition(1024);
+        change.setEndPosition(1024);
+        change.setText("x".repeat(editTextLength));
+        changeJson = objectMapper.writeValueAsBytes(change);
+
+        ack = new ChangeAcknowledgment("change-0001", true);
+
+        cursorPosition = new CursorPosition();
+        cursorPosition.setUserId("user-1");
+        cursorPosition.setLine(120);
+        cursorPosition.setColumn(17);
+        cursorInfo = new CursorInfo("user-1", 120, 17);
+
+        presenceStatus = new PresenceStatus();
+        presenceStatus.setUserId("user-1");
+        presenceStatus.setActive(true);
+        presenceInfo = new PresenceInfo("user-1");
+    }
+
+    @Benchmark
+    public DocumentChange deserializeChange() throws IOException {
+        return objectMapper.readValue(changeJson, DocumentChange.class);
+    }
+
+    @Benchmark
+    public byte[] serializeChange() throws IOException {
+        return objectMapper.writeValueAsBytes(change);
+    }
+
+    @Benchmark
+    public byte[] serializeAck() throws IOException {
+        return objectMapper.writeValueAsBytes(ack);
+    }
+
+    @Benchmark
+    public byte[] serializeCursorPosition() throws IOException {
+        return objectMapper.writeValueAsBytes(cursorPosition);
+    }
+
+    @Benchmark
+    public byte[] serializeCursorInfo() throws IOException {
+        return objectMapper.writeValueAsBytes(cursorInfo);
+    }
+
+    @Benchmark
+    public byte[] serializePresenceStatus() throws IOException {
+        return objectMapper.writeValueAsBytes(presenceStatus);
+    }
+
+    @Benchmark
+    public byte[] serializePresenceInfo() throws IOException {
+        return objectMapper.writeValueAsBytes(presenceInfo);
+    }
+}
@@ -4,6 +4,7 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,6 +16,12 @@ public class AppProperties {
     private final Tenant tenant = new Tenant();
     private final RateLimit rateLimit = new RateLimit();
     private final WebSocket webSocket = new WebSocket();
+    private final Storage storage = new Storage();
+    private final History history = new History();
+    private final Metrics metrics = new Metrics();
+    private final Search search = new Search();
+    private final Tags tags = new Tags();
+    private final Semantic semantic = new Semantic();
 
     @Data
     public static class Auth {
@@ -43,4 +50,60 @@ public class AppProperties {
         private String destinationPrefix;
         private String applicationPrefix;
     }
-} 
\ No newline at end of file
+
+    @Data
+    public static class Storage {
+        private String type = "local";
+        private int offloadThreshold = 256 * 1024;
+        private int chunkSize = 64 * 1024;
+        private int maxLoadedChunks = 16;
+        private String localPath = "data/blobs";
+        private String s3Bucket;
+        private String s3Prefix = "blobs/";
+    }
+
+    @Data
+    public static class History {
+        private int keyframeInterval = 64;
+    }
+
+    @Data
+    public static class Metrics {
+        private boolean perDocumentTags = false;
+        private int hotDocuments = 64;
+        private Duration hotnessHalfLife = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Search {
+        private Duration refreshInterval = Duration.ofSeconds(1);
+        private Duration feedInterval = Duration.ofSeconds(5);
+        private String indexPath = "data/search-index";
+        private int maxBufferedDocs = 1000;
+        private Duration maxBufferAge = Duration.ofMinutes(1);
+        private int bulkBufferedDocs = 50000;
+        private int mergeFactor = 10;
+        private int cacheMaxEntries = 1000;
+        private Duration cacheTtl = Duration.ofSeconds(30);
+        private int reindexBatchSize = 1000;
+        private int reindexParallelism = Runtime.getRuntime().availableProcessors();
+        private Duration exportTimeout = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Tags {
+        private Duration reconcileInterval = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Semantic {
+        private String embedding = "hashed";
+        private int dimensions = 256;
+        private String indexPath = "data/semantic-index";
+        private int m = 16;
+        private int efConstruction = 100;
+        private int efSearch = 64;
+        private Duration refreshInterval = Duration.ofSeconds(1);
+        private Duration flushInterval = Duration.ofSeconds(10);
+    }
+}
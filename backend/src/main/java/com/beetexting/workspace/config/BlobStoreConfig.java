@@ -0,0 +1,45 @@
+package com.beetexting.workspace.config;
+
+import com.beetexting.workspace.storage.BlobStore;
+import com.beetexting.workspace.storage.LocalFileBlobStore;
+import com.beetexting.workspace.storage.S3BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+@Configuration
+public class BlobStoreConfig {
+
+    @Value("${aws.region:us-east-1}")
+    private String awsRegion;
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
+    public BlobStore localFileBlobStore(AppProperties appProperties) throws IOException {
+        return new LocalFileBlobStore(Paths.get(appProperties.getStorage().getLocalPath()));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+    public S3Client s3Client() {
+        return S3Client.builder()
+            .region(Region.of(awsRegion))
+            .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+    public BlobStore s3BlobStore(S3Client s3Client, AppProperties appProperties) {
+        AppProperties.Storage storage = appProperties.getStorage();
+        if (storage.getS3Bucket() == null || storage.getS3Bucket().isBlank()) {
+            throw new IllegalStateException("app.storage.s3-bucket must be set when app.storage.type=s3");
+        }
+        return new S3BlobStore(s3Client, storage.getS3Bucket(), storage.getS3Prefix());
+    }
+}
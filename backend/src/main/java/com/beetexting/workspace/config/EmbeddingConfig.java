@@ -0,0 +1,17 @@
+package com.beetexting.workspace.config;
+
+import com.beetexting.workspace.search.EmbeddingFunction;
+import com.beetexting.workspace.search.HashedFeatureEmbedding;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class EmbeddingConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.semantic.embedding", havingValue = "hashed", matchIfMissing = true)
+    public EmbeddingFunction hashedFeatureEmbedding(AppProperties appProperties) {
+        return new HashedFeatureEmbedding(appProperties.getSemantic().getDimensions());
+    }
+}
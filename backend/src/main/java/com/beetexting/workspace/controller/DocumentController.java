@@ -0,0 +1,184 @@
+package com.beetexting.workspace.controller;
+
+import com.beetexting.workspace.model.DocumentHotness;
+import com.beetexting.workspace.model.NoteRevision;
+import com.beetexting.workspace.service.DiffService;
+import com.beetexting.workspace.service.DocumentService;
+import com.beetexting.workspace.service.DocumentSnapshotService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/documents")
+public class DocumentController {
+
+    private static final int DEFAULT_RANGE_LENGTH = 64 * 1024;
+    private static final int MAX_HOT_DOCUMENTS = 100;
+
+    private final DocumentService documentService;
+    private final DocumentSnapshotService documentSnapshotService;
+    private final DiffService diffService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public DocumentController(
+            DocumentService documentService,
+            DocumentSnapshotService documentSnapshotService,
+            DiffService diffService,
+            ObjectMapper objectMapper) {
+        this.documentService = documentService;
+        this.documentSnapshotService = documentSnapshotService;
+        this.diffService = diffService;
+        this.objectMapper = objectMapper;
+    }
+
+    // Busiest documents on this node, for rebalancing ownership before a node saturates
+    @GetMapping("/hot")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<DocumentHotness>> getHotDocuments(@RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(documentService.getHotDocuments(Math.max(1, Math.min(limit, MAX_HOT_DOCUMENTS))));
+    }
+
+    @GetMapping(path = "/{documentId}/open", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("@securityService.hasTenantAccess(@documentService.getTenantId(#documentId))")
+    public ResponseEntity<byte[]> openDocument(
+            @PathVariable String documentId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        String etag = documentSnapshotService.currentETag(documentId);
+        if (ifNoneMatch != null && noneMatchFails(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        DocumentSnapshotService.EncodedSnapshot snapshot = documentSnapshotService.getEncodedSnapshot(documentId, etag);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .eTag(snapshot.getETag())
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+            .header(HttpHeaders.CACHE_CONTROL, "no-cache");
+
+        // Serve the pre-compressed body so repeat opens skip both serialization and gzip
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.getGzipped());
+        }
+        return response.body(snapshot.getJson());
+    }
+
+    /**
+     * If-None-Match per RFC 9110: "*" matches any current representation,
+     * otherwise the header is a comma-separated list of entity tags compared
+     * weakly, so a W/ prefix on either side is ignored.
+     */
+    private static boolean noneMatchFails(String ifNoneMatch, String etag) {
+        String current = opaqueTag(etag);
+        int i = 0;
+        int length = ifNoneMatch.length();
+        while (i < length) {
+            char c = ifNoneMatch.charAt(i);
+            if (c == ',' || c == ' ' || c == '\t') {
+                i++;
+            } else if (c == '*') {
+                return true;
+            } else {
+                boolean weak = ifNoneMatch.startsWith("W/", i);
+                int open = weak ? i + 2 : i;
+                if (open >= length || ifNoneMatch.charAt(open) != '"') {
+                    // Not an entity tag; skip to the next list member
+                    int next = ifNoneMatch.indexOf(',', i);
+                    i = next < 0 ? length : next + 1;
+                    continue;
+                }
+                // Commas are legal inside a tag, so only the closing quote ends it
+                int close = ifNoneMatch.indexOf('"', open + 1);
+                if (close < 0) {
+                    return false;
+                }
+                if (ifNoneMatch.regionMatches(open, current, 0, current.length())
+                        && close + 1 - open == current.length()) {
+                    return true;
+                }
+                i = close + 1;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    @GetMapping(path = "/{documentId}/content", produces = MediaType.TEXT_PLAIN_VALUE)
+    @PreAuthorize("@securityService.hasTenantAccess(@documentService.getTenantId(#documentId))")
+    public ResponseEntity<String> getContentRange(
+            @PathVariable String documentId,
+            @RequestParam(defaultValue = "0") int start,
+            @RequestParam(required = false) Integer end) {
+        int rangeEnd = end != null ? end : start + DEFAULT_RANGE_LENGTH;
+        if (start < 0 || rangeEnd < start) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+            .header("X-Content-Length", String.valueOf(documentService.getContentLength(documentId)))
+            .body(documentService.readContent(documentId, start, rangeEnd));
+    }
+
+    @GetMapping("/{documentId}/revisions")
+    @PreAuthorize("@securityService.hasTenantAccess(@documentService.getTenantId(#documentId))")
+    public ResponseEntity<List<NoteRevision>> listRevisions(
+            @PathVariable String documentId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(documentService.listRevisions(documentId, before, size));
+    }
+
+    @GetMapping(path = "/{documentId}/revisions/{revision}", produces = MediaType.TEXT_PLAIN_VALUE)
+    @PreAuthorize("@securityService.hasTenantAccess(@documentService.getTenantId(#documentId))")
+    public ResponseEntity<String> getRevisionContent(
+            @PathVariable String documentId,
+            @PathVariable long revision) {
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable")
+            .body(documentService.getRevisionContent(documentId, revision));
+    }
+
+    // One hunk per line (NDJSON), written as each is built so clients can render the first changes early
+    @GetMapping(path = "/{documentId}/diff", produces = "application/x-ndjson")
+    @PreAuthorize("@securityService.hasTenantAccess(@documentService.getTenantId(#documentId))")
+    public ResponseEntity<StreamingResponseBody> diffRevisions(
+            @PathVariable String documentId,
+            @RequestParam long from,
+            @RequestParam(required = false) Long to,
+            @RequestParam(defaultValue = "line") String granularity,
+            @RequestParam(defaultValue = "3") int context) {
+        DiffService.RevisionDiff diff = diffService.prepareDiff(documentId, from, to, granularity, context);
+        StreamingResponseBody body = out -> {
+            try {
+                diff.forEachHunk(hunk -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(hunk));
+                        out.write('\n');
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .body(body);
+    }
+}
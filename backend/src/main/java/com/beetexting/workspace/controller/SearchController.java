@@ -1,14 +1,31 @@
 package com.beetexting.workspace.controller;
 
-import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.model.CursorPage;
+import com.beetexting.workspace.model.NoteSummary;
+import com.beetexting.workspace.search.NoteQuery;
+import com.beetexting.workspace.search.ReindexStatus;
 import com.beetexting.workspace.service.SearchService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -17,30 +34,188 @@ import java.util.Set;
 @RequestMapping("/api/search")
 public class SearchController {
 
+    private static final int MAX_SCROLL_SIZE = 100;
+    private static final int SEMANTIC_RETRY_SECONDS = 5;
+    // Lines are sent in chunks of about this size rather than flushed one by one
+    private static final int EXPORT_CHUNK_BYTES = 64 * 1024;
+
     private final SearchService searchService;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor taskExecutor;
+    private final Duration exportTimeout;
 
     @Autowired
-    public SearchController(SearchService searchService) {
+    public SearchController(
+            SearchService searchService,
+            ObjectMapper objectMapper,
+            @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor,
+            AppProperties appProperties) {
         this.searchService = searchService;
+        this.objectMapper = objectMapper;
+        this.taskExecutor = taskExecutor;
+        this.exportTimeout = appProperties.getSearch().getExportTimeout();
     }
 
     @GetMapping("/{tenantId}")
     @PreAuthorize("@securityService.hasTenantAccess(#tenantId)")
-    public ResponseEntity<Page<Note>> searchNotes(
+    public ResponseEntity<Slice<NoteSummary>> searchNotes(
             @PathVariable String tenantId,
             @RequestParam(required = false) String query,
+            @RequestParam(required = false) String contains,
             @RequestParam(required = false) Set<String> tags,
+            @RequestParam(defaultValue = "any") String tagMode,
             @RequestParam(required = false) String sentiment,
+            @RequestParam(required = false) Set<String> author,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "true") boolean count,
             Pageable pageable) {
-        return ResponseEntity.ok(searchService.searchNotes(tenantId, query, tags, sentiment, pageable));
+        try {
+            NoteQuery noteQuery = toQuery(query, contains, tags, tagMode, sentiment, author, from, to);
+            // count=false skips the total, which otherwise doubles the cost of every page
+            if (!count) {
+                return ResponseEntity.ok(searchService.searchNotesSlice(tenantId, noteQuery, pageable));
+            }
+            return ResponseEntity.ok(searchService.searchNotes(tenantId, noteQuery, pageable));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{tenantId}/scroll")
+    @PreAuthorize("@securityService.hasTenantAccess(#tenantId)")
+    public ResponseEntity<CursorPage<NoteSummary>> scrollNotes(
+            @PathVariable String tenantId,
+            @RequestParam(required = false) String query,
+            @RequestParam(required = false) String contains,
+            @RequestParam(required = false) Set<String> tags,
+            @RequestParam(defaultValue = "any") String tagMode,
+            @RequestParam(required = false) String sentiment,
+            @RequestParam(required = false) Set<String> author,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            NoteQuery noteQuery = toQuery(query, contains, tags, tagMode, sentiment, author, from, to);
+            return ResponseEntity.ok(searchService.scrollNotes(
+                tenantId, noteQuery, cursor, Math.max(1, Math.min(size, MAX_SCROLL_SIZE))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Every match as NDJSON, one summary per line, in scroll order; memory
+     * stays flat however many match. The export has its own timeout,
+     * {@code app.search.export-timeout}, so other async requests keep the
+     * container default.
+     */
+    @GetMapping(path = "/{tenantId}/export", produces = "application/x-ndjson")
+    @PreAuthorize("@securityService.hasTenantAccess(#tenantId)")
+    public ResponseEntity<ResponseBodyEmitter> exportNotes(
+            @PathVariable String tenantId,
+            @RequestParam(required = false) String query,
+            @RequestParam(required = false) String contains,
+            @RequestParam(required = false) Set<String> tags,
+            @RequestParam(defaultValue = "any") String tagMode,
+            @RequestParam(required = false) String sentiment,
+            @RequestParam(required = false) Set<String> author,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        NoteQuery noteQuery;
+        try {
+            noteQuery = toQuery(query, contains, tags, tagMode, sentiment, author, from, to);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(exportTimeout.toMillis());
+        // Sends block while the client is behind, which holds the cursor until it catches up
+        taskExecutor.execute(() -> {
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(EXPORT_CHUNK_BYTES + 1024);
+            try {
+                searchService.exportNotes(tenantId, noteQuery, note -> {
+                    try {
+                        chunk.writeBytes(objectMapper.writeValueAsBytes(note));
+                        chunk.write('\n');
+                        if (chunk.size() >= EXPORT_CHUNK_BYTES) {
+                            emitter.send(chunk.toByteArray(), MediaType.APPLICATION_OCTET_STREAM);
+                            chunk.reset();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (chunk.size() > 0) {
+                    emitter.send(chunk.toByteArray(), MediaType.APPLICATION_OCTET_STREAM);
+                }
+                emitter.complete();
+            } catch (IOException | RuntimeException e) {
+                // The client went away or the export timed out; leaving exportNotes closed the cursor
+                emitter.completeWithError(e instanceof UncheckedIOException ? e.getCause() : e);
+            }
+        });
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType("application/x-ndjson"))
+            .body(emitter);
+    }
+
+    private static NoteQuery toQuery(String query, String contains, Set<String> tags, String tagMode,
+            String sentiment, Set<String> authors, Instant from, Instant to) {
+        NoteQuery noteQuery = new NoteQuery(query);
+        if (contains != null) {
+            noteQuery.setSubstring(contains);
+            // Shorter fragments have no trigram to narrow by and would scan every note
+            if (!noteQuery.hasSubstring()) {
+                throw new IllegalArgumentException("contains needs at least "
+                    + NoteQuery.MIN_SUBSTRING_LENGTH + " characters");
+            }
+        }
+        noteQuery.setTags(tags);
+        noteQuery.setTagMode("all".equalsIgnoreCase(tagMode) ? NoteQuery.TagMode.ALL : NoteQuery.TagMode.ANY);
+        noteQuery.setSentiment(sentiment);
+        noteQuery.setAuthors(authors);
+        noteQuery.setUpdatedFrom(from);
+        noteQuery.setUpdatedTo(to);
+        return noteQuery;
+    }
+
+    @GetMapping("/{tenantId}/semantic")
+    @PreAuthorize("@securityService.hasTenantAccess(#tenantId)")
+    public ResponseEntity<List<NoteSummary>> semanticSearch(
+            @PathVariable String tenantId,
+            @RequestParam String query,
+            @RequestParam(defaultValue = "10") int limit) {
+        return searchService.semanticSearch(tenantId, query, Math.max(1, limit))
+            .map(ResponseEntity::ok)
+            // The tenant's index is being built; the first query starts it
+            .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(SEMANTIC_RETRY_SECONDS))
+                .build());
     }
 
     @GetMapping("/{tenantId}/similar/{noteId}")
     @PreAuthorize("@securityService.hasTenantAccess(#tenantId)")
-    public ResponseEntity<List<Note>> findSimilarNotes(
+    public ResponseEntity<List<NoteSummary>> findSimilarNotes(
             @PathVariable String tenantId,
-            @PathVariable String noteId) {
-        return ResponseEntity.ok(searchService.findSimilarNotes(tenantId, noteId));
+            @PathVariable String noteId,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(searchService.findSimilarNotes(tenantId, noteId, Math.max(1, limit)));
+    }
+
+    // Progress is polled from the GET below; a reindex already running is returned rather than restarted
+    @PostMapping("/{tenantId}/reindex")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReindexStatus> reindex(@PathVariable String tenantId) {
+        return ResponseEntity.accepted().body(searchService.reindex(tenantId));
+    }
+
+    @GetMapping("/{tenantId}/reindex")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReindexStatus> getReindexStatus(@PathVariable String tenantId) {
+        return searchService.getReindexStatus(tenantId)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @PostMapping("/generate-tags")
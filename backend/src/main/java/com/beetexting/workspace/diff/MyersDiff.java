@@ -0,0 +1,166 @@
+package com.beetexting.workspace.diff;
+
+import java.util.Arrays;
+
+/**
+ * Linear-space Myers diff over token ids. Each call to {@link #diff} marks which
+ * tokens of {@code a} were deleted and which tokens of {@code b} were inserted;
+ * everything else is common. The middle snake is found with forward and reverse
+ * searches so only O(N + M) working memory is live at any time.
+ */
+public final class MyersDiff {
+
+    private final int[] a;
+    private final int[] b;
+    private final boolean[] deleted;
+    private final boolean[] inserted;
+    private final long deadline;
+
+    private MyersDiff(int[] a, int[] b, long deadline) {
+        this.a = a;
+        this.b = b;
+        this.deleted = new boolean[a.length];
+        this.inserted = new boolean[b.length];
+        this.deadline = deadline;
+    }
+
+    // Past the deadline, remaining regions are reported as a plain delete + insert
+    public static Result diff(int[] a, int[] b, long timeoutNanos) {
+        MyersDiff diff = new MyersDiff(a, b, System.nanoTime() + timeoutNanos);
+        diff.compare(0, a.length, 0, b.length);
+        return new Result(diff.deleted, diff.inserted);
+    }
+
+    private void compare(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            aLo++;
+            bLo++;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi--;
+            bHi--;
+        }
+
+        if (aLo == aHi) {
+            mark(inserted, bLo, bHi);
+        } else if (bLo == bHi) {
+            mark(deleted, aLo, aHi);
+        } else {
+            int[] split = middleSnake(aLo, aHi, bLo, bHi);
+            if (split == null) {
+                mark(deleted, aLo, aHi);
+                mark(inserted, bLo, bHi);
+            } else {
+                compare(aLo, split[0], bLo, split[1]);
+                compare(split[0], aHi, split[1], bHi);
+            }
+        }
+    }
+
+    // Returns the split point (x, y) in absolute coordinates, or null if the deadline passed
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+        int[] forward = new int[length];
+        int[] reverse = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(reverse, -1);
+        forward[offset + 1] = 0;
+        reverse[offset + 1] = 0;
+
+        int delta = n - m;
+        boolean front = (delta & 1) != 0;
+        int k1Start = 0;
+        int k1End = 0;
+        int k2Start = 0;
+        int k2End = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            if ((d & 63) == 0 && System.nanoTime() > deadline) {
+                return null;
+            }
+
+            for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2) {
+                int k1Offset = offset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1])) {
+                    x1 = forward[k1Offset + 1];
+                } else {
+                    x1 = forward[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                    x1++;
+                    y1++;
+                }
+                forward[k1Offset] = x1;
+                if (x1 > n) {
+                    k1End += 2;
+                } else if (y1 > m) {
+                    k1Start += 2;
+                } else if (front) {
+                    int k2Offset = offset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < length && reverse[k2Offset] != -1) {
+                        int x2 = n - reverse[k2Offset];
+                        if (x1 >= x2) {
+                            return new int[] {aLo + x1, bLo + y1};
+                        }
+                    }
+                }
+            }
+
+            for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2) {
+                int k2Offset = offset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && reverse[k2Offset - 1] < reverse[k2Offset + 1])) {
+                    x2 = reverse[k2Offset + 1];
+                } else {
+                    x2 = reverse[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aHi - x2 - 1] == b[bHi - y2 - 1]) {
+                    x2++;
+                    y2++;
+                }
+                reverse[k2Offset] = x2;
+                if (x2 > n) {
+                    k2End += 2;
+                } else if (y2 > m) {
+                    k2Start += 2;
+                } else if (!front) {
+                    int k1Offset = offset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < length && forward[k1Offset] != -1) {
+                        int x1 = forward[k1Offset];
+                        int y1 = offset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            return new int[] {aLo + x1, bLo + y1};
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void mark(boolean[] flags, int from, int to) {
+        for (int i = from; i < to; i++) {
+            flags[i] = true;
+        }
+    }
+
+    public static final class Result {
+        private final boolean[] deleted;
+        private final boolean[] inserted;
+
+        Result(boolean[] deleted, boolean[] inserted) {
+            this.deleted = deleted;
+            this.inserted = inserted;
+        }
+
+        public boolean isDeleted(int indexInA) { return deleted[indexInA]; }
+        public boolean isInserted(int indexInB) { return inserted[indexInB]; }
+    }
+}
@@ -0,0 +1,181 @@
+package com.beetexting.workspace.diff;
+
+import com.beetexting.workspace.model.DiffHunk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Line diff with optional word-level refinement. Lines are diffed first; only
+ * the changed line blocks are then re-diffed word by word, which keeps large
+ * documents with small edits fast.
+ */
+public final class TextDiff {
+
+    private static final int MAX_WORD_TOKENS = 50_000;
+
+    private TextDiff() {
+    }
+
+    public static List<DiffHunk> diff(String oldText, String newText, int context, boolean words, long timeoutNanos) {
+        List<DiffHunk> hunks = new ArrayList<>();
+        diff(oldText, newText, context, words, timeoutNanos, hunks::add);
+        return hunks;
+    }
+
+    // Hands each hunk to the sink as soon as it is built, before later hunks are word-diffed
+    public static void diff(String oldText, String newText, int context, boolean words, long timeoutNanos,
+            Consumer<DiffHunk> sink) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        List<String> oldLines = splitLines(oldText);
+        List<String> newLines = splitLines(newText);
+        Map<String, Integer> ids = new HashMap<>();
+        MyersDiff.Result result = MyersDiff.diff(intern(oldLines, ids), intern(newLines, ids), timeoutNanos);
+
+        int i = 0;
+        int j = 0;
+        while (i < oldLines.size() || j < newLines.size()) {
+            if (i < oldLines.size() && j < newLines.size() && !result.isDeleted(i) && !result.isInserted(j)) {
+                i++;
+                j++;
+                continue;
+            }
+
+            int oldStart = i;
+            int newStart = j;
+            while (i < oldLines.size() && result.isDeleted(i)) {
+                i++;
+            }
+            while (j < newLines.size() && result.isInserted(j)) {
+                j++;
+            }
+
+            DiffHunk hunk = new DiffHunk();
+            hunk.setOldStart(oldStart + 1);
+            hunk.setOldCount(i - oldStart);
+            hunk.setNewStart(newStart + 1);
+            hunk.setNewCount(j - newStart);
+            hunk.setContextBefore(stripped(oldLines, Math.max(0, oldStart - context), oldStart));
+            hunk.setDeleted(stripped(oldLines, oldStart, i));
+            hunk.setInserted(stripped(newLines, newStart, j));
+            hunk.setContextAfter(stripped(oldLines, i, Math.min(oldLines.size(), i + context)));
+            if (words && i > oldStart && j > newStart) {
+                hunk.setWords(diffWords(join(oldLines, oldStart, i), join(newLines, newStart, j),
+                    Math.max(deadline - System.nanoTime(), 0)));
+            }
+            sink.accept(hunk);
+        }
+    }
+
+    static List<DiffHunk.Segment> diffWords(String oldText, String newText, long timeoutNanos) {
+        List<String> oldWords = splitWords(oldText);
+        List<String> newWords = splitWords(newText);
+        List<DiffHunk.Segment> segments = new ArrayList<>();
+        if (oldWords.size() > MAX_WORD_TOKENS || newWords.size() > MAX_WORD_TOKENS) {
+            segments.add(new DiffHunk.Segment("DELETE", oldText));
+            segments.add(new DiffHunk.Segment("INSERT", newText));
+            return segments;
+        }
+
+        Map<String, Integer> ids = new HashMap<>();
+        MyersDiff.Result result = MyersDiff.diff(intern(oldWords, ids), intern(newWords, ids), timeoutNanos);
+        int i = 0;
+        int j = 0;
+        while (i < oldWords.size() || j < newWords.size()) {
+            StringBuilder text = new StringBuilder();
+            if (i < oldWords.size() && j < newWords.size() && !result.isDeleted(i) && !result.isInserted(j)) {
+                while (i < oldWords.size() && j < newWords.size() && !result.isDeleted(i) && !result.isInserted(j)) {
+                    text.append(oldWords.get(i++));
+                    j++;
+                }
+                segments.add(new DiffHunk.Segment("EQUAL", text.toString()));
+                continue;
+            }
+            if (i < oldWords.size() && result.isDeleted(i)) {
+                while (i < oldWords.size() && result.isDeleted(i)) {
+                    text.append(oldWords.get(i++));
+                }
+                segments.add(new DiffHunk.Segment("DELETE", text.toString()));
+                text.setLength(0);
+            }
+            if (j < newWords.size() && result.isInserted(j)) {
+                while (j < newWords.size() && result.isInserted(j)) {
+                    text.append(newWords.get(j++));
+                }
+                segments.add(new DiffHunk.Segment("INSERT", text.toString()));
+            }
+        }
+        return segments;
+    }
+
+    // Lines keep their terminator so a missing final newline still shows up as a change
+    static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    // Runs of letters/digits, runs of whitespace, and single punctuation code points
+    static List<String> splitWords(String text) {
+        List<String> words = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int c = text.codePointAt(start);
+            int end = start + Character.charCount(c);
+            if (Character.isLetterOrDigit(c)) {
+                while (end < text.length() && Character.isLetterOrDigit(text.codePointAt(end))) {
+                    end += Character.charCount(text.codePointAt(end));
+                }
+            } else if (Character.isWhitespace(c)) {
+                while (end < text.length() && Character.isWhitespace(text.charAt(end))) {
+                    end++;
+                }
+            }
+            words.add(text.substring(start, end));
+            start = end;
+        }
+        return words;
+    }
+
+    private static int[] intern(List<String> tokens, Map<String, Integer> ids) {
+        int[] result = new int[tokens.size()];
+        for (int i = 0; i < result.length; i++) {
+            Integer id = ids.get(tokens.get(i));
+            if (id == null) {
+                id = ids.size();
+                ids.put(tokens.get(i), id);
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+
+    private static List<String> stripped(List<String> lines, int from, int to) {
+        List<String> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            String line = lines.get(i);
+            result.add(line.endsWith("\n") ? line.substring(0, line.length() - 1) : line);
+        }
+        return result;
+    }
+
+    private static String join(List<String> lines, int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            sb.append(lines.get(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.beetexting.workspace.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Serialization and hand-off of one broadcast to the broker. Change
+ * broadcasts carry the change id so they line up with {@link OpAppliedEvent}.
+ */
+@Name("com.beetexting.workspace.Broadcast")
+@Label("Broadcast")
+@Category({"Workspace", "Collaboration"})
+@Description("A message published to a document topic")
+@StackTrace(false)
+public class BroadcastEvent extends Event {
+
+    @Label("Change Id")
+    public String changeId;
+
+    @Label("Document Id")
+    public String documentId;
+
+    @Label("Channel")
+    public String channel;
+
+    @Label("Fan-out")
+    @Description("Subscribers to the destination at publish time")
+    public int fanOut;
+}
@@ -0,0 +1,120 @@
+package com.beetexting.workspace.metrics;
+
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.model.DocumentHotness;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters for the editing, broadcast and persistence paths. Tags are limited to
+ * small fixed sets (operation, outcome, channel, layout); a document tag is only
+ * added when {@code app.metrics.per-document-tags} is switched on.
+ */
+@Component
+public class CollaborationMetrics {
+    public static final String OUTCOME_APPLIED = "applied";
+    public static final String OUTCOME_VERSION_MISMATCH = "version_mismatch";
+    public static final String OUTCOME_ERROR = "error";
+
+    private final MeterRegistry registry;
+    private final boolean perDocumentTags;
+
+    @Autowired
+    public CollaborationMetrics(MeterRegistry registry, AppProperties appProperties) {
+        this.registry = registry;
+        this.perDocumentTags = appProperties.getMetrics().isPerDocumentTags();
+    }
+
+    public Timer.Sample startTimer() {
+        return Timer.start(registry);
+    }
+
+    public void recordApply(Timer.Sample sample, String documentId, String operation, String outcome) {
+        sample.stop(Timer.builder("collab.op.apply")
+            .description("Time to validate and apply an edit, including persistence")
+            .tags(documentTags(documentId).and("operation", operationTag(operation), "outcome", outcome))
+            .register(registry));
+    }
+
+    public void recordVersionMismatch(String documentId) {
+        Counter.builder("collab.op.version.mismatch")
+            .description("Edits rejected because they were based on a stale version")
+            .tags(documentTags(documentId))
+            .register(registry)
+            .increment();
+    }
+
+    public void recordSave(long nanos, boolean chunked) {
+        Timer.builder("collab.persistence.save")
+            .description("MongoDB save latency for edited notes")
+            .tag("layout", chunked ? "chunked" : "inline")
+            .register(registry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBroadcast(String channel, int fanOut, long nanos) {
+        DistributionSummary.builder("collab.broadcast.fanout")
+            .description("Subscribers a broadcast was addressed to")
+            .baseUnit("sessions")
+            .tag("channel", channel)
+            .register(registry)
+            .record(fanOut);
+        Timer.builder("collab.broadcast")
+            .description("Time to hand a broadcast to the message broker")
+            .tag("channel", channel)
+            .register(registry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void registerDocumentGauges(Supplier<Number> activeDocuments, Supplier<Number> residentBytes) {
+        Gauge.builder("collab.documents.active", activeDocuments)
+            .description("Documents held in memory for editing")
+            .register(registry);
+        Gauge.builder("collab.documents.active.bytes", residentBytes)
+            .description("Approximate heap held by resident document bodies")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+    // Only the hottest document is exported, so the series count stays fixed as documents come and go
+    public void registerHotnessGauges(DocumentHotnessSketch sketch) {
+        Gauge.builder("collab.documents.hottest.ops", sketch, s -> hottest(s).getOpsPerSecond())
+            .description("Decayed edit rate of the busiest document on this node")
+            .baseUnit("operations/s")
+            .register(registry);
+        Gauge.builder("collab.documents.hottest.bytes", sketch, s -> hottest(s).getBytesPerSecond())
+            .description("Decayed edit payload rate of the busiest document on this node")
+            .baseUnit("bytes/s")
+            .register(registry);
+        Gauge.builder("collab.documents.hottest.subscribers", sketch, s -> hottest(s).getSubscribers())
+            .description("Smoothed subscriber count of the busiest document on this node")
+            .baseUnit("sessions")
+            .register(registry);
+    }
+
+    private static DocumentHotness hottest(DocumentHotnessSketch sketch) {
+        DocumentHotness hottest = sketch.hottest();
+        return hottest != null ? hottest : new DocumentHotness();
+    }
+
+    private Tags documentTags(String documentId) {
+        return perDocumentTags && documentId != null ? Tags.of("document", documentId) : Tags.empty();
+    }
+
+    // Operations come from clients, so anything unexpected collapses into one tag value
+    private static String operationTag(String operation) {
+        if ("INSERT".equals(operation) || "DELETE".equals(operation) || "REPLACE".equals(operation)) {
+            return operation;
+        }
+        return "OTHER";
+    }
+}
@@ -0,0 +1,192 @@
+package com.beetexting.workspace.metrics;
+
+import com.beetexting.workspace.model.DocumentHotness;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving top-K over exponentially decayed per-document rates. Memory is
+ * bounded by the capacity no matter how many documents see traffic: when a new
+ * document arrives and the sketch is full, it takes over the coldest slot and
+ * inherits that slot's op score as its error bound, so a genuinely hot document
+ * can never be pushed out by a stream of one-off edits.
+ *
+ * All scores are stored relative to a common landmark time and rescaled lazily,
+ * which keeps decay O(1) per update instead of touching every entry.
+ *
+ * Ops are recorded into per-thread stripes and folded into the sketch when a
+ * stripe fills or a reader asks for the rates, so concurrent editors contend
+ * only when they hash to the same stripe rather than on every keystroke.
+ */
+public class DocumentHotnessSketch {
+
+    private static final int STRIPE_CAPACITY = 256;
+
+    private final int capacity;
+    private final double lambda;  // decay rate per nanosecond
+    private final Map<String, Entry> entries;
+    private final Stripe[] stripes;
+    private long landmark;
+
+    public DocumentHotnessSketch(int capacity, Duration halfLife) {
+        this.capacity = capacity;
+        this.lambda = Math.log(2) / halfLife.toNanos();
+        this.entries = new HashMap<>(capacity * 2);
+        this.landmark = System.nanoTime();
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public void recordOp(String documentId, int bytes) {
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        Batch full;
+        synchronized (stripe) {
+            full = stripe.add(documentId, bytes, System.nanoTime());
+        }
+        // The recording thread pays for the fold once per batch, after releasing its stripe
+        if (full != null) {
+            synchronized (this) {
+                apply(full);
+            }
+        }
+    }
+
+    // Subscribers is a level, not a count, so it is smoothed rather than summed
+    public synchronized void recordSubscribers(String documentId, int subscribers) {
+        drain();
+        Entry entry = entries.get(documentId);
+        if (entry == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        double alpha = entry.subscribersAt == 0 ? 1 : 1 - Math.exp(-lambda * (now - entry.subscribersAt));
+        entry.subscribers += alpha * (subscribers - entry.subscribers);
+        entry.subscribersAt = now;
+    }
+
+    public synchronized List<DocumentHotness> top(int limit) {
+        drain();
+        long now = System.nanoTime();
+        // Converts a landmark-relative score to a per-second rate as of now
+        double scale = Math.exp(-lambda * (now - landmark)) * lambda * 1e9;
+        List<DocumentHotness> result = new ArrayList<>(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            result.add(new DocumentHotness(e.getKey(), entry.ops * scale, entry.bytes * scale,
+                entry.subscribers, entry.error * scale));
+        }
+        result.sort(Comparator.comparingDouble(DocumentHotness::getOpsPerSecond).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    public synchronized DocumentHotness hottest() {
+        List<DocumentHotness> top = top(1);
+        return top.isEmpty() ? null : top.get(0);
+    }
+
+    // Caller holds the sketch lock; a stripe lock is never held while taking it, so this cannot deadlock
+    private void drain() {
+        for (Stripe stripe : stripes) {
+            Batch batch;
+            synchronized (stripe) {
+                batch = stripe.take();
+            }
+            if (batch != null) {
+                apply(batch);
+            }
+        }
+    }
+
+    private void apply(Batch batch) {
+        for (int i = 0; i < batch.size; i++) {
+            double weight = weight(batch.times[i]);
+            Entry entry = entryFor(batch.documentIds[i], weight);
+            entry.ops += weight;
+            entry.bytes += batch.bytes[i] * weight;
+        }
+    }
+
+    private Entry entryFor(String documentId, double weight) {
+        Entry entry = entries.get(documentId);
+        if (entry != null) {
+            return entry;
+        }
+        entry = new Entry();
+        if (entries.size() >= capacity) {
+            Map.Entry<String, Entry> coldest = null;
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (coldest == null || e.getValue().ops < coldest.getValue().ops) {
+                    coldest = e;
+                }
+            }
+            entries.remove(coldest.getKey());
+            entry.ops = coldest.getValue().ops;
+            entry.error = coldest.getValue().ops;
+        }
+        entries.put(documentId, entry);
+        return entry;
+    }
+
+    // Weight of an event at time now relative to the landmark; rebase before it overflows
+    private double weight(long now) {
+        double exponent = lambda * (now - landmark);
+        if (exponent > 64) {
+            double rescale = Math.exp(-exponent);
+            for (Entry entry : entries.values()) {
+                entry.ops *= rescale;
+                entry.bytes *= rescale;
+                entry.error *= rescale;
+            }
+            landmark = now;
+            return 1;
+        }
+        return Math.exp(exponent);
+    }
+
+    private static class Stripe {
+        private Batch batch = new Batch();
+
+        // Returns the batch once it is full, leaving a fresh one in its place
+        Batch add(String documentId, int byteCount, long time) {
+            batch.documentIds[batch.size] = documentId;
+            batch.bytes[batch.size] = byteCount;
+            batch.times[batch.size] = time;
+            if (++batch.size < STRIPE_CAPACITY) {
+                return null;
+            }
+            return take();
+        }
+
+        Batch take() {
+            if (batch.size == 0) {
+                return null;
+            }
+            Batch taken = batch;
+            batch = new Batch();
+            return taken;
+        }
+    }
+
+    private static class Batch {
+        final String[] documentIds = new String[STRIPE_CAPACITY];
+        final int[] bytes = new int[STRIPE_CAPACITY];
+        final long[] times = new long[STRIPE_CAPACITY];
+        int size;
+    }
+
+    private static class Entry {
+        double ops;
+        double bytes;
+        double error;
+        double subscribers;
+        long subscribersAt;
+    }
+}
@@ -0,0 +1,47 @@
+package com.beetexting.workspace.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One edit from receipt in DocumentService to the end of persistence. The
+ * event duration covers the whole call; lock wait and apply time break it down.
+ */
+@Name("com.beetexting.workspace.OpApplied")
+@Label("Operation Applied")
+@Category({"Workspace", "Collaboration"})
+@Description("An edit applied to a document")
+@StackTrace(false)
+public class OpAppliedEvent extends Event {
+
+    @Label("Change Id")
+    public String changeId;
+
+    @Label("Document Id")
+    public String documentId;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Document Length")
+    @Description("Document length in characters after the edit")
+    public long documentLength;
+
+    @Label("Lock Wait")
+    @Description("Time spent waiting to enter the document monitor")
+    @Timespan(Timespan.NANOSECONDS)
+    public long lockWait;
+
+    @Label("Apply Time")
+    @Description("Time spent mutating the in-memory content")
+    @Timespan(Timespan.NANOSECONDS)
+    public long applyTime;
+}
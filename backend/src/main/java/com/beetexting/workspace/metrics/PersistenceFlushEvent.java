@@ -0,0 +1,42 @@
+package com.beetexting.workspace.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Writes that follow an applied edit: dirty chunks to the blob store, the
+ * revision record and the note itself.
+ */
+@Name("com.beetexting.workspace.PersistenceFlush")
+@Label("Persistence Flush")
+@Category({"Workspace", "Persistence"})
+@Description("Blob, revision and note writes for one edit")
+@StackTrace(false)
+public class PersistenceFlushEvent extends Event {
+
+    @Label("Change Id")
+    public String changeId;
+
+    @Label("Document Id")
+    public String documentId;
+
+    @Label("Chunked")
+    public boolean chunked;
+
+    @Label("Blob Flush")
+    @Timespan(Timespan.NANOSECONDS)
+    public long blobFlush;
+
+    @Label("Revision Write")
+    @Timespan(Timespan.NANOSECONDS)
+    public long revisionWrite;
+
+    @Label("Note Save")
+    @Timespan(Timespan.NANOSECONDS)
+    public long noteSave;
+}
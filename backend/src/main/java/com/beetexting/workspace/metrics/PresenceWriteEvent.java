@@ -0,0 +1,25 @@
+package com.beetexting.workspace.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.beetexting.workspace.PresenceWrite")
+@Label("Presence Write")
+@Category({"Workspace", "Redis"})
+@Description("Presence hash update and TTL refresh in Redis")
+@StackTrace(false)
+public class PresenceWriteEvent extends Event {
+
+    @Label("Document Id")
+    public String documentId;
+
+    @Label("User Id")
+    public String userId;
+
+    @Label("Active")
+    public boolean active;
+}
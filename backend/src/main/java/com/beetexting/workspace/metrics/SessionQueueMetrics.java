@@ -0,0 +1,89 @@
+package com.beetexting.workspace.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks how many outbound frames are waiting per WebSocket session on the
+ * client outbound channel. Sessions are not used as tags; the registry sees a
+ * depth distribution plus the current maximum and total.
+ */
+@Component
+public class SessionQueueMetrics implements ExecutorChannelInterceptor {
+
+    private final Map<String, Integer> depths = new ConcurrentHashMap<>();
+    private final DistributionSummary depthOnEnqueue;
+
+    @Autowired
+    public SessionQueueMetrics(MeterRegistry registry) {
+        this.depthOnEnqueue = DistributionSummary.builder("collab.session.queue.depth")
+            .description("Outbound queue depth of a session when a frame is enqueued")
+            .baseUnit("messages")
+            .register(registry);
+        Gauge.builder("collab.session.queue.depth.max", this, SessionQueueMetrics::maxDepth)
+            .description("Deepest outbound queue across sessions")
+            .baseUnit("messages")
+            .register(registry);
+        Gauge.builder("collab.session.queue.depth.total", this, SessionQueueMetrics::totalDepth)
+            .description("Outbound frames queued across all sessions")
+            .baseUnit("messages")
+            .register(registry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            int depth = depths.merge(sessionId, 1, Integer::sum);
+            depthOnEnqueue.record(depth);
+        }
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        // Rejected by the executor, so afterMessageHandled will never run for it
+        if (!sent) {
+            release(message);
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        release(message);
+    }
+
+    private void release(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            depths.computeIfPresent(sessionId, (id, depth) -> depth > 1 ? depth - 1 : null);
+        }
+    }
+
+    private double maxDepth() {
+        int max = 0;
+        for (int depth : depths.values()) {
+            max = Math.max(max, depth);
+        }
+        return max;
+    }
+
+    private double totalDepth() {
+        long total = 0;
+        for (int depth : depths.values()) {
+            total += depth;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,73 @@
+package com.beetexting.workspace.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DiffHunk {
+    private int oldStart;  // 1-based line numbers, as in unified diff
+    private int oldCount;
+    private int newStart;
+    private int newCount;
+    private List<String> contextBefore;
+    private List<String> deleted;
+    private List<String> inserted;
+    private List<String> contextAfter;
+    private List<Segment> words;  // word-level diff of the changed lines, when requested
+
+    public DiffHunk() {
+        this.contextBefore = new ArrayList<>();
+        this.deleted = new ArrayList<>();
+        this.inserted = new ArrayList<>();
+        this.contextAfter = new ArrayList<>();
+    }
+
+    // Getters and setters
+    public int getOldStart() { return oldStart; }
+    public void setOldStart(int oldStart) { this.oldStart = oldStart; }
+
+    public int getOldCount() { return oldCount; }
+    public void setOldCount(int oldCount) { this.oldCount = oldCount; }
+
+    public int getNewStart() { return newStart; }
+    public void setNewStart(int newStart) { this.newStart = newStart; }
+
+    public int getNewCount() { return newCount; }
+    public void setNewCount(int newCount) { this.newCount = newCount; }
+
+    public List<String> getContextBefore() { return contextBefore; }
+    public void setContextBefore(List<String> contextBefore) { this.contextBefore = contextBefore; }
+
+    public List<String> getDeleted() { return deleted; }
+    public void setDeleted(List<String> deleted) { this.deleted = deleted; }
+
+    public List<String> getInserted() { return inserted; }
+    public void setInserted(List<String> inserted) { this.inserted = inserted; }
+
+    public List<String> getContextAfter() { return contextAfter; }
+    public void setContextAfter(List<String> contextAfter) { this.contextAfter = contextAfter; }
+
+    public List<Segment> getWords() { return words; }
+    public void setWords(List<Segment> words) { this.words = words; }
+
+    public static class Segment {
+        private String type;  // EQUAL, DELETE, INSERT
+        private String text;
+
+        public Segment() {
+        }
+
+        public Segment(String type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+
+        public String getText() { return text; }
+        public void setText(String text) { this.text = text; }
+    }
+}
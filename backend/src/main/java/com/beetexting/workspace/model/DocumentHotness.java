@@ -0,0 +1,37 @@
+package com.beetexting.workspace.model;
+
+public class DocumentHotness {
+    private String documentId;
+    private double opsPerSecond;
+    private double bytesPerSecond;
+    private double subscribers;
+    private double opsPerSecondError;  // upper bound on how much opsPerSecond may be overstated
+
+    public DocumentHotness() {
+    }
+
+    public DocumentHotness(String documentId, double opsPerSecond, double bytesPerSecond,
+                           double subscribers, double opsPerSecondError) {
+        this.documentId = documentId;
+        this.opsPerSecond = opsPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+        this.subscribers = subscribers;
+        this.opsPerSecondError = opsPerSecondError;
+    }
+
+    // Getters and setters
+    public String getDocumentId() { return documentId; }
+    public void setDocumentId(String documentId) { this.documentId = documentId; }
+
+    public double getOpsPerSecond() { return opsPerSecond; }
+    public void setOpsPerSecond(double opsPerSecond) { this.opsPerSecond = opsPerSecond; }
+
+    public double getBytesPerSecond() { return bytesPerSecond; }
+    public void setBytesPerSecond(double bytesPerSecond) { this.bytesPerSecond = bytesPerSecond; }
+
+    public double getSubscribers() { return subscribers; }
+    public void setSubscribers(double subscribers) { this.subscribers = subscribers; }
+
+    public double getOpsPerSecondError() { return opsPerSecondError; }
+    public void setOpsPerSecondError(double opsPerSecondError) { this.opsPerSecondError = opsPerSecondError; }
+}
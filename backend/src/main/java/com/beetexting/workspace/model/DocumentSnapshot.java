@@ -0,0 +1,52 @@
+package com.beetexting.workspace.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class DocumentSnapshot {
+    private String documentId;
+    private String title;
+    private Long version;
+    private String content;
+    private int contentLength;
+    private boolean complete;  // false when only the leading range of a chunked note is included
+    private Set<String> collaborators;
+    private List<PresenceInfo> presence;
+    private List<CursorInfo> cursors;
+
+    public DocumentSnapshot() {
+        this.collaborators = new HashSet<>();
+        this.presence = new ArrayList<>();
+        this.cursors = new ArrayList<>();
+    }
+
+    // Getters and setters
+    public String getDocumentId() { return documentId; }
+    public void setDocumentId(String documentId) { this.documentId = documentId; }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+
+    public int getContentLength() { return contentLength; }
+    public void setContentLength(int contentLength) { this.contentLength = contentLength; }
+
+    public boolean isComplete() { return complete; }
+    public void setComplete(boolean complete) { this.complete = complete; }
+
+    public Set<String> getCollaborators() { return collaborators; }
+    public void setCollaborators(Set<String> collaborators) { this.collaborators = collaborators; }
+
+    public List<PresenceInfo> getPresence() { return presence; }
+    public void setPresence(List<PresenceInfo> presence) { this.presence = presence; }
+
+    public List<CursorInfo> getCursors() { return cursors; }
+    public void setCursors(List<CursorInfo> cursors) { this.cursors = cursors; }
+}
@@ -1,7 +1,9 @@
 package com.beetexting.workspace.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.CompoundIndexes;
@@ -21,7 +23,8 @@ import java.util.Set;
 @CompoundIndexes({
     @CompoundIndex(name = "tenant_title", def = "{'tenantId': 1, 'title': 1}"),
     @CompoundIndex(name = "tenant_tags", def = "{'tenantId': 1, 'tags': 1}"),
-    @CompoundIndex(name = "tenant_sentiment", def = "{'tenantId': 1, 'sentiment.primarySentiment': 1}")
+    @CompoundIndex(name = "tenant_sentiment", def = "{'tenantId': 1, 'sentiment.primarySentiment': 1}"),
+    @CompoundIndex(name = "tenant_updated", def = "{'tenantId': 1, 'updatedAt': -1, '_id': -1}")
 })
 public class Note {
     @Id
@@ -33,9 +36,24 @@ public class Note {
     @TextIndexed(weight = 1)
     private String content;
 
+    // Set when the body lives in the blob store instead of inline
+    private String contentRef;
+    private List<ContentChunk> contentChunks = new ArrayList<>();
+    private int contentLength;
+
     private String tenantId;
     private Set<String> tags = new HashSet<>();
+    // Tags as last read from or written to MongoDB; null for notes never persisted
+    @Transient
+    @JsonIgnore
+    private Set<String> persistedTags;
+    // Body and chunk index as last written to the blob store; lets the next save store only changed chunks
+    @Transient
+    @JsonIgnore
+    private StoredBody storedBody;
+    // Legacy embedded history; new edits are recorded as NoteRevisions
     private List<NoteVersion> versions = new ArrayList<>();
+    private long revision;
     private Set<String> collaborators = new HashSet<>();
     private SentimentInfo sentiment;
 
@@ -53,6 +71,8 @@ public class Note {
     @Data
     public static class NoteVersion {
         private String content;
+        private String contentRef;
+        private List<ContentChunk> contentChunks;
         private Long version;
         private String userId;
         private Instant timestamp;
@@ -62,6 +82,18 @@ public class Note {
         private SentimentInfo sentiment;
     }
 
+    @Data
+    public static class ContentChunk {
+        private String ref;
+        private int length;
+    }
+
+    @Data
+    public static class StoredBody {
+        private final String content;
+        private final List<ContentChunk> chunks;
+    }
+
     @Data
     public static class SentimentInfo {
         private String primarySentiment;
@@ -86,6 +118,14 @@ public class Note {
         this.lastModifiedBy = userId;
     }
 
+    // History for new edits lives in note_revisions; only the head changes here
+    public long recordEdit(String userId) {
+        this.revision++;
+        this.updatedAt = Instant.now();
+        this.lastModifiedBy = userId;
+        return this.revision;
+    }
+
     public void addCollaborator(String userId) {
         this.collaborators.add(userId);
     }
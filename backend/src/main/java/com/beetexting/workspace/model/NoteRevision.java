@@ -0,0 +1,54 @@
+package com.beetexting.workspace.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One entry in a note's edit history. Every {@code keyframeInterval}-th revision
+ * is a keyframe holding the full body; the others hold only the operations that
+ * turn the previous revision into this one.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Document(collection = "note_revisions")
+@CompoundIndexes({
+    @CompoundIndex(name = "note_revision", def = "{'noteId': 1, 'revision': -1}", unique = true),
+    @CompoundIndex(name = "note_keyframe_revision", def = "{'noteId': 1, 'keyframe': 1, 'revision': -1}")
+})
+public class NoteRevision {
+    @Id
+    private String id;
+
+    private String noteId;
+    private String tenantId;
+    private long revision;
+    private Long noteVersion;
+    private boolean keyframe;
+
+    // Keyframe body: inline when small, otherwise a chunk index in the blob store
+    private String content;
+    private List<Note.ContentChunk> contentChunks;
+    private int contentLength;
+
+    // Delta from the previous revision
+    private List<Operation> operations;
+
+    private String userId;
+    private Instant timestamp;
+    private String changeType;
+
+    @Data
+    public static class Operation {
+        private String operation;  // INSERT, DELETE, REPLACE
+        private int startPosition;
+        private int endPosition;
+        private String text;
+    }
+}
@@ -0,0 +1,30 @@
+package com.beetexting.workspace.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * MinHash signature of a note's content, keyed by the note id, so similar-note
+ * lookups can reload a tenant without rehashing every note. A note with no
+ * terms keeps an empty signature, which marks it as already hashed. The note's
+ * update time at hashing tells a load which signatures have gone stale.
+ */
+@Data
+@Document(collection = "note_signatures")
+@CompoundIndexes({
+    @CompoundIndex(name = "tenant_version", def = "{'tenantId': 1, 'version': 1}")
+})
+public class NoteSignature {
+    @Id
+    private String id;
+
+    private String tenantId;
+    private int version;
+    private int[] minHash;
+    private Instant updatedAt;
+}
@@ -0,0 +1,28 @@
+package com.beetexting.workspace.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What a search or list result needs to render one note. Read from the notes
+ * collection through a field projection, so content beyond the snippet,
+ * version history and collaborators never leave MongoDB; the full note is
+ * loaded when a result is opened.
+ */
+@Data
+public class NoteSummary {
+    @Id
+    private String id;
+    private String title;
+    private String snippet;
+    private Set<String> tags;
+    private String sentiment;
+    private Instant updatedAt;
+    private Float score;
+    // [start, end) char offsets of query terms within the snippet; only set for text searches
+    private List<int[]> highlights;
+}
@@ -0,0 +1,28 @@
+package com.beetexting.workspace.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Number of notes in a tenant carrying a tag, kept up to date by delta as notes
+ * are saved and deleted.
+ */
+@Data
+@Document(collection = "tag_usage")
+@CompoundIndexes({
+    @CompoundIndex(name = "tenant_tag", def = "{'tenantId': 1, 'tag': 1}", unique = true)
+})
+public class TagUsage {
+    @Id
+    private String id;
+
+    private String tenantId;
+    private String tag;
+    private long count;
+    private Instant updatedAt;
+}
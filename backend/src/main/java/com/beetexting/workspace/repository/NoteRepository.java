@@ -1,6 +1,7 @@
 package com.beetexting.workspace.repository;
 
 import com.beetexting.workspace.model.Note;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.Aggregation;
@@ -10,24 +11,33 @@ import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface NoteRepository extends MongoRepository<Note, String> {
 
-    @Query("{ 'tenantId': ?0, 'tags': { $in: ?1 }, 'sentiment.primarySentiment': ?2 }")
-    Page<Note> findByTenantIdAndTagsInAndSentiment(
-            String tenantId, Set<String> tags, String sentiment, Pageable pageable);
+    @Query("{ 'tenantId': ?0 }")
+    Page<Note> findByTenantId(String tenantId, Pageable pageable);
 
-    @Query("{ 'tenantId': ?0, 'tags': { $in: ?1 } }")
-    Page<Note> findByTenantIdAndTagsIn(String tenantId, Set<String> tags, Pageable pageable);
+    @Query("{ 'tenantId': ?0 }")
+    Stream<Note> streamByTenantId(String tenantId);
 
-    @Query("{ 'tenantId': ?0, 'sentiment.primarySentiment': ?1 }")
-    Page<Note> findByTenantIdAndSentiment(String tenantId, String sentiment, Pageable pageable);
+    // Id order, so a caller can stop and later resume after the last note it saw
+    @Query(value = "{ 'tenantId': ?0, '_id': { $gt: ?1 } }", sort = "{ '_id': 1 }")
+    Stream<Note> streamByTenantIdAfterId(String tenantId, ObjectId afterId);
 
-    @Query("{ 'tenantId': ?0 }")
-    Page<Note> findByTenantId(String tenantId, Pageable pageable);
+    @Query(value = "{ 'tenantId': ?0 }", count = true)
+    long countByTenantId(String tenantId);
+
+    @Query(value = "{ 'tenantId': ?0 }", fields = "{ 'updatedAt': 1 }")
+    Stream<Note> streamUpdateTimesByTenantId(String tenantId);
+
+    @Query(value = "{ 'tenantId': ?0 }", fields = "{ 'tags': 1 }")
+    Stream<Note> streamTagsByTenantId(String tenantId);
+
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'tenantId': 1, 'tags': 1 }")
+    Optional<Note> findTagsById(String id);
 
     @Query("{ 'tenantId': ?0, $text: { $search: ?1 } }")
     Page<Note> searchByTenantIdAndContent(String tenantId, String query, Pageable pageable);
@@ -35,16 +45,12 @@ public interface NoteRepository extends MongoRepository<Note, String> {
     @Query("{ 'tenantId': ?0, 'updatedAt': { $gt: ?1 } }")
     List<Note> findByTenantIdAndUpdatedAtAfter(String tenantId, Instant since);
 
-    @Aggregation(pipeline = {
-        "{ $match: { 'tenantId': ?0 } }",
-        "{ $unwind: '$tags' }",
-        "{ $match: { 'tags': { $regex: ?1, $options: 'i' } } }",
-        "{ $group: { _id: '$tags', count: { $sum: 1 } } }",
-        "{ $sort: { count: -1 } }",
-        "{ $limit: ?2 }",
-        "{ $project: { _id: 0, tag: '$_id' } }"
-    })
-    List<String> findTopTags(String tenantId, String prefix, int limit);
+    @Query("{ 'tenantId': ?0, 'updatedAt': { $gt: ?1 } }")
+    Stream<Note> streamByTenantIdAndUpdatedAtAfter(String tenantId, Instant since);
+
+    // Ids and timestamps only, so polling for other nodes' saves reads no bodies
+    @Query(value = "{ 'tenantId': ?0, 'updatedAt': { $gt: ?1 } }", fields = "{ 'updatedAt': 1 }")
+    List<Note> findUpdateTimesByTenantIdAndUpdatedAtAfter(String tenantId, Instant since);
 
     @Aggregation(pipeline = {
         "{ $match: { 'tenantId': ?0 } }",
@@ -52,17 +58,7 @@ public interface NoteRepository extends MongoRepository<Note, String> {
         "{ $group: { _id: '$tags', count: { $sum: 1 } } }",
         "{ $project: { _id: 0, tag: '$_id', count: 1 } }"
     })
-    List<TagCount> getTagUsageStats(String tenantId);
-
-    @Query(value = "{ " +
-        "'tenantId': ?0, " +
-        "_id': { $ne: ?1 }, " +
-        "$or: [ " +
-            "{ 'tags': { $in: ?2 } }, " +
-            "{ 'sentiment.primarySentiment': ?3 } " +
-        "] " +
-    "}", sort = "{ score: -1 }")
-    List<Note> findSimilarNotes(String tenantId, String noteId, Set<String> tags, String sentiment);
+    List<TagCount> aggregateTagCounts(String tenantId);
 
     interface TagCount {
         String getTag();
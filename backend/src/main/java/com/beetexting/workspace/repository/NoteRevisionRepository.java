@@ -0,0 +1,25 @@
+package com.beetexting.workspace.repository;
+
+import com.beetexting.workspace.model.NoteRevision;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface NoteRevisionRepository extends MongoRepository<NoteRevision, String> {
+
+    Optional<NoteRevision> findFirstByNoteIdAndKeyframeTrueAndRevisionLessThanEqualOrderByRevisionDesc(
+            String noteId, long revision);
+
+    @Query(value = "{ 'noteId': ?0, 'revision': { $gt: ?1, $lte: ?2 } }", sort = "{ 'revision': 1 }")
+    List<NoteRevision> findRevisionRange(String noteId, long afterRevision, long toRevision);
+
+    @Query(value = "{ 'noteId': ?0, 'revision': { $lt: ?1 } }",
+           fields = "{ 'content': 0, 'contentChunks': 0, 'operations': 0 }",
+           sort = "{ 'revision': -1 }")
+    List<NoteRevision> findSummariesBefore(String noteId, long beforeRevision, Pageable pageable);
+}
@@ -0,0 +1,15 @@
+package com.beetexting.workspace.repository;
+
+import com.beetexting.workspace.model.NoteSignature;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.stream.Stream;
+
+@Repository
+public interface NoteSignatureRepository extends MongoRepository<NoteSignature, String> {
+
+    @Query("{ 'tenantId': ?0, 'version': ?1 }")
+    Stream<NoteSignature> streamByTenantIdAndVersion(String tenantId, int version);
+}
@@ -0,0 +1,18 @@
+package com.beetexting.workspace.repository;
+
+import com.beetexting.workspace.model.TagUsage;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TagUsageRepository extends MongoRepository<TagUsage, String> {
+
+    @Query("{ 'tenantId': ?0, 'count': { $gt: 0 } }")
+    List<TagUsage> findByTenantId(String tenantId);
+
+    @Query(value = "{ 'tenantId': ?0, 'count': { $lte: 0 } }", delete = true)
+    void deleteEmptyByTenantId(String tenantId);
+}
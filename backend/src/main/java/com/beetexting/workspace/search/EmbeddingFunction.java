@@ -0,0 +1,17 @@
+package com.beetexting.workspace.search;
+
+/**
+ * Maps note text to a fixed-length vector for semantic search, computed in
+ * process so content never leaves the server. Vectors must have unit length,
+ * since the index ranks by dot product.
+ */
+public interface EmbeddingFunction {
+
+    // Identifies the model and its parameters; persisted indexes built under another name are rebuilt
+    String name();
+
+    int dimensions();
+
+    // A zero vector when the text has nothing to embed
+    float[] embed(String text);
+}
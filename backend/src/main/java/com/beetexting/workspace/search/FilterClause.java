@@ -0,0 +1,208 @@
+package com.beetexting.workspace.search;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * One conjunct of a {@link NoteQuery}'s filters, resolved per segment to the
+ * docs it matches. Segment doc ids are dense, so candidate sets are plain
+ * bitsets and intersecting two clauses is a word-at-a-time AND.
+ */
+abstract class FilterClause {
+
+    // Upper bound on the docs this clause matches in the segment
+    abstract long estimate(SegmentReader reader);
+
+    abstract BitSet matches(SegmentReader reader);
+
+    // Clears the candidates this clause rejects
+    abstract void retain(SegmentReader reader, BitSet candidates);
+
+    static List<FilterClause> plan(NoteQuery query) {
+        List<FilterClause> clauses = new ArrayList<>();
+        if (query.hasSubstring()) {
+            List<String> terms = new ArrayList<>();
+            Trigrams.of(query.getSubstring()).forEach(gram -> terms.add(NoteFields.TRIGRAM + gram));
+            clauses.add(new TrigramClause(terms));
+        }
+        if (query.getTags() != null && !query.getTags().isEmpty()) {
+            if (query.getTagMode() == NoteQuery.TagMode.ALL) {
+                for (String tag : query.getTags()) {
+                    clauses.add(new TermsClause(List.of(NoteFields.TAG + tag)));
+                }
+            } else {
+                List<String> terms = new ArrayList<>();
+                query.getTags().forEach(tag -> terms.add(NoteFields.TAG + tag));
+                clauses.add(new TermsClause(terms));
+            }
+        }
+        if (query.getSentiment() != null) {
+            clauses.add(new TermsClause(List.of(NoteFields.SENTIMENT + query.getSentiment())));
+        }
+        if (query.getAuthors() != null && !query.getAuthors().isEmpty()) {
+            List<String> terms = new ArrayList<>();
+            query.getAuthors().forEach(author -> terms.add(NoteFields.AUTHOR + author));
+            clauses.add(new TermsClause(terms));
+        }
+        if (query.getUpdatedFrom() != null || query.getUpdatedTo() != null) {
+            clauses.add(new RangeClause(
+                query.getUpdatedFrom() != null ? query.getUpdatedFrom().toEpochMilli() : Long.MIN_VALUE + 1,
+                query.getUpdatedTo() != null ? query.getUpdatedTo().toEpochMilli() : Long.MAX_VALUE));
+        }
+        return clauses;
+    }
+
+    /**
+     * Live docs of the segment matching every clause. The most selective
+     * clause is materialized first and the rest only narrow it, stopping as
+     * soon as nothing is left.
+     */
+    static BitSet apply(List<FilterClause> clauses, SegmentReader reader, BitSet deleted) {
+        List<FilterClause> ordered = new ArrayList<>(clauses);
+        ordered.sort(Comparator.comparingLong(clause -> clause.estimate(reader)));
+        if (ordered.get(0).estimate(reader) == 0) {
+            return new BitSet();
+        }
+        BitSet candidates = ordered.get(0).matches(reader);
+        candidates.andNot(deleted);
+        for (int i = 1; i < ordered.size() && !candidates.isEmpty(); i++) {
+            ordered.get(i).retain(reader, candidates);
+        }
+        return candidates;
+    }
+
+    // Docs having any of the terms
+    static final class TermsClause extends FilterClause {
+        private final List<String> terms;
+
+        TermsClause(List<String> terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        long estimate(SegmentReader reader) {
+            long total = 0;
+            for (String term : terms) {
+                total += reader.docFreq(term);
+            }
+            return total;
+        }
+
+        @Override
+        BitSet matches(SegmentReader reader) {
+            BitSet docs = new BitSet(reader.maxDoc());
+            for (String term : terms) {
+                SegmentReader.PostingsCursor cursor = reader.postings(term);
+                if (cursor != null) {
+                    while (cursor.next()) {
+                        docs.set(cursor.doc());
+                    }
+                }
+            }
+            return docs;
+        }
+
+        @Override
+        void retain(SegmentReader reader, BitSet candidates) {
+            candidates.and(matches(reader));
+        }
+    }
+
+    /**
+     * Docs having every trigram of a substring. Only narrows: a doc with all
+     * the grams may still lack the substring, so callers verify survivors
+     * against the text. That lets intersection start from the rarest gram and
+     * stop once few candidates remain, rather than walking the long postings
+     * of common grams, so cost follows the rarest gram, not the corpus.
+     */
+    static final class TrigramClause extends FilterClause {
+        // Below this many candidates, verification is cheaper than more postings
+        static final int ENOUGH_CANDIDATES = 64;
+
+        private final List<String> terms;
+
+        TrigramClause(List<String> terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        long estimate(SegmentReader reader) {
+            long rarest = Long.MAX_VALUE;
+            for (String term : terms) {
+                rarest = Math.min(rarest, reader.docFreq(term));
+            }
+            return rarest;
+        }
+
+        @Override
+        BitSet matches(SegmentReader reader) {
+            BitSet candidates = new BitSet(reader.maxDoc());
+            candidates.set(0, reader.maxDoc());
+            retain(reader, candidates);
+            return candidates;
+        }
+
+        @Override
+        void retain(SegmentReader reader, BitSet candidates) {
+            List<String> rarestFirst = new ArrayList<>(terms);
+            rarestFirst.sort(Comparator.comparingInt(reader::docFreq));
+            for (int i = 0; i < rarestFirst.size() && !candidates.isEmpty(); i++) {
+                if (i > 0 && candidates.cardinality() <= ENOUGH_CANDIDATES) {
+                    return;
+                }
+                String term = rarestFirst.get(i);
+                BitSet docs = new BitSet(reader.maxDoc());
+                SegmentReader.PostingsCursor cursor = reader.postings(term);
+                if (cursor != null) {
+                    while (cursor.next()) {
+                        docs.set(cursor.doc());
+                    }
+                }
+                candidates.and(docs);
+            }
+        }
+    }
+
+    // Docs updated in [from, to)
+    static final class RangeClause extends FilterClause {
+        private final long from;
+        private final long to;
+
+        RangeClause(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        // Selectivity is unknown without a scan, so ranges go last and only check survivors
+        @Override
+        long estimate(SegmentReader reader) {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        BitSet matches(SegmentReader reader) {
+            BitSet docs = new BitSet(reader.maxDoc());
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                if (inRange(reader.updatedAt(doc))) {
+                    docs.set(doc);
+                }
+            }
+            return docs;
+        }
+
+        @Override
+        void retain(SegmentReader reader, BitSet candidates) {
+            for (int doc = candidates.nextSetBit(0); doc >= 0; doc = candidates.nextSetBit(doc + 1)) {
+                if (!inRange(reader.updatedAt(doc))) {
+                    candidates.clear(doc);
+                }
+            }
+        }
+
+        private boolean inRange(long updatedAt) {
+            return updatedAt >= from && updatedAt < to;
+        }
+    }
+}
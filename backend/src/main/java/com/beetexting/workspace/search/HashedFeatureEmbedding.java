@@ -0,0 +1,71 @@
+package com.beetexting.workspace.search;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Embedding by the hashing trick: analyzed terms and adjacent term pairs
+ * are hashed into a fixed number of signed buckets, weighted by sublinear
+ * term frequency. A random sign per feature makes collisions cancel out on
+ * average rather than add up, so dot products approximate the cosine of the
+ * full bag-of-words vectors. It captures shared vocabulary and phrasing, not
+ * synonyms; a learned model can be plugged in behind {@link EmbeddingFunction}
+ * for that.
+ */
+public class HashedFeatureEmbedding implements EmbeddingFunction {
+    // Pairs carry some word order; weighted below single terms so topic words dominate
+    private static final float PAIR_WEIGHT = 0.5f;
+
+    private final int dimensions;
+
+    public HashedFeatureEmbedding(int dimensions) {
+        if (dimensions <= 0) {
+            throw new IllegalArgumentException("dimensions must be positive");
+        }
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public String name() {
+        return "hashed-v1-" + dimensions;
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        List<String> terms = TextAnalyzer.terms(text);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < terms.size(); i++) {
+            counts.merge(terms.get(i), 1, Integer::sum);
+            if (i > 0) {
+                counts.merge(terms.get(i - 1) + ' ' + terms.get(i), 1, Integer::sum);
+            }
+        }
+        float[] vector = new float[dimensions];
+        for (Map.Entry<String, Integer> feature : counts.entrySet()) {
+            long hash = MinHash.mix(feature.getKey().hashCode() * 0x9E3779B97F4A7C15L);
+            float weight = (float) (1 + Math.log(feature.getValue()));
+            if (feature.getKey().indexOf(' ') >= 0) {
+                weight *= PAIR_WEIGHT;
+            }
+            int bucket = (int) Math.floorMod(hash, (long) dimensions);
+            vector[bucket] += (hash >>> 63) == 0 ? weight : -weight;
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,397 @@
+package com.beetexting.workspace.search;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Hierarchical navigable small world graph over unit-length vectors, ranked
+ * by dot product (cosine similarity). Each node sits on a random number of
+ * layers with geometrically fewer nodes per layer; a query greedily descends
+ * from the sparse top layer and then runs a best-first search of width
+ * {@code ef} on the bottom layer, so it touches a few thousand vectors at
+ * most rather than the whole tenant.
+ *
+ * Nodes are never unlinked: a replaced or deleted note is tombstoned, still
+ * routes searches, and is dropped from results. {@link TenantVectors}
+ * rebuilds the graph when tombstones pile up. Concurrent searches are safe;
+ * writes need exclusive access.
+ */
+final class HnswIndex {
+    private static final Comparator<Candidate> BEST_FIRST = (a, b) -> Float.compare(b.similarity, a.similarity);
+    private static final Comparator<Candidate> WORST_FIRST = (a, b) -> Float.compare(a.similarity, b.similarity);
+    private static final ThreadLocal<Visited> VISITED = ThreadLocal.withInitial(Visited::new);
+
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom();
+
+    private float[] vectors;
+    private String[] noteIds;
+    // neighbors[node][layer][0] is the count, followed by neighbor ordinals
+    private int[][][] neighbors;
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private int size;
+    private int entryPoint = -1;
+    private int maxLayer = -1;
+
+    HnswIndex(int dimensions, int m, int efConstruction) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectors = new float[dimensions * 16];
+        this.noteIds = new String[16];
+        this.neighbors = new int[16][][];
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    // Nodes including tombstones
+    int size() {
+        return size;
+    }
+
+    int liveSize() {
+        return ordinals.size();
+    }
+
+    boolean contains(String noteId) {
+        return ordinals.containsKey(noteId);
+    }
+
+    void remove(String noteId) {
+        Integer ordinal = ordinals.remove(noteId);
+        if (ordinal != null) {
+            deleted.set(ordinal);
+        }
+    }
+
+    void put(String noteId, float[] vector) {
+        remove(noteId);
+        int layer = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        int node = append(noteId, vector, layer);
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLayer = layer;
+            return;
+        }
+        int nearest = entryPoint;
+        for (int l = maxLayer; l > layer; l--) {
+            nearest = greedy(vector, nearest, l);
+        }
+        for (int l = Math.min(layer, maxLayer); l >= 0; l--) {
+            List<Candidate> found = searchLayer(vector, nearest, efConstruction, l);
+            int[] selected = selectNeighbors(found, l == 0 ? maxM0 : m);
+            int[] list = neighbors[node][l];
+            for (int neighbor : selected) {
+                list[++list[0]] = neighbor;
+                link(neighbor, node, l);
+            }
+            nearest = found.get(0).node;
+        }
+        if (layer > maxLayer) {
+            entryPoint = node;
+            maxLayer = layer;
+        }
+    }
+
+    // Up to k live notes nearest the query, best first, scored by cosine similarity
+    List<SearchHit> search(float[] query, int k, int ef) {
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+        int nearest = entryPoint;
+        for (int l = maxLayer; l > 0; l--) {
+            nearest = greedy(query, nearest, l);
+        }
+        List<SearchHit> hits = new ArrayList<>(k);
+        for (Candidate candidate : searchLayer(query, nearest, Math.max(ef, k), 0)) {
+            if (!deleted.get(candidate.node)) {
+                hits.add(new SearchHit(noteIds[candidate.node], candidate.similarity));
+                if (hits.size() == k) {
+                    break;
+                }
+            }
+        }
+        return hits;
+    }
+
+    // Live entries in insertion order, for rebuilding without tombstones
+    void forEachLive(VectorConsumer consumer) {
+        for (int node = 0; node < size; node++) {
+            if (!deleted.get(node)) {
+                consumer.accept(noteIds[node], Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions));
+            }
+        }
+    }
+
+    interface VectorConsumer {
+        void accept(String noteId, float[] vector);
+    }
+
+    private int append(String noteId, float[] vector, int layer) {
+        if (size == noteIds.length) {
+            int capacity = size * 2;
+            vectors = Arrays.copyOf(vectors, capacity * dimensions);
+            noteIds = Arrays.copyOf(noteIds, capacity);
+            neighbors = Arrays.copyOf(neighbors, capacity);
+        }
+        int node = size++;
+        System.arraycopy(vector, 0, vectors, node * dimensions, dimensions);
+        noteIds[node] = noteId;
+        neighbors[node] = new int[layer + 1][];
+        for (int l = 0; l <= layer; l++) {
+            neighbors[node][l] = new int[(l == 0 ? maxM0 : m) + 1];
+        }
+        ordinals.put(noteId, node);
+        return node;
+    }
+
+    private int greedy(float[] query, int start, int layer) {
+        int current = start;
+        float best = similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] list = neighbors[current][layer];
+            for (int i = 1; i <= list[0]; i++) {
+                float similarity = similarity(query, list[i]);
+                if (similarity > best) {
+                    best = similarity;
+                    current = list[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    // The ef nearest nodes reachable on the layer, best first, tombstones included
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int layer) {
+        Visited visited = VISITED.get();
+        visited.reset(size);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(WORST_FIRST);
+        Candidate first = new Candidate(start, similarity(query, start));
+        visited.mark(start);
+        frontier.add(first);
+        results.add(first);
+        while (!frontier.isEmpty()) {
+            Candidate current = frontier.poll();
+            if (results.size() >= ef && current.similarity < results.peek().similarity) {
+                break;
+            }
+            int[] list = neighbors[current.node][layer];
+            for (int i = 1; i <= list[0]; i++) {
+                int neighbor = list[i];
+                if (!visited.mark(neighbor)) {
+                    continue;
+                }
+                float similarity = similarity(query, neighbor);
+                if (results.size() < ef || similarity > results.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbor, similarity);
+                    frontier.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Candidate> ordered = new ArrayList<>(results);
+        ordered.sort(BEST_FIRST);
+        return ordered;
+    }
+
+    /**
+     * Keeps a candidate only if it is closer to the new node than to every
+     * neighbor already kept, which spreads links across directions instead of
+     * spending them all on one tight cluster; leftover slots are then filled
+     * with the nearest pruned candidates.
+     */
+    private int[] selectNeighbors(List<Candidate> candidates, int max) {
+        int[] selected = new int[Math.min(max, candidates.size())];
+        int count = 0;
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (count == selected.length) {
+                break;
+            }
+            boolean diverse = true;
+            for (int i = 0; i < count && diverse; i++) {
+                diverse = similarity(candidate.node, selected[i]) <= candidate.similarity;
+            }
+            if (diverse) {
+                selected[count++] = candidate.node;
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; count < selected.length && i < pruned.size(); i++) {
+            selected[count++] = pruned.get(i).node;
+        }
+        return selected;
+    }
+
+    private void link(int node, int neighbor, int layer) {
+        int[] list = neighbors[node][layer];
+        int max = list.length - 1;
+        if (list[0] < max) {
+            list[++list[0]] = neighbor;
+            return;
+        }
+        // Full: reselect from the existing links plus the new one. Cheaper pruning (dropping
+        // the farthest) cost a third of the recall on clustered notes in testing.
+        List<Candidate> candidates = new ArrayList<>(max + 1);
+        for (int i = 1; i <= list[0]; i++) {
+            candidates.add(new Candidate(list[i], similarity(node, list[i])));
+        }
+        candidates.add(new Candidate(neighbor, similarity(node, neighbor)));
+        candidates.sort(BEST_FIRST);
+        int[] selected = selectNeighbors(candidates, max);
+        list[0] = selected.length;
+        System.arraycopy(selected, 0, list, 1, selected.length);
+    }
+
+    private float similarity(float[] query, int node) {
+        return dot(query, 0, vectors, node * dimensions, dimensions);
+    }
+
+    private float similarity(int a, int b) {
+        return dot(vectors, a * dimensions, vectors, b * dimensions, dimensions);
+    }
+
+    // Four independent sums, since the JIT will not reorder a single floating point reduction
+    private static float dot(float[] a, int offsetA, float[] b, int offsetB, int length) {
+        float sum0 = 0;
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += a[offsetA + i] * b[offsetB + i];
+            sum1 += a[offsetA + i + 1] * b[offsetB + i + 1];
+            sum2 += a[offsetA + i + 2] * b[offsetB + i + 2];
+            sum3 += a[offsetA + i + 3] * b[offsetB + i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += a[offsetA + i] * b[offsetB + i];
+        }
+        return sum0 + sum1 + sum2 + sum3;
+    }
+
+    /**
+     * Layout: int m, int efConstruction, int size, int entryPoint, int
+     * maxLayer, then per node its note id, tombstone flag, vector, layer count
+     * and per layer the neighbor count and ordinals.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(size);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLayer);
+        for (int node = 0; node < size; node++) {
+            out.writeUTF(noteIds[node]);
+            out.writeBoolean(deleted.get(node));
+            for (int i = node * dimensions; i < (node + 1) * dimensions; i++) {
+                out.writeFloat(vectors[i]);
+            }
+            out.writeByte(neighbors[node].length);
+            for (int[] list : neighbors[node]) {
+                out.writeShort(list[0]);
+                for (int i = 1; i <= list[0]; i++) {
+                    out.writeInt(list[i]);
+                }
+            }
+        }
+    }
+
+    static HnswIndex readFrom(DataInput in, int dimensions) throws IOException {
+        HnswIndex index = new HnswIndex(dimensions, in.readInt(), in.readInt());
+        int size = in.readInt();
+        int capacity = Math.max(16, size);
+        index.vectors = new float[capacity * dimensions];
+        index.noteIds = new String[capacity];
+        index.neighbors = new int[capacity][][];
+        index.size = size;
+        index.entryPoint = in.readInt();
+        index.maxLayer = in.readInt();
+        for (int node = 0; node < size; node++) {
+            String noteId = in.readUTF();
+            index.noteIds[node] = noteId;
+            if (in.readBoolean()) {
+                index.deleted.set(node);
+            } else {
+                index.ordinals.put(noteId, node);
+            }
+            for (int i = node * dimensions; i < (node + 1) * dimensions; i++) {
+                index.vectors[i] = in.readFloat();
+            }
+            int layers = in.readUnsignedByte();
+            index.neighbors[node] = new int[layers][];
+            for (int l = 0; l < layers; l++) {
+                int[] list = new int[(l == 0 ? index.maxM0 : index.m) + 1];
+                list[0] = in.readUnsignedShort();
+                for (int i = 1; i <= list[0]; i++) {
+                    list[i] = in.readInt();
+                }
+                index.neighbors[node][l] = list;
+            }
+        }
+        return index;
+    }
+
+    private static final class Candidate {
+        final int node;
+        final float similarity;
+
+        Candidate(int node, float similarity) {
+            this.node = node;
+            this.similarity = similarity;
+        }
+    }
+
+    // Per-thread visit marks, cleared in O(1) by bumping the epoch
+    private static final class Visited {
+        int[] marks = new int[0];
+        int epoch;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == 0) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        // True the first time a node is marked in this epoch
+        boolean mark(int node) {
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+}
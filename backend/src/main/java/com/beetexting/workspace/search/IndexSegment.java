@@ -0,0 +1,284 @@
+package com.beetexting.workspace.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only view of a segment file written by {@link SegmentWriter}. The file
+ * is memory-mapped, so postings and the term dictionary live in the page cache;
+ * the heap only holds this object. All reads use absolute offsets, which makes
+ * one instance safe to share between searching threads.
+ */
+final class IndexSegment implements SegmentReader {
+    private final String name;
+    private final ByteBuffer data;
+    private final int docCount;
+    private final int termCount;
+    private final long totalLength;
+    private final int termBytesOffset;
+    private final int termOffsetsOffset;
+    private final int postingsOffsetsOffset;
+    private final int docFreqsOffset;
+    private final int docLengthsOffset;
+    private final int noteIdBytesOffset;
+    private final int noteIdOffsetsOffset;
+    private final int sortedDocsOffset;
+    private final int updatedAtsOffset;
+    private final long sizeInBytes;
+
+    private IndexSegment(String name, ByteBuffer data) throws IOException {
+        this.name = name;
+        this.data = data;
+        this.sizeInBytes = data.capacity();
+        if (data.getInt(0) != SegmentWriter.MAGIC || data.getInt(4) != SegmentWriter.VERSION) {
+            throw new IOException("Not a search segment: " + name);
+        }
+        this.docCount = data.getInt(8);
+        this.termCount = data.getInt(12);
+        this.totalLength = data.getLong(16);
+        this.termBytesOffset = (int) data.getLong(24);
+        this.termOffsetsOffset = (int) data.getLong(32);
+        this.postingsOffsetsOffset = (int) data.getLong(40);
+        this.docFreqsOffset = (int) data.getLong(48);
+        this.docLengthsOffset = (int) data.getLong(56);
+        this.noteIdBytesOffset = (int) data.getLong(64);
+        this.noteIdOffsetsOffset = (int) data.getLong(72);
+        this.sortedDocsOffset = (int) data.getLong(80);
+        this.updatedAtsOffset = (int) data.getLong(88);
+    }
+
+    static IndexSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Segment " + file + " exceeds 2 GB");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new IndexSegment(file.getFileName().toString(), data);
+        }
+    }
+
+    String name() {
+        return name;
+    }
+
+    long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    long totalLength() {
+        return totalLength;
+    }
+
+    @Override
+    public int maxDoc() {
+        return docCount;
+    }
+
+    @Override
+    public String noteId(int doc) {
+        int start = data.getInt(noteIdOffsetsOffset + doc * 4);
+        int end = data.getInt(noteIdOffsetsOffset + (doc + 1) * 4);
+        return decode(noteIdBytesOffset + start, end - start);
+    }
+
+    @Override
+    public int docLength(int doc) {
+        return data.getInt(docLengthsOffset + doc * 4);
+    }
+
+    @Override
+    public long updatedAt(int doc) {
+        return data.getLong(updatedAtsOffset + doc * 8);
+    }
+
+    @Override
+    public int docFreq(String term) {
+        int ord = findTerm(term);
+        return ord >= 0 ? data.getInt(docFreqsOffset + ord * 4) : 0;
+    }
+
+    @Override
+    public PostingsCursor postings(String term) {
+        int ord = findTerm(term);
+        if (ord < 0) {
+            return null;
+        }
+        int start = (int) data.getLong(postingsOffsetsOffset + ord * 8);
+        return new MappedPostings(start, data.getInt(docFreqsOffset + ord * 4));
+    }
+
+    @Override
+    public Iterator<String> terms() {
+        return new Iterator<>() {
+            private int ord;
+
+            @Override
+            public boolean hasNext() {
+                return ord < termCount;
+            }
+
+            @Override
+            public String next() {
+                if (ord >= termCount) {
+                    throw new NoSuchElementException();
+                }
+                return term(ord++);
+            }
+        };
+    }
+
+    // A flushed buffer can hold superseded docs for the same note; the last one is the newest
+    @Override
+    public int findDoc(String noteId) {
+        int low = 0;
+        int high = docCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int doc = data.getInt(sortedDocsOffset + mid * 4);
+            int cmp = noteId(doc).compareTo(noteId);
+            if (cmp <= 0) {
+                if (cmp == 0) {
+                    found = doc;
+                }
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private String term(int ord) {
+        int start = data.getInt(termOffsetsOffset + ord * 4);
+        int end = data.getInt(termOffsetsOffset + (ord + 1) * 4);
+        return decode(termBytesOffset + start, end - start);
+    }
+
+    // Binary search comparing raw UTF-8 bytes, so no strings are built on the way
+    private int findTerm(String term) {
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int start = data.getInt(termOffsetsOffset + mid * 4);
+            int end = data.getInt(termOffsetsOffset + (mid + 1) * 4);
+            int cmp = compare(termBytesOffset + start, end - start, key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int compare(int offset, int length, byte[] key) {
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = Integer.compare(data.get(offset + i) & 0xFF, key[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        data.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private final class MappedPostings implements PostingsCursor {
+        private int offset;
+        private int remaining;
+        private int doc;
+        private int freq;
+        private int positionCount;
+        private int positionsLeft;
+        private int position;
+        private int startOffset;
+        private int offsetLength;
+
+        MappedPostings(int offset, int docFreq) {
+            this.offset = offset;
+            this.remaining = docFreq;
+        }
+
+        @Override
+        public boolean next() {
+            // Skip positions the caller did not read
+            while (positionsLeft > 0) {
+                nextPosition();
+            }
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            doc += readVInt();
+            freq = readVInt();
+            positionCount = readVInt();
+            positionsLeft = positionCount;
+            position = 0;
+            startOffset = 0;
+            return true;
+        }
+
+        @Override
+        public int doc() {
+            return doc;
+        }
+
+        @Override
+        public int freq() {
+            return freq;
+        }
+
+        @Override
+        public int positionCount() {
+            return positionCount;
+        }
+
+        @Override
+        public int nextPosition() {
+            positionsLeft--;
+            position += readVInt();
+            startOffset += readVInt();
+            offsetLength = readVInt();
+            return position;
+        }
+
+        @Override
+        public int startOffset() {
+            return startOffset;
+        }
+
+        @Override
+        public int offsetLength() {
+            return offsetLength;
+        }
+
+        private int readVInt() {
+            byte b = data.get(offset++);
+            int value = b & 0x7F;
+            for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+                b = data.get(offset++);
+                value |= (b & 0x7F) << shift;
+            }
+            return value;
+        }
+    }
+}
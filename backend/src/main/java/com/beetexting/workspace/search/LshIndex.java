@@ -0,0 +1,114 @@
+package com.beetexting.workspace.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Locality-sensitive hashing over one tenant's {@link MinHash} signatures.
+ * Each signature is cut into {@link #BANDS} bands of {@link #ROWS} slots and
+ * every band hashed to a bucket, so two notes share a bucket with probability
+ * {@code 1 - (1 - s^ROWS)^BANDS} for Jaccard similarity {@code s}: above 0.9
+ * from {@code s = 0.55}, under 0.1 below {@code s = 0.2}. A lookup only reads
+ * the note's own buckets, capped at {@link #MAX_CANDIDATES}, and ranks those
+ * by their estimated similarity. Not thread-safe.
+ */
+final class LshIndex {
+    static final int BANDS = 32;
+    static final int ROWS = MinHash.NUM_HASHES / BANDS;
+    // Bounds the work for notes sitting in huge buckets, such as copies of one template
+    static final int MAX_CANDIDATES = 1000;
+    static final float MIN_SIMILARITY = 0.1f;
+
+    private static final Comparator<SearchHit> WORST_FIRST = Comparator.comparingDouble(SearchHit::getScore)
+        .thenComparing(SearchHit::getNoteId, Comparator.reverseOrder());
+
+    private final Map<String, int[]> signatures = new HashMap<>();
+    private final Map<Long, Set<String>> buckets = new HashMap<>();
+
+    int size() {
+        return signatures.size();
+    }
+
+    void put(String noteId, int[] signature) {
+        int[] previous = signatures.put(noteId, signature);
+        if (previous != null) {
+            for (int band = 0; band < BANDS; band++) {
+                long key = bucket(previous, band);
+                Set<String> members = buckets.get(key);
+                if (members != null && members.remove(noteId) && members.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+        for (int band = 0; band < BANDS; band++) {
+            buckets.computeIfAbsent(bucket(signature, band), key -> new HashSet<>(2)).add(noteId);
+        }
+    }
+
+    void remove(String noteId) {
+        int[] previous = signatures.remove(noteId);
+        if (previous == null) {
+            return;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            long key = bucket(previous, band);
+            Set<String> members = buckets.get(key);
+            if (members != null && members.remove(noteId) && members.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    // Up to limit notes most similar to the given one, best first, scored by estimated Jaccard similarity
+    List<SearchHit> similar(String noteId, int limit) {
+        int[] signature = signatures.get(noteId);
+        if (signature == null || limit <= 0) {
+            return List.of();
+        }
+        Set<String> seen = new HashSet<>();
+        seen.add(noteId);
+        PriorityQueue<SearchHit> top = new PriorityQueue<>(WORST_FIRST);
+        scan:
+        for (int band = 0; band < BANDS; band++) {
+            Set<String> members = buckets.get(bucket(signature, band));
+            if (members == null) {
+                continue;
+            }
+            for (String candidate : members) {
+                if (!seen.add(candidate)) {
+                    continue;
+                }
+                float similarity = MinHash.similarity(signature, signatures.get(candidate));
+                if (similarity >= MIN_SIMILARITY) {
+                    SearchHit hit = new SearchHit(candidate, similarity);
+                    if (top.size() < limit) {
+                        top.add(hit);
+                    } else if (WORST_FIRST.compare(hit, top.peek()) > 0) {
+                        top.poll();
+                        top.add(hit);
+                    }
+                }
+                if (seen.size() > MAX_CANDIDATES) {
+                    break scan;
+                }
+            }
+        }
+        List<SearchHit> ranked = new ArrayList<>(top);
+        ranked.sort(WORST_FIRST.reversed());
+        return ranked;
+    }
+
+    private static long bucket(int[] signature, int band) {
+        long key = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = MinHash.mix(key * 0x9E3779B97F4A7C15L + signature[row]);
+        }
+        return key;
+    }
+}
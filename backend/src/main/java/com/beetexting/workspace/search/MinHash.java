@@ -0,0 +1,77 @@
+package com.beetexting.workspace.search;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * MinHash signatures over word shingles: runs of {@link #SHINGLE_TERMS}
+ * analyzed terms. The fraction of slots two signatures agree on estimates
+ * the Jaccard similarity of their shingle sets. Hash seeds are fixed so
+ * signatures stay comparable after they have been persisted; changing any
+ * parameter here requires bumping {@link #VERSION}.
+ */
+final class MinHash {
+    static final int VERSION = 1;
+    static final int NUM_HASHES = 128;
+    static final int SHINGLE_TERMS = 3;
+
+    private static final long[] MULTIPLIERS = new long[NUM_HASHES];
+    private static final long[] INCREMENTS = new long[NUM_HASHES];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x6d696e68617368L);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            MULTIPLIERS[i] = random.nextLong() | 1;
+            INCREMENTS[i] = random.nextLong();
+        }
+    }
+
+    private MinHash() {
+    }
+
+    // Null when the text has no terms to shingle
+    static int[] signature(String text) {
+        List<String> terms = TextAnalyzer.terms(text);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, -1);  // unsigned maximum
+        // Texts shorter than a shingle become one shingle of all their terms
+        int shingles = Math.max(1, terms.size() - SHINGLE_TERMS + 1);
+        for (int start = 0; start < shingles; start++) {
+            long shingle = 0;
+            for (int i = start; i < Math.min(start + SHINGLE_TERMS, terms.size()); i++) {
+                shingle = mix((shingle ^ terms.get(i).hashCode()) * 0x9E3779B97F4A7C15L);
+            }
+            for (int i = 0; i < NUM_HASHES; i++) {
+                int hash = (int) ((MULTIPLIERS[i] * shingle + INCREMENTS[i]) >>> 32);
+                if (Integer.compareUnsigned(hash, signature[i]) < 0) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    static float similarity(int[] a, int[] b) {
+        int agree = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i]) {
+                agree++;
+            }
+        }
+        return (float) agree / NUM_HASHES;
+    }
+
+    // Finalizer of MurmurHash3's 64-bit mix
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
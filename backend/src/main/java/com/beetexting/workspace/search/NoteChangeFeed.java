@@ -0,0 +1,148 @@
+package com.beetexting.workspace.search;
+
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.repository.NoteRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notes saved through other nodes. Mapping events only fire on the node that
+ * made the write, so every tenant open in a local index is polled for notes
+ * updated since the previous poll, and those not already seen here are loaded
+ * and handed to the same index updates a local save gets. Each poll overlaps
+ * the last to cover clock skew between nodes and saves still in flight; a note
+ * is passed on once per update time, so local saves are not indexed twice.
+ *
+ * Deletes leave nothing to poll for: a note deleted on another node stays in
+ * the local indexes until they are rebuilt, and drops out of results when its
+ * summary is no longer found.
+ */
+@Component
+public class NoteChangeFeed {
+    private static final Logger logger = LoggerFactory.getLogger(NoteChangeFeed.class);
+    private static final Duration OVERLAP = Duration.ofSeconds(30);
+
+    private final NoteRepository noteRepository;
+    private final SearchIndexService searchIndexService;
+    private final TagIndexService tagIndexService;
+    private final SimilarityIndexService similarityIndexService;
+    private final SemanticIndexService semanticIndexService;
+    private final SearchResultCache searchResultCache;
+    private final Map<String, TenantCursor> cursors = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService poller;
+
+    @Autowired
+    public NoteChangeFeed(
+            NoteRepository noteRepository,
+            SearchIndexService searchIndexService,
+            TagIndexService tagIndexService,
+            SimilarityIndexService similarityIndexService,
+            SemanticIndexService semanticIndexService,
+            SearchResultCache searchResultCache,
+            AppProperties appProperties) {
+        this.noteRepository = noteRepository;
+        this.searchIndexService = searchIndexService;
+        this.tagIndexService = tagIndexService;
+        this.similarityIndexService = similarityIndexService;
+        this.semanticIndexService = semanticIndexService;
+        this.searchResultCache = searchResultCache;
+        this.poller = Executors.newSingleThreadScheduledExecutor(daemon("note-change-feed"));
+        long interval = appProperties.getSearch().getFeedInterval().toMillis();
+        poller.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+    }
+
+    // Local saves reach the indexes through the save listener, so polling skips them
+    public void recordSaved(Note note) {
+        if (note.getId() == null || note.getTenantId() == null || note.getUpdatedAt() == null) {
+            return;
+        }
+        TenantCursor cursor = cursors.get(note.getTenantId());
+        if (cursor != null) {
+            cursor.seen.put(note.getId(), note.getUpdatedAt().toEpochMilli());
+        }
+    }
+
+    void poll() {
+        Set<String> tenants = searchIndexService.openTenants();
+        tenants.addAll(tagIndexService.openTenants());
+        tenants.addAll(similarityIndexService.openTenants());
+        tenants.addAll(semanticIndexService.openTenants());
+        cursors.keySet().retainAll(tenants);
+        Instant now = Instant.now();
+        for (String tenantId : tenants) {
+            // A newly opened tenant replays recent saves itself, so polling starts from now
+            TenantCursor cursor = cursors.computeIfAbsent(tenantId, id -> new TenantCursor(now.minus(OVERLAP)));
+            try {
+                poll(tenantId, cursor, now);
+            } catch (RuntimeException e) {
+                logger.error("Failed to poll note changes for tenant {}", tenantId, e);
+            }
+        }
+    }
+
+    private void poll(String tenantId, TenantCursor cursor, Instant now) {
+        List<String> changed = new ArrayList<>();
+        for (Note stamp : noteRepository.findUpdateTimesByTenantIdAndUpdatedAtAfter(tenantId, cursor.since)) {
+            // Stored times have millisecond precision, so that is what seen times are compared at
+            Long seen = cursor.seen.get(stamp.getId());
+            if (seen == null || seen != stamp.getUpdatedAt().toEpochMilli()) {
+                changed.add(stamp.getId());
+            }
+        }
+        if (!changed.isEmpty()) {
+            for (Note note : noteRepository.findAllById(changed)) {
+                if (note.getUpdatedAt() != null) {
+                    cursor.seen.put(note.getId(), note.getUpdatedAt().toEpochMilli());
+                }
+                searchIndexService.enqueue(note);
+                tagIndexService.onNoteSaved(note);
+                similarityIndexService.enqueue(note);
+                semanticIndexService.enqueue(note);
+            }
+            searchResultCache.invalidate(tenantId);
+            logger.debug("Picked up {} notes saved elsewhere in tenant {}", changed.size(), tenantId);
+        }
+        cursor.since = now.minus(OVERLAP);
+        long horizon = cursor.since.toEpochMilli();
+        cursor.seen.values().removeIf(updatedAt -> updatedAt <= horizon);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class TenantCursor {
+        volatile Instant since;
+        // Update times already handed on, by note id, for notes inside the overlap window
+        final Map<String, Long> seen = new ConcurrentHashMap<>();
+
+        TenantCursor(Instant since) {
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.beetexting.workspace.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Structured note attributes indexed next to the text so filters can be
+ * answered from postings. Tags, sentiment and author become terms under a
+ * reserved prefix the {@link TextAnalyzer} never emits, as do the
+ * {@link Trigrams} of the title and content; the update time is stored per
+ * doc for range checks.
+ */
+final class NoteFields {
+    static final String TAG = "#tag:";
+    static final String SENTIMENT = "#sentiment:";
+    static final String AUTHOR = "#author:";
+    static final String TRIGRAM = "#3:";
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    static final NoteFields NONE = new NoteFields(List.of(), null, null, NO_TIMESTAMP);
+
+    final Collection<String> tags;
+    final String sentiment;
+    final String author;
+    final long updatedAt;
+
+    NoteFields(Collection<String> tags, String sentiment, String author, long updatedAt) {
+        this.tags = tags != null ? tags : List.of();
+        this.sentiment = sentiment;
+        this.author = author;
+        this.updatedAt = updatedAt;
+    }
+
+    List<String> terms() {
+        List<String> terms = new ArrayList<>(tags.size() + 2);
+        for (String tag : tags) {
+            terms.add(TAG + tag);
+        }
+        if (sentiment != null) {
+            terms.add(SENTIMENT + sentiment);
+        }
+        if (author != null) {
+            terms.add(AUTHOR + author);
+        }
+        return terms;
+    }
+
+    static boolean isFieldTerm(String term) {
+        return term.startsWith("#");
+    }
+}
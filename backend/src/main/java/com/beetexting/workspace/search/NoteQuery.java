@@ -0,0 +1,97 @@
+package com.beetexting.workspace.search;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A note search combining free text with structured filters. Every part is
+ * optional and all supplied parts must match.
+ */
+public class NoteQuery {
+    public enum TagMode { ANY, ALL }
+
+    // Shortest fragment the trigram index can narrow
+    public static final int MIN_SUBSTRING_LENGTH = Trigrams.GRAM_LENGTH;
+
+    private String text;
+    private String substring;  // case-insensitive fragment of the title or content
+    private Set<String> tags;
+    private TagMode tagMode = TagMode.ANY;
+    private String sentiment;
+    private Set<String> authors;
+    private Instant updatedFrom;  // inclusive
+    private Instant updatedTo;    // exclusive
+
+    public NoteQuery() {
+    }
+
+    public NoteQuery(String text) {
+        this.text = text;
+    }
+
+    public boolean hasText() {
+        return text != null && !text.trim().isEmpty();
+    }
+
+    public boolean hasFilters() {
+        return hasSubstring() || (tags != null && !tags.isEmpty()) || sentiment != null
+            || (authors != null && !authors.isEmpty()) || updatedFrom != null || updatedTo != null;
+    }
+
+    public boolean hasSubstring() {
+        return substring != null && Trigrams.length(substring) >= MIN_SUBSTRING_LENGTH;
+    }
+
+    /**
+     * Canonical form used as a cache key: analyzed text terms and filter values
+     * in sorted order, so equivalent queries share an entry.
+     */
+    public String normalized() {
+        StringBuilder key = new StringBuilder();
+        if (hasText()) {
+            key.append("text=").append(new TreeSet<>(TextAnalyzer.terms(text)));
+        }
+        if (hasSubstring()) {
+            key.append(";substring=").append(Trigrams.normalize(substring));
+        }
+        if (tags != null && !tags.isEmpty()) {
+            key.append(";tags=").append(tagMode).append(new TreeSet<>(tags));
+        }
+        if (sentiment != null) {
+            key.append(";sentiment=").append(sentiment);
+        }
+        if (authors != null && !authors.isEmpty()) {
+            key.append(";authors=").append(new TreeSet<>(authors));
+        }
+        if (updatedFrom != null || updatedTo != null) {
+            key.append(";updated=").append(updatedFrom).append('/').append(updatedTo);
+        }
+        return key.toString();
+    }
+
+    // Getters and setters
+    public String getText() { return text; }
+    public void setText(String text) { this.text = text; }
+
+    public String getSubstring() { return substring; }
+    public void setSubstring(String substring) { this.substring = substring; }
+
+    public Set<String> getTags() { return tags; }
+    public void setTags(Set<String> tags) { this.tags = tags; }
+
+    public TagMode getTagMode() { return tagMode; }
+    public void setTagMode(TagMode tagMode) { this.tagMode = tagMode; }
+
+    public String getSentiment() { return sentiment; }
+    public void setSentiment(String sentiment) { this.sentiment = sentiment; }
+
+    public Set<String> getAuthors() { return authors; }
+    public void setAuthors(Set<String> authors) { this.authors = authors; }
+
+    public Instant getUpdatedFrom() { return updatedFrom; }
+    public void setUpdatedFrom(Instant updatedFrom) { this.updatedFrom = updatedFrom; }
+
+    public Instant getUpdatedTo() { return updatedTo; }
+    public void setUpdatedTo(Instant updatedTo) { this.updatedTo = updatedTo; }
+}
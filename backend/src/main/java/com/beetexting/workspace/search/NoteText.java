@@ -0,0 +1,47 @@
+package com.beetexting.workspace.search;
+
+import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.storage.NoteContentStore;
+
+import java.util.ArrayList;
+
+// What the indexes read from a note, taken as one consistent copy
+final class NoteText {
+    final String title;
+    final String content;
+    final NoteFields fields;
+
+    private NoteText(String title, String content, NoteFields fields) {
+        this.title = title;
+        this.content = content;
+        this.fields = fields;
+    }
+
+    static NoteText read(Note note, NoteContentStore noteContentStore) {
+        String title;
+        String content;
+        NoteFields fields;
+        Note offloaded = null;
+        // Live notes are shared with DocumentService, which edits them under this monitor
+        synchronized (note) {
+            title = note.getTitle();
+            content = note.getContent();
+            fields = new NoteFields(
+                note.getTags() != null ? new ArrayList<>(note.getTags()) : null,
+                note.getSentiment() != null ? note.getSentiment().getPrimarySentiment() : null,
+                note.getCreatedBy(),
+                note.getUpdatedAt() != null ? note.getUpdatedAt().toEpochMilli() : NoteFields.NO_TIMESTAMP);
+            if (content == null) {
+                offloaded = new Note();
+                offloaded.setContentRef(note.getContentRef());
+                if (note.getContentChunks() != null) {
+                    offloaded.setContentChunks(new ArrayList<>(note.getContentChunks()));
+                }
+            }
+        }
+        if (offloaded != null) {
+            content = noteContentStore.loadContent(offloaded);
+        }
+        return new NoteText(title, content, fields);
+    }
+}
@@ -0,0 +1,163 @@
+package com.beetexting.workspace.search;
+
+import java.util.Arrays;
+
+/**
+ * Picks the passage of each hit's content that best explains the match, from
+ * the offsets stored with each posting rather than by rescanning the text.
+ *
+ * A window slides over the positions where query terms occur and scores the
+ * idf of the distinct terms it covers, then the number of occurrences, so a
+ * passage holding every query term beats one repeating the most common term.
+ * Only the first occurrences of each term in a hit are considered, which keeps
+ * the cost per hit bounded however long the note is.
+ */
+final class PassageSelector {
+    // Window width in token positions
+    static final int WINDOW_POSITIONS = 24;
+    // Passages are widened to roughly this many code points around the window
+    static final int PASSAGE_LENGTH = 160;
+    static final int MAX_PASSAGE_LENGTH = 320;
+    static final int MAX_OCCURRENCES_PER_TERM = 32;
+
+    private PassageSelector() {
+    }
+
+    /**
+     * Passages for the given docs, as {@code [start, end)} code point pairs in
+     * {@code hits} order; {@code -1, -1} when no query term occurs in the content.
+     */
+    static int[] select(SegmentReader[] readers, int[] docs, String[] terms, float[] idfs) {
+        int[] passages = new int[docs.length * 2];
+        Arrays.fill(passages, -1);
+        HitOccurrences[] occurrences = new HitOccurrences[docs.length];
+        boolean[] done = new boolean[docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            if (done[i]) {
+                continue;
+            }
+            // Gather every hit in this reader so each term's postings are read once per segment
+            SegmentReader reader = readers[i];
+            int[] group = new int[docs.length];
+            int size = 0;
+            for (int j = i; j < docs.length; j++) {
+                if (readers[j] == reader) {
+                    group[size++] = j;
+                    done[j] = true;
+                    occurrences[j] = new HitOccurrences();
+                }
+            }
+            collect(reader, docs, Arrays.copyOf(group, size), terms, occurrences);
+        }
+        for (int i = 0; i < docs.length; i++) {
+            occurrences[i].bestWindow(idfs, passages, i * 2);
+        }
+        return passages;
+    }
+
+    private static void collect(SegmentReader reader, int[] docs, int[] group, String[] terms,
+                                HitOccurrences[] occurrences) {
+        Integer[] byDoc = new Integer[group.length];
+        for (int i = 0; i < group.length; i++) {
+            byDoc[i] = group[i];
+        }
+        Arrays.sort(byDoc, (a, b) -> Integer.compare(docs[a], docs[b]));
+        int lastDoc = docs[byDoc[byDoc.length - 1]];
+        for (int t = 0; t < terms.length; t++) {
+            SegmentReader.PostingsCursor cursor = reader.postings(terms[t]);
+            if (cursor == null) {
+                continue;
+            }
+            int next = 0;
+            while (next < byDoc.length && cursor.next()) {
+                int doc = cursor.doc();
+                if (doc > lastDoc) {
+                    break;
+                }
+                while (next < byDoc.length && docs[byDoc[next]] < doc) {
+                    next++;
+                }
+                if (next == byDoc.length || docs[byDoc[next]] != doc) {
+                    continue;
+                }
+                HitOccurrences hit = occurrences[byDoc[next]];
+                int kept = 0;
+                for (int p = cursor.positionCount(); p > 0 && kept < MAX_OCCURRENCES_PER_TERM; p--) {
+                    int position = cursor.nextPosition();
+                    if (cursor.offsetLength() > 0) {
+                        hit.add(position, cursor.startOffset(), cursor.offsetLength(), t);
+                        kept++;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class HitOccurrences {
+        int[] positions = new int[8];
+        int[] starts = new int[8];
+        int[] lengths = new int[8];
+        int[] terms = new int[8];
+        int count;
+
+        void add(int position, int start, int length, int term) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+                starts = Arrays.copyOf(starts, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+                terms = Arrays.copyOf(terms, count * 2);
+            }
+            positions[count] = position;
+            starts[count] = start;
+            lengths[count] = length;
+            terms[count] = term;
+            count++;
+        }
+
+        void bestWindow(float[] idfs, int[] passages, int slot) {
+            if (count == 0) {
+                return;
+            }
+            // Occurrences arrive term by term; order them by position
+            long[] order = new long[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = (long) positions[i] << 32 | i;
+            }
+            Arrays.sort(order);
+
+            int[] inWindow = new int[idfs.length];
+            float windowScore = 0;
+            float bestScore = -1;
+            int bestCount = 0;
+            int bestFirst = 0;
+            int bestLast = 0;
+            int first = 0;
+            for (int last = 0; last < count; last++) {
+                int added = (int) order[last];
+                if (inWindow[terms[added]]++ == 0) {
+                    windowScore += idfs[terms[added]];
+                }
+                while (positions[added] - positions[(int) order[first]] >= WINDOW_POSITIONS) {
+                    int removed = (int) order[first++];
+                    if (--inWindow[terms[removed]] == 0) {
+                        windowScore -= idfs[terms[removed]];
+                    }
+                }
+                int occurrences = last - first + 1;
+                if (windowScore > bestScore || windowScore == bestScore && occurrences > bestCount) {
+                    bestScore = windowScore;
+                    bestCount = occurrences;
+                    bestFirst = (int) order[first];
+                    bestLast = added;
+                }
+            }
+
+            int start = starts[bestFirst];
+            int span = Math.min(starts[bestLast] + lengths[bestLast] - start, MAX_PASSAGE_LENGTH);
+            // Centre the window in a passage of the usual length; the end may run past the content
+            start = Math.max(0, start - Math.max(0, PASSAGE_LENGTH - span) / 2);
+            passages[slot] = start;
+            passages[slot + 1] = start + Math.max(span, PASSAGE_LENGTH);
+        }
+    }
+}
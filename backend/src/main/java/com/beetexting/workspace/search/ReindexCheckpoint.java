@@ -0,0 +1,81 @@
+package com.beetexting.workspace.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * How far a reindex into a staging directory got. It is rewritten after each
+ * segment of the new index is committed, so a reindex interrupted by a crash
+ * or shutdown picks up after the last note that reached disk rather than
+ * starting over.
+ */
+final class ReindexCheckpoint {
+    static final String FILE_NAME = "reindex";
+    private static final int MAGIC = 0x42545249;
+    private static final int VERSION = 1;
+
+    final String tenantId;
+    final long startedAt;  // epoch millis; saves after this are replayed when the index is swapped in
+    String lastNoteId;     // notes are streamed in id order; null before the first commit
+    long indexed;
+    boolean complete;
+
+    ReindexCheckpoint(String tenantId, long startedAt) {
+        this.tenantId = tenantId;
+        this.startedAt = startedAt;
+    }
+
+    // Returns null when the directory holds no reindex or one written by another format
+    static ReindexCheckpoint read(Path directory) throws IOException {
+        try (InputStream in = Files.newInputStream(directory.resolve(FILE_NAME));
+             DataInputStream data = new DataInputStream(in)) {
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                return null;
+            }
+            ReindexCheckpoint checkpoint = new ReindexCheckpoint(data.readUTF(), data.readLong());
+            checkpoint.lastNoteId = data.readBoolean() ? data.readUTF() : null;
+            checkpoint.indexed = data.readLong();
+            checkpoint.complete = data.readBoolean();
+            return checkpoint;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    void write(Path directory) throws IOException {
+        Path temp = directory.resolve(FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream data = new DataOutputStream(
+                 new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeUTF(tenantId);
+            data.writeLong(startedAt);
+            data.writeBoolean(lastNoteId != null);
+            if (lastNoteId != null) {
+                data.writeUTF(lastNoteId);
+            }
+            data.writeLong(indexed);
+            data.writeBoolean(complete);
+            data.flush();
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(FILE_NAME),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void delete(Path directory) throws IOException {
+        Files.deleteIfExists(directory.resolve(FILE_NAME));
+    }
+}
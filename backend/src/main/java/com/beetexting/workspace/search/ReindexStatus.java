@@ -0,0 +1,38 @@
+package com.beetexting.workspace.search;
+
+import java.time.Instant;
+
+public class ReindexStatus {
+    public enum State { RUNNING, SWAPPING, COMPLETED, FAILED }
+
+    private final String tenantId;
+    private final State state;
+    private final long indexedNotes;
+    // Notes in the tenant when the reindex started; saves made since are replayed at the swap
+    private final long totalNotes;
+    private final boolean resumed;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final String error;
+
+    public ReindexStatus(String tenantId, State state, long indexedNotes, long totalNotes, boolean resumed,
+                         Instant startedAt, Instant finishedAt, String error) {
+        this.tenantId = tenantId;
+        this.state = state;
+        this.indexedNotes = indexedNotes;
+        this.totalNotes = totalNotes;
+        this.resumed = resumed;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.error = error;
+    }
+
+    public String getTenantId() { return tenantId; }
+    public State getState() { return state; }
+    public long getIndexedNotes() { return indexedNotes; }
+    public long getTotalNotes() { return totalNotes; }
+    public boolean isResumed() { return resumed; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public String getError() { return error; }
+}
@@ -0,0 +1,29 @@
+package com.beetexting.workspace.search;
+
+public class SearchHit {
+    private final String noteId;
+    private final float score;
+    // Code point range of the content passage that best matches the query, or -1 when none does
+    private final int passageStart;
+    private final int passageEnd;
+
+    public SearchHit(String noteId, float score) {
+        this(noteId, score, -1, -1);
+    }
+
+    public SearchHit(String noteId, float score, int passageStart, int passageEnd) {
+        this.noteId = noteId;
+        this.score = score;
+        this.passageStart = passageStart;
+        this.passageEnd = passageEnd;
+    }
+
+    public String getNoteId() { return noteId; }
+    public float getScore() { return score; }
+    public int getPassageStart() { return passageStart; }
+    public int getPassageEnd() { return passageEnd; }
+
+    public boolean hasPassage() {
+        return passageStart >= 0;
+    }
+}
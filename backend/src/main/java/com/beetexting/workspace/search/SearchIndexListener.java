@@ -0,0 +1,61 @@
+package com.beetexting.workspace.search;
+
+import com.beetexting.workspace.model.Note;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.stereotype.Component;
+
+@Component
+public class SearchIndexListener extends AbstractMongoEventListener<Note> {
+
+    private final SearchIndexService searchIndexService;
+    private final NoteChangeFeed noteChangeFeed;
+    private final TagIndexService tagIndexService;
+    private final SimilarityIndexService similarityIndexService;
+    private final SemanticIndexService semanticIndexService;
+    private final SearchResultCache searchResultCache;
+
+    @Autowired
+    public SearchIndexListener(
+            SearchIndexService searchIndexService,
+            NoteChangeFeed noteChangeFeed,
+            TagIndexService tagIndexService,
+            SimilarityIndexService similarityIndexService,
+            SemanticIndexService semanticIndexService,
+            SearchResultCache searchResultCache) {
+        this.searchIndexService = searchIndexService;
+        this.noteChangeFeed = noteChangeFeed;
+        this.tagIndexService = tagIndexService;
+        this.similarityIndexService = similarityIndexService;
+        this.semanticIndexService = semanticIndexService;
+        this.searchResultCache = searchResultCache;
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Note> event) {
+        Note note = event.getSource();
+        // Queries answered by MongoDB see the write now; indexed ones again once it is refreshed
+        if (note.getTenantId() != null) {
+            searchResultCache.invalidate(note.getTenantId());
+        }
+        searchIndexService.enqueue(note);
+        similarityIndexService.enqueue(note);
+        semanticIndexService.enqueue(note);
+        noteChangeFeed.recordSaved(note);
+        tagIndexService.onNoteSaved(note);
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Note> event) {
+        Object id = event.getSource().get("_id");
+        if (id != null) {
+            searchIndexService.remove(id.toString());
+            tagIndexService.onNoteDeleted(id.toString());
+            similarityIndexService.onNoteDeleted(id.toString());
+            semanticIndexService.onNoteDeleted(id.toString());
+            searchResultCache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package com.beetexting.workspace.search;
+
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.repository.NoteRepository;
+import com.beetexting.workspace.storage.NoteContentStore;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Owns the search indexes, one per tenant, stored as segment files under
+ * {@code app.search.index-path}. Opening a tenant maps its committed segments
+ * and replays notes saved since the last commit, so a restart costs a small
+ * catch-up query rather than a rebuild. Tenants with no index on disk are
+ * built from MongoDB in the background on first use; callers check
+ * {@link #isReady} and answer from MongoDB until the build finishes.
+ * Saves made through other nodes arrive via {@link NoteChangeFeed}.
+ *
+ * Note saves are coalesced per note and applied on a short refresh interval,
+ * so a burst of keystrokes costs one reindex rather than one per edit. The
+ * same thread writes full or aged buffers to disk; merges run on their own
+ * thread so a large merge never delays refreshes.
+ *
+ * A reindex rebuilds a tenant into a staging directory beside the live one,
+ * reading notes through an id-ordered cursor and analyzing each batch on a
+ * fork-join pool, then swaps it in. It records the last note id with each
+ * committed segment, so one interrupted by a crash resumes on restart.
+ */
+@Service
+public class SearchIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexService.class);
+    // Covers clock skew and saves that were still queued when the last commit was taken
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(5);
+    private static final String STAGING_SUFFIX = ".reindex";
+    private static final String RETIRED_SUFFIX = ".old";
+    // Sorts before every generated id, so a reindex with no checkpoint reads from the start
+    private static final ObjectId FIRST_ID = new ObjectId(new byte[12]);
+
+    private final NoteRepository noteRepository;
+    private final NoteContentStore noteContentStore;
+    private final SearchResultCache searchResultCache;
+    private final AppProperties.Search settings;
+    private final Path indexRoot;
+    private final Map<String, CompletableFuture<TenantIndex>> indexes = new ConcurrentHashMap<>();
+    private final Map<String, Note> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+    private final ExecutorService builder;
+    private final ExecutorService merger;
+    private final ExecutorService reindexer;
+    private final Map<String, ReindexJob> reindexJobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SearchIndexService(
+            NoteRepository noteRepository,
+            NoteContentStore noteContentStore,
+            SearchResultCache searchResultCache,
+            AppProperties appProperties) {
+        this.noteRepository = noteRepository;
+        this.noteContentStore = noteContentStore;
+        this.searchResultCache = searchResultCache;
+        this.settings = appProperties.getSearch();
+        this.indexRoot = Paths.get(settings.getIndexPath());
+        this.refresher = Executors.newSingleThreadScheduledExecutor(daemon("search-index-refresh"));
+        this.builder = Executors.newSingleThreadExecutor(daemon("search-index-build"));
+        this.merger = Executors.newSingleThreadExecutor(daemon("search-index-merge"));
+        this.reindexer = Executors.newSingleThreadExecutor(daemon("search-reindex"));
+        long interval = settings.getRefreshInterval().toMillis();
+        refresher.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+        resumeReindexes();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+        builder.shutdownNow();
+        merger.shutdownNow();
+        // A reindex stops at its next batch and resumes from its checkpoint on restart
+        reindexer.shutdownNow();
+        refresh();
+        for (CompletableFuture<TenantIndex> index : indexes.values()) {
+            if (index.isDone() && !index.isCompletedExceptionally()) {
+                try {
+                    index.join().flush();
+                } catch (IOException e) {
+                    logger.warn("Failed to flush search index on shutdown", e);
+                }
+            }
+        }
+    }
+
+    // Whether the tenant's index is open; the first call starts opening or building it
+    public boolean isReady(String tenantId) {
+        CompletableFuture<TenantIndex> index = indexFor(tenantId);
+        return index.isDone() && !index.isCompletedExceptionally();
+    }
+
+    // Waits for the tenant's index if it is still opening; check isReady first to avoid that
+    public SearchResult search(String tenantId, NoteQuery query, int offset, int limit) {
+        return indexFor(tenantId).join().search(query, offset, limit);
+    }
+
+    // Relevance keyset paging; the query must have text
+    public SearchResult searchAfter(String tenantId, NoteQuery query, SearchHit after, int limit) {
+        return indexFor(tenantId).join().searchAfter(query, after, limit);
+    }
+
+    // Tenants with an index open or opening on this node
+    Set<String> openTenants() {
+        return new HashSet<>(indexes.keySet());
+    }
+
+    public void enqueue(Note note) {
+        if (note.getId() != null && note.getTenantId() != null) {
+            pending.put(note.getId(), note);
+        }
+    }
+
+    /**
+     * Rebuilds a tenant's index from MongoDB and swaps it in once complete,
+     * for when analysis changes. The live index keeps serving meanwhile.
+     * Returns the tenant's running reindex instead if there is one.
+     */
+    public ReindexStatus reindex(String tenantId) {
+        ReindexJob created = new ReindexJob(tenantId, false);
+        ReindexJob job = reindexJobs.compute(tenantId,
+            (id, existing) -> existing != null && existing.isRunning() ? existing : created);
+        if (job == created) {
+            reindexer.execute(() -> runReindex(job, null));
+        }
+        return job.status();
+    }
+
+    // The tenant's running or most recent reindex since startup
+    public Optional<ReindexStatus> reindexStatus(String tenantId) {
+        ReindexJob job = reindexJobs.get(tenantId);
+        return job != null ? Optional.of(job.status()) : Optional.empty();
+    }
+
+    public void remove(String noteId) {
+        pending.remove(noteId);
+        // Recorded before the live indexes are checked, so a delete racing a swap reaches the new index
+        for (ReindexJob job : reindexJobs.values()) {
+            job.recordDelete(noteId);
+        }
+        for (CompletableFuture<TenantIndex> index : indexes.values()) {
+            if (index.isDone() && !index.isCompletedExceptionally()) {
+                index.join().remove(noteId);
+            }
+        }
+    }
+
+    void refresh() {
+        for (String noteId : new ArrayList<>(pending.keySet())) {
+            Note note = pending.remove(noteId);
+            if (note == null) {
+                continue;
+            }
+            // Even when the tenant is not open, a reindex catching up applies it at the swap
+            ReindexJob job = reindexJobs.get(note.getTenantId());
+            if (job != null) {
+                job.recordSave(note);
+            }
+            CompletableFuture<TenantIndex> index = indexes.get(note.getTenantId());
+            if (index == null) {
+                // Not open yet; opening replays saves since the last commit
+                continue;
+            }
+            if (!index.isDone()) {
+                // The build may have read this note before the save, so retry once it finishes
+                pending.putIfAbsent(noteId, note);
+                continue;
+            }
+            try {
+                index(index.join(), note);
+                searchResultCache.invalidate(note.getTenantId());
+            } catch (RuntimeException e) {
+                logger.error("Failed to index note {}", noteId, e);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, CompletableFuture<TenantIndex>> entry : indexes.entrySet()) {
+            CompletableFuture<TenantIndex> future = entry.getValue();
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                continue;
+            }
+            TenantIndex index = future.join();
+            try {
+                if (index.needsFlush(now, settings.getMaxBufferAge().toMillis())) {
+                    index.flush();
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to flush search index for tenant {}", entry.getKey(), e);
+            }
+            scheduleMerge(entry.getKey(), index);
+        }
+    }
+
+    private void scheduleMerge(String tenantId, TenantIndex index) {
+        List<TenantIndex.SegmentState> sources = index.claimMerge();
+        if (sources == null) {
+            return;
+        }
+        merger.execute(() -> {
+            try {
+                index.merge(sources);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to merge search segments for tenant {}", tenantId, e);
+            }
+        });
+    }
+
+    private CompletableFuture<TenantIndex> indexFor(String tenantId) {
+        CompletableFuture<TenantIndex> created = new CompletableFuture<>();
+        CompletableFuture<TenantIndex> existing = indexes.putIfAbsent(tenantId, created);
+        if (existing != null) {
+            return existing;
+        }
+        builder.execute(() -> {
+            try {
+                created.complete(open(tenantId));
+            } catch (RuntimeException e) {
+                logger.error("Failed to open search index for tenant {}", tenantId, e);
+                // The next query retries
+                indexes.remove(tenantId, created);
+                created.completeExceptionally(e);
+            }
+        });
+        return created;
+    }
+
+    private TenantIndex open(String tenantId) {
+        long start = System.nanoTime();
+        try {
+            Path directory = indexRoot.resolve(directoryName(tenantId));
+            TenantIndex index = TenantIndex.open(directory, settings.getMaxBufferedDocs(), settings.getMergeFactor());
+            long checkpoint = index.checkpoint();
+            if (checkpoint >= 0) {
+                int replayed = replay(tenantId, index);
+                logger.info("Opened search index for tenant {} with {} notes, replayed {} in {} ms",
+                    tenantId, index.size(), replayed, elapsedMillis(start));
+                return index;
+            }
+
+            // Fresh tenant: stream everything in, writing segments as large buffers fill
+            long buildStartedAt = System.currentTimeMillis();
+            index.setMaxBufferedDocs(settings.getBulkBufferedDocs());
+            try (Stream<Note> notes = noteRepository.streamByTenantId(tenantId)) {
+                notes.forEach(note -> {
+                    index(index, note);
+                    if (index.isBufferFull()) {
+                        flushWithoutCheckpoint(index);
+                    }
+                });
+            }
+            flushWithoutCheckpoint(index);
+            index.commitCheckpoint(buildStartedAt);
+            index.setMaxBufferedDocs(settings.getMaxBufferedDocs());
+            logger.info("Built search index for tenant {} with {} notes in {} ms",
+                tenantId, index.size(), elapsedMillis(start));
+            return index;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open search index for tenant " + tenantId, e);
+        }
+    }
+
+    private void runReindex(ReindexJob job, ReindexCheckpoint resumed) {
+        String tenantId = job.tenantId;
+        Path live = indexRoot.resolve(directoryName(tenantId));
+        Path staging = live.resolveSibling(live.getFileName() + STAGING_SUFFIX);
+        ForkJoinPool analyzers = new ForkJoinPool(Math.max(1, settings.getReindexParallelism()));
+        long start = System.nanoTime();
+        try {
+            ReindexCheckpoint checkpoint = resumed;
+            if (checkpoint == null) {
+                deleteRecursively(staging);
+                Files.createDirectories(staging);
+                checkpoint = new ReindexCheckpoint(tenantId, System.currentTimeMillis());
+                checkpoint.write(staging);
+            }
+            job.begin(checkpoint, noteRepository.countByTenantId(tenantId));
+            TenantIndex index = TenantIndex.open(staging, settings.getMaxBufferedDocs(), settings.getMergeFactor());
+            if (!checkpoint.complete) {
+                build(job, checkpoint, index, staging, analyzers);
+            }
+            // Saves made while the reindex ran are replayed here, off the refresh thread; the
+            // ones refreshed from now on are recorded on the job and applied at the swap
+            job.recordSaves();
+            int replayed = replay(tenantId, index);
+            logger.info("Reindex of tenant {} replayed {} notes saved while it ran", tenantId, replayed);
+            job.state = ReindexStatus.State.SWAPPING;
+            // On the refresh thread, so no refresh, flush or merge touches the old index meanwhile
+            refresher.submit(() -> {
+                swap(job, index, staging, live);
+                return null;
+            }).get();
+            job.finish(null);
+            logger.info("Reindexed tenant {} with {} notes in {} ms", tenantId, job.indexed, elapsedMillis(start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.finish("Interrupted; resumes from the last checkpoint on restart");
+            logger.info("Reindex of tenant {} stopped after {} notes", tenantId, job.indexed);
+        } catch (ExecutionException e) {
+            logger.error("Failed to swap in the rebuilt search index for tenant {}", tenantId, e.getCause());
+            job.finish(String.valueOf(e.getCause().getMessage()));
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to reindex tenant {}", tenantId, e);
+            job.finish(String.valueOf(e.getMessage()));
+        } finally {
+            analyzers.shutdownNow();
+        }
+    }
+
+    private void build(ReindexJob job, ReindexCheckpoint checkpoint, TenantIndex index, Path staging,
+            ForkJoinPool analyzers) throws IOException, InterruptedException {
+        index.setMaxBufferedDocs(settings.getBulkBufferedDocs());
+        ObjectId after = checkpoint.lastNoteId != null ? new ObjectId(checkpoint.lastNoteId) : FIRST_ID;
+        int batchSize = Math.max(1, settings.getReindexBatchSize());
+        List<Note> batch = new ArrayList<>(batchSize);
+        try (Stream<Note> notes = noteRepository.streamByTenantIdAfterId(job.tenantId, after)) {
+            Iterator<Note> cursor = notes.iterator();
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() < batchSize && cursor.hasNext()) {
+                    continue;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                // Loading offloaded bodies and analysis fan out; appends stay in id order
+                List<WriteBuffer.AnalyzedNote> analyzed = analyzers.submit(
+                    () -> batch.parallelStream().map(this::analyze).toList()).join();
+                analyzed.forEach(index::upsert);
+                checkpoint.lastNoteId = batch.get(batch.size() - 1).getId();
+                checkpoint.indexed += batch.size();
+                job.indexed = checkpoint.indexed;
+                batch.clear();
+                if (index.isBufferFull()) {
+                    commit(index, checkpoint, staging);
+                    logger.info("Reindexing tenant {}: {} of {} notes", job.tenantId, job.indexed, job.total);
+                }
+            }
+        }
+        checkpoint.complete = true;
+        commit(index, checkpoint, staging);
+        index.setMaxBufferedDocs(settings.getMaxBufferedDocs());
+    }
+
+    // Segments before the checkpoint, so a resume never skips a note that is not on disk
+    private static void commit(TenantIndex index, ReindexCheckpoint checkpoint, Path staging) throws IOException {
+        index.flush(false);
+        // Any checkpoint keeps the committed segments when the staging index is reopened to resume
+        index.commitCheckpoint(checkpoint.startedAt);
+        checkpoint.write(staging);
+    }
+
+    private void swap(ReindexJob job, TenantIndex index, Path staging, Path live)
+            throws IOException, InterruptedException, ExecutionException {
+        String tenantId = job.tenantId;
+        Path retired = live.resolveSibling(live.getFileName() + RETIRED_SUFFIX);
+        CompletableFuture<TenantIndex> swapping = new CompletableFuture<>();
+        CompletableFuture<TenantIndex> previous = indexes.put(tenantId, swapping);
+        try {
+            if (previous != null) {
+                // An open on the build thread may still be building into the live directory
+                previous.exceptionally(e -> null).join();
+                // Only this thread schedules merges, so once queued ones finish none can touch the old files
+                merger.submit(() -> { }).get();
+            }
+            deleteRecursively(retired);
+            if (Files.exists(live)) {
+                Files.move(live, retired, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(staging, live, StandardCopyOption.ATOMIC_MOVE);
+            ReindexCheckpoint.delete(live);
+            index.relocate(live);
+            // Only saves refreshed since the catch-up began; later ones are still pending
+            for (Note note : job.closeSaves()) {
+                index(index, note);
+            }
+            swapping.complete(index);
+        } catch (IOException | InterruptedException | ExecutionException | RuntimeException e) {
+            indexes.remove(tenantId, swapping);
+            swapping.completeExceptionally(e);
+            throw e;
+        }
+        for (String noteId : job.closeDeletes()) {
+            index.remove(noteId);
+        }
+        searchResultCache.invalidate(tenantId);
+        // The old index's mapped segments stay readable for searches still holding it
+        deleteRecursively(retired);
+    }
+
+    private void resumeReindexes() {
+        if (!Files.isDirectory(indexRoot)) {
+            return;
+        }
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(indexRoot, "*" + STAGING_SUFFIX)) {
+            for (Path staging : directories) {
+                ReindexCheckpoint checkpoint = ReindexCheckpoint.read(staging);
+                if (checkpoint == null) {
+                    deleteRecursively(staging);
+                    continue;
+                }
+                ReindexJob job = new ReindexJob(checkpoint.tenantId, true);
+                reindexJobs.put(checkpoint.tenantId, job);
+                logger.info("Resuming reindex of tenant {} after {} notes", checkpoint.tenantId, checkpoint.indexed);
+                reindexer.execute(() -> runReindex(job, checkpoint));
+            }
+        } catch (IOException e) {
+            logger.error("Failed to resume interrupted reindexes", e);
+        }
+    }
+
+    // Saves since the last commit, streamed and flushed as the buffer fills rather than read into one list
+    private int replay(String tenantId, TenantIndex index) {
+        Instant since = Instant.ofEpochMilli(index.checkpoint()).minus(CATCH_UP_MARGIN);
+        int replayed = 0;
+        try (Stream<Note> changed = noteRepository.streamByTenantIdAndUpdatedAtAfter(tenantId, since)) {
+            for (Iterator<Note> cursor = changed.iterator(); cursor.hasNext(); replayed++) {
+                index(index, cursor.next());
+                if (index.isBufferFull()) {
+                    // The checkpoint stays put, so a crash before the next commit replays these again
+                    flushWithoutCheckpoint(index);
+                }
+            }
+        }
+        return replayed;
+    }
+
+    private void index(TenantIndex index, Note note) {
+        NoteText text = NoteText.read(note, noteContentStore);
+        index.upsert(note.getId(), text.title, text.content, text.fields);
+    }
+
+    // Only the search index is rebuilt; the similarity and semantic indexes version themselves
+    private WriteBuffer.AnalyzedNote analyze(Note note) {
+        NoteText text = NoteText.read(note, noteContentStore);
+        return new WriteBuffer.AnalyzedNote(note.getId(), text.title, text.content, text.fields);
+    }
+
+    private static void flushWithoutCheckpoint(TenantIndex index) {
+        try {
+            index.flush(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Tenant ids are used as directory names only when they cannot escape the index root
+    static String directoryName(String tenantId) {
+        if (tenantId.matches("[A-Za-z0-9_-]{1,100}")) {
+            return tenantId;
+        }
+        return "x" + HexFormat.of().formatHex(tenantId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class ReindexJob {
+        final String tenantId;
+        final boolean resumed;
+        volatile ReindexStatus.State state = ReindexStatus.State.RUNNING;
+        volatile long indexed;
+        volatile long total;
+        volatile Instant startedAt;
+        volatile Instant finishedAt;
+        volatile String error;
+        // Notes deleted while the job runs; the streamed snapshot may still hold them
+        private final Set<String> deleted = new HashSet<>();
+        // Latest save per note refreshed after the catch-up began; null until then
+        private Map<String, Note> saved;
+        private boolean closed;
+
+        ReindexJob(String tenantId, boolean resumed) {
+            this.tenantId = tenantId;
+            this.resumed = resumed;
+            this.startedAt = Instant.now();
+        }
+
+        void begin(ReindexCheckpoint checkpoint, long total) {
+            this.startedAt = Instant.ofEpochMilli(checkpoint.startedAt);
+            this.indexed = checkpoint.indexed;
+            this.total = total;
+        }
+
+        boolean isRunning() {
+            return state == ReindexStatus.State.RUNNING || state == ReindexStatus.State.SWAPPING;
+        }
+
+        synchronized void recordDelete(String noteId) {
+            if (!closed) {
+                deleted.add(noteId);
+            }
+        }
+
+        synchronized void recordSaves() {
+            saved = new HashMap<>();
+        }
+
+        synchronized void recordSave(Note note) {
+            if (saved != null && !closed) {
+                saved.put(note.getId(), note);
+            }
+        }
+
+        synchronized Collection<Note> closeSaves() {
+            Collection<Note> drained = saved != null ? saved.values() : List.of();
+            saved = null;
+            return drained;
+        }
+
+        synchronized Set<String> closeDeletes() {
+            closed = true;
+            Set<String> drained = new HashSet<>(deleted);
+            deleted.clear();
+            return drained;
+        }
+
+        void finish(String failure) {
+            closeSaves();
+            closeDeletes();
+            error = failure;
+            finishedAt = Instant.now();
+            state = failure == null ? ReindexStatus.State.COMPLETED : ReindexStatus.State.FAILED;
+        }
+
+        ReindexStatus status() {
+            return new ReindexStatus(tenantId, state, indexed, total, resumed, startedAt, finishedAt, error);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.beetexting.workspace.search;
+
+import java.util.List;
+
+public class SearchResult {
+    private final List<SearchHit> hits;
+    private final int totalHits;
+
+    public SearchResult(List<SearchHit> hits, int totalHits) {
+        this.hits = hits;
+        this.totalHits = totalHits;
+    }
+
+    public List<SearchHit> getHits() { return hits; }
+    public int getTotalHits() { return totalHits; }
+}
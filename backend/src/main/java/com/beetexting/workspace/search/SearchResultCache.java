@@ -0,0 +1,162 @@
+package com.beetexting.workspace.search;
+
+import com.beetexting.workspace.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * LRU cache of search responses keyed by tenant, the tenant's generation and
+ * a normalized query. Any note write in a tenant bumps its generation, so
+ * older entries become unreachable without being scanned and age out of the
+ * LRU. A result computed while a write lands is stored under the generation
+ * it started with, so it can never be served after that write.
+ *
+ * Generations only see writes made through this node, so every entry also
+ * expires a fixed time after it was stored; that bounds how long a write
+ * landing on another node can go unseen here.
+ *
+ * Identical queries arriving while one is being computed wait for it instead
+ * of running again.
+ */
+@Component
+public class SearchResultCache {
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, CachedResult> entries;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter evictions;
+
+    @Autowired
+    public SearchResultCache(AppProperties appProperties, MeterRegistry registry) {
+        this.maxEntries = appProperties.getSearch().getCacheMaxEntries();
+        this.ttlNanos = appProperties.getSearch().getCacheTtl().toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hits = requests(registry, "hit");
+        this.misses = requests(registry, "miss");
+        this.coalesced = requests(registry, "coalesced");
+        this.evictions = Counter.builder("search.cache.evictions")
+            .description("Search results evicted to stay within the size bound")
+            .register(registry);
+        Gauge.builder("search.cache.size", this, SearchResultCache::size)
+            .description("Search results currently cached")
+            .register(registry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String tenantId, String query, Supplier<T> loader) {
+        if (maxEntries <= 0) {
+            return loader.get();
+        }
+        String key = tenantId + '\u0000' + generation(tenantId).get() + '\u0000' + query;
+        Object cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return (T) cached;
+        }
+
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            // The previous leader may have finished between the lookup and the claim
+            Object value = lookup(key);
+            if (value != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                value = loader.get();
+                synchronized (entries) {
+                    entries.put(key, new CachedResult(value, System.nanoTime() + ttlNanos));
+                }
+            }
+            created.complete(value);
+            return (T) value;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    public void invalidate(String tenantId) {
+        generation(tenantId).incrementAndGet();
+    }
+
+    // For writes whose tenant is unknown, such as deletes by id
+    public void invalidateAll() {
+        generations.values().forEach(AtomicLong::incrementAndGet);
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Object lookup(String key) {
+        synchronized (entries) {
+            CachedResult entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAt >= 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private AtomicLong generation(String tenantId) {
+        return generations.computeIfAbsent(tenantId, id -> new AtomicLong());
+    }
+
+    private static class CachedResult {
+        final Object value;
+        final long expiresAt;
+
+        CachedResult(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("search.cache.requests")
+            .description("Search cache lookups; hit and coalesced lookups were served without running the query")
+            .tag("result", result)
+            .register(registry);
+    }
+}
@@ -0,0 +1,105 @@
+package com.beetexting.workspace.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The commit point of a tenant index: which segment files are live, which of
+ * their docs are deleted, and how far MongoDB changes are already reflected.
+ * It is replaced atomically, so a crash mid-flush or mid-merge leaves the
+ * previous commit intact and any half-written segment unreferenced.
+ */
+final class SegmentManifest {
+    static final String FILE_NAME = "segments";
+    private static final int MAGIC = 0x42545347;
+    // Bumped with the segment format; older indexes are dropped and rebuilt
+    private static final int VERSION = 4;
+
+    long generation;
+    long checkpoint;  // epoch millis; saves before this are in the listed segments
+    int nextSegment;
+    final List<Entry> segments = new ArrayList<>();
+
+    static final class Entry {
+        final String name;
+        final BitSet deleted;
+
+        Entry(String name, BitSet deleted) {
+            this.name = name;
+            this.deleted = deleted;
+        }
+    }
+
+    // Returns null when the directory has never been committed or holds an older format
+    static SegmentManifest read(Path directory) throws IOException {
+        try (InputStream in = Files.newInputStream(directory.resolve(FILE_NAME));
+             DataInputStream data = new DataInputStream(in)) {
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Unrecognized segment manifest in " + directory);
+            }
+            int version = data.readInt();
+            if (version < VERSION) {
+                return null;
+            }
+            if (version > VERSION) {
+                throw new IOException("Segment manifest in " + directory + " has newer version " + version);
+            }
+            SegmentManifest manifest = new SegmentManifest();
+            manifest.generation = data.readLong();
+            manifest.checkpoint = data.readLong();
+            manifest.nextSegment = data.readInt();
+            int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = data.readUTF();
+                long[] words = new long[data.readInt()];
+                for (int w = 0; w < words.length; w++) {
+                    words[w] = data.readLong();
+                }
+                manifest.segments.add(new Entry(name, BitSet.valueOf(words)));
+            }
+            return manifest;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    void write(Path directory) throws IOException {
+        Path temp = directory.resolve(FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream data = new DataOutputStream(
+                 new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeLong(generation);
+            data.writeLong(checkpoint);
+            data.writeInt(nextSegment);
+            data.writeInt(segments.size());
+            for (Entry entry : segments) {
+                data.writeUTF(entry.name);
+                long[] words = entry.deleted.toLongArray();
+                data.writeInt(words.length);
+                for (long word : words) {
+                    data.writeLong(word);
+                }
+            }
+            data.flush();
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(FILE_NAME),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,50 @@
+package com.beetexting.workspace.search;
+
+import java.util.Iterator;
+
+/**
+ * Read access shared by the in-memory write buffer and on-disk segments. Doc
+ * ids are local to a segment; deletes are tracked by the owning index.
+ */
+interface SegmentReader {
+
+    int maxDoc();
+
+    String noteId(int doc);
+
+    int docLength(int doc);
+
+    // Epoch millis of the note's last update, or NoteFields.NO_TIMESTAMP
+    long updatedAt(int doc);
+
+    int docFreq(String term);
+
+    // Null when the term does not occur in this segment
+    PostingsCursor postings(String term);
+
+    // Terms in code point order, the order segment files are written in
+    Iterator<String> terms();
+
+    // Returns -1 when the note has no doc in this segment
+    int findDoc(String noteId);
+
+    interface PostingsCursor {
+        // Advances to the next doc, in increasing doc order
+        boolean next();
+
+        int doc();
+
+        int freq();
+
+        int positionCount();
+
+        // Positions of the current doc, in increasing order
+        int nextPosition();
+
+        // Code point offset in the content of the position last read
+        int startOffset();
+
+        // Code points the occurrence spans; zero for title and filter occurrences
+        int offsetLength();
+    }
+}
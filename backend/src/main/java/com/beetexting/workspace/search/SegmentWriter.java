@@ -0,0 +1,303 @@
+package com.beetexting.workspace.search;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Writes an immutable segment file that {@link IndexSegment} maps read-only.
+ *
+ * <pre>
+ * header        fixed {@link #HEADER_SIZE} bytes, section offsets
+ * postings      per term, per doc: vint doc delta, vint freq, vint count, then per position
+ *               vint position delta, vint start offset delta, vint offset length
+ * term bytes    UTF-8 terms in code point order, concatenated
+ * term offsets  int[termCount + 1] into term bytes
+ * postings ptrs long[termCount]
+ * doc freqs     int[termCount]
+ * doc lengths   int[docCount]
+ * updated at    long[docCount], epoch millis
+ * note id bytes UTF-8 note ids in doc order, concatenated
+ * note id offs  int[docCount + 1]
+ * sorted docs   int[docCount], docs ordered by note id then doc for lookups
+ * </pre>
+ */
+final class SegmentWriter {
+    static final int MAGIC = 0x42544958;
+    static final int VERSION = 4;
+    static final int HEADER_SIZE = 128;
+
+    // Code point order equals unsigned UTF-8 byte order, which the mapped lookup relies on
+    static final Comparator<String> TERM_ORDER = (a, b) -> {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    };
+
+    private SegmentWriter() {
+    }
+
+    /**
+     * Writes the docs of the sources into one segment. Each remap maps a
+     * source doc to its doc in the new segment, or -1 to drop it; new doc ids
+     * must increase across the sources in list order.
+     */
+    static void write(Path file, List<? extends SegmentReader> sources, List<int[]> remaps, int docCount)
+            throws IOException {
+        String[] noteIds = new String[docCount];
+        int[] docLengths = new int[docCount];
+        long[] updatedAts = new long[docCount];
+        long totalLength = 0;
+        for (int s = 0; s < sources.size(); s++) {
+            SegmentReader source = sources.get(s);
+            int[] remap = remaps.get(s);
+            for (int doc = 0; doc < source.maxDoc(); doc++) {
+                int target = remap[doc];
+                if (target >= 0) {
+                    noteIds[target] = source.noteId(doc);
+                    docLengths[target] = source.docLength(doc);
+                    updatedAts[target] = source.updatedAt(doc);
+                    totalLength += docLengths[target];
+                }
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            CountingOutputStream counter = new CountingOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            DataOutputStream out = new DataOutputStream(counter);
+            out.write(new byte[HEADER_SIZE]);
+
+            // Postings, merged term by term across the sources
+            ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+            IntArray termOffsets = new IntArray();
+            LongArray postingsOffsets = new LongArray();
+            IntArray docFreqs = new IntArray();
+            termOffsets.add(0);
+            PriorityQueue<TermSource> queue = new PriorityQueue<>((a, b) -> TERM_ORDER.compare(a.term, b.term));
+            for (int s = 0; s < sources.size(); s++) {
+                TermSource source = new TermSource(s, sources.get(s).terms());
+                if (source.advance()) {
+                    queue.add(source);
+                }
+            }
+            boolean[] hasTerm = new boolean[sources.size()];
+            while (!queue.isEmpty()) {
+                String term = queue.peek().term;
+                Arrays.fill(hasTerm, false);
+                while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+                    TermSource source = queue.poll();
+                    hasTerm[source.index] = true;
+                    if (source.advance()) {
+                        queue.add(source);
+                    }
+                }
+
+                long start = counter.count;
+                int docFreq = 0;
+                int lastDoc = 0;
+                for (int s = 0; s < sources.size(); s++) {
+                    if (!hasTerm[s]) {
+                        continue;
+                    }
+                    int[] remap = remaps.get(s);
+                    SegmentReader.PostingsCursor cursor = sources.get(s).postings(term);
+                    while (cursor.next()) {
+                        int doc = remap[cursor.doc()];
+                        if (doc < 0) {
+                            continue;
+                        }
+                        writeVInt(out, doc - lastDoc);
+                        writeVInt(out, cursor.freq());
+                        int count = cursor.positionCount();
+                        writeVInt(out, count);
+                        int lastPosition = 0;
+                        int lastOffset = 0;
+                        for (int i = 0; i < count; i++) {
+                            int position = cursor.nextPosition();
+                            writeVInt(out, position - lastPosition);
+                            lastPosition = position;
+                            // Title occurrences come first with offset 0, so offsets never decrease
+                            int offset = cursor.startOffset();
+                            writeVInt(out, offset - lastOffset);
+                            writeVInt(out, cursor.offsetLength());
+                            lastOffset = offset;
+                        }
+                        lastDoc = doc;
+                        docFreq++;
+                    }
+                }
+                // Every posting of this term belonged to dropped docs
+                if (docFreq == 0) {
+                    continue;
+                }
+                termBytes.write(term.getBytes(StandardCharsets.UTF_8));
+                termOffsets.add(termBytes.size());
+                postingsOffsets.add(start);
+                docFreqs.add(docFreq);
+            }
+
+            int termCount = docFreqs.size;
+            long termBytesOffset = counter.count;
+            termBytes.writeTo(out);
+            long termOffsetsOffset = counter.count;
+            termOffsets.writeTo(out);
+            long postingsOffsetsOffset = counter.count;
+            postingsOffsets.writeTo(out);
+            long docFreqsOffset = counter.count;
+            docFreqs.writeTo(out);
+
+            long docLengthsOffset = counter.count;
+            for (int length : docLengths) {
+                out.writeInt(length);
+            }
+            long updatedAtsOffset = counter.count;
+            for (long updatedAt : updatedAts) {
+                out.writeLong(updatedAt);
+            }
+
+            long noteIdBytesOffset = counter.count;
+            int[] noteIdOffsets = new int[docCount + 1];
+            int noteIdBytes = 0;
+            for (int doc = 0; doc < docCount; doc++) {
+                byte[] bytes = noteIds[doc].getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                noteIdBytes += bytes.length;
+                noteIdOffsets[doc + 1] = noteIdBytes;
+            }
+            long noteIdOffsetsOffset = counter.count;
+            for (int offset : noteIdOffsets) {
+                out.writeInt(offset);
+            }
+
+            long sortedDocsOffset = counter.count;
+            Integer[] sorted = new Integer[docCount];
+            for (int doc = 0; doc < docCount; doc++) {
+                sorted[doc] = doc;
+            }
+            Arrays.sort(sorted, (a, b) -> {
+                int cmp = noteIds[a].compareTo(noteIds[b]);
+                return cmp != 0 ? cmp : Integer.compare(a, b);
+            });
+            for (int doc : sorted) {
+                out.writeInt(doc);
+            }
+            out.flush();
+            if (counter.count > Integer.MAX_VALUE) {
+                throw new IOException("Segment " + file + " exceeds 2 GB");
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(docCount).putInt(termCount).putLong(totalLength)
+                .putLong(termBytesOffset).putLong(termOffsetsOffset).putLong(postingsOffsetsOffset)
+                .putLong(docFreqsOffset).putLong(docLengthsOffset).putLong(noteIdBytesOffset)
+                .putLong(noteIdOffsetsOffset).putLong(sortedDocsOffset).putLong(updatedAtsOffset);
+            header.rewind();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+    }
+
+    static void writeVInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static final class TermSource {
+        final int index;
+        final Iterator<String> terms;
+        String term;
+
+        TermSource(int index, Iterator<String> terms) {
+            this.index = index;
+            this.terms = terms;
+        }
+
+        boolean advance() {
+            term = terms.hasNext() ? terms.next() : null;
+            return term != null;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static final class IntArray {
+        int[] values = new int[256];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                out.writeInt(values[i]);
+            }
+        }
+    }
+
+    private static final class LongArray {
+        long[] values = new long[256];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(values[i]);
+            }
+        }
+    }
+}
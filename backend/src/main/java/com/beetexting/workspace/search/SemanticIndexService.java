@@ -0,0 +1,313 @@
+package com.beetexting.workspace.search;
+
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.repository.NoteRepository;
+import com.beetexting.workspace.storage.NoteContentStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * "Notes about X" search over local embeddings: one {@link HnswIndex} per
+ * tenant under {@code app.semantic.index-path}. Saved notes, local or seen
+ * by {@link NoteChangeFeed}, are queued and coalesced per note, so a burst
+ * of edits is embedded once, and a tenant's checkpoint only advances to the
+ * start of a refresh that applied everything queued for it. Tenants are
+ * opened in the background on first query;
+ * opening replays notes saved since the index was last made durable, and a
+ * tenant with nothing on disk is embedded from MongoDB in one pass, which
+ * for a large tenant takes minutes, so queries report the index as not
+ * ready rather than wait for it.
+ */
+@Service
+public class SemanticIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(SemanticIndexService.class);
+    public static final int MAX_RESULTS = 50;
+    // Covers clock skew between nodes and saves still in flight when a refresh started
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(5);
+    private static final int BUILD_PROGRESS_INTERVAL = 10_000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final NoteRepository noteRepository;
+    private final NoteContentStore noteContentStore;
+    private final EmbeddingFunction embedding;
+    private final AppProperties.Semantic settings;
+    private final Path indexRoot;
+    private final Map<String, CompletableFuture<TenantVectors>> tenants = new ConcurrentHashMap<>();
+    private final Map<String, Note> pending = new ConcurrentHashMap<>();
+    // Per tenant, the time before which every save has been embedded; only the refresh thread writes it
+    private final Map<String, Long> appliedThrough = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+    private final ExecutorService builder;
+
+    @Autowired
+    public SemanticIndexService(
+            NoteRepository noteRepository,
+            NoteContentStore noteContentStore,
+            EmbeddingFunction embedding,
+            AppProperties appProperties) {
+        this.noteRepository = noteRepository;
+        this.noteContentStore = noteContentStore;
+        this.embedding = embedding;
+        this.settings = appProperties.getSemantic();
+        this.indexRoot = Paths.get(settings.getIndexPath());
+        this.refresher = Executors.newSingleThreadScheduledExecutor(daemon("semantic-index-refresh"));
+        this.builder = Executors.newSingleThreadExecutor(daemon("semantic-index-build"));
+        long refreshInterval = settings.getRefreshInterval().toMillis();
+        refresher.scheduleWithFixedDelay(this::refresh, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        long flushInterval = settings.getFlushInterval().toMillis();
+        refresher.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+        builder.shutdownNow();
+        try {
+            // The final refresh and flush must not overlap one still running on the refresh thread
+            if (!refresher.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Semantic index refresh did not stop; skipping the final flush");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        refresh();
+        flush();
+        for (CompletableFuture<TenantVectors> vectors : tenants.values()) {
+            if (vectors.isDone() && !vectors.isCompletedExceptionally()) {
+                try {
+                    vectors.join().close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close semantic index", e);
+                }
+            }
+        }
+    }
+
+    // Whether the tenant's index is open; the first call starts opening it
+    public boolean isReady(String tenantId) {
+        CompletableFuture<TenantVectors> vectors = vectorsFor(tenantId);
+        return vectors.isDone() && !vectors.isCompletedExceptionally();
+    }
+
+    // Notes nearest the text in embedding space, best first, with cosine similarity as the score
+    public List<SearchHit> search(String tenantId, String text, int limit) {
+        float[] query = embedding.embed(text);
+        if (isZero(query)) {
+            return List.of();
+        }
+        return vectorsFor(tenantId).join().search(query, Math.min(limit, MAX_RESULTS), settings.getEfSearch());
+    }
+
+    public void enqueue(Note note) {
+        if (note.getId() != null && note.getTenantId() != null) {
+            pending.put(note.getId(), note);
+        }
+    }
+
+    // Tenants with an index open or opening on this node
+    Set<String> openTenants() {
+        return new HashSet<>(tenants.keySet());
+    }
+
+    public void onNoteDeleted(String noteId) {
+        pending.remove(noteId);
+        tenants.forEach((tenantId, vectors) -> apply(vectors, tenantId, target -> target.remove(noteId)));
+    }
+
+    private void apply(CompletableFuture<TenantVectors> vectors, String tenantId, VectorsUpdate update) {
+        Consumer<TenantVectors> action = target -> {
+            try {
+                update.apply(target);
+            } catch (IOException e) {
+                logger.error("Failed to update semantic index for tenant {}", tenantId, e);
+            }
+        };
+        if (vectors.isDone()) {
+            if (!vectors.isCompletedExceptionally()) {
+                action.accept(vectors.join());
+            }
+        } else {
+            vectors.thenAccept(action);
+        }
+    }
+
+    private interface VectorsUpdate {
+        void apply(TenantVectors vectors) throws IOException;
+    }
+
+    void refresh() {
+        long startedAt = System.currentTimeMillis();
+        Set<String> behind = new HashSet<>();
+        for (String noteId : new ArrayList<>(pending.keySet())) {
+            Note note = pending.remove(noteId);
+            if (note == null) {
+                continue;
+            }
+            CompletableFuture<TenantVectors> vectors = tenants.get(note.getTenantId());
+            if (vectors == null || vectors.isCompletedExceptionally()) {
+                // Not open; opening replays saves made since the index was last flushed
+                continue;
+            }
+            if (!vectors.isDone()) {
+                // The build may have read this note before the save, so retry once it finishes
+                pending.putIfAbsent(noteId, note);
+                behind.add(note.getTenantId());
+                continue;
+            }
+            try {
+                NoteText text = NoteText.read(note, noteContentStore);
+                put(vectors.join(), noteId, text.title, text.content);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Failed to embed note {}", noteId, e);
+                // Retried next refresh; the tenant's checkpoint holds until it applies
+                pending.putIfAbsent(noteId, note);
+                behind.add(note.getTenantId());
+            }
+        }
+        // Saves queued before this refresh started are now applied, except in tenants left behind
+        tenants.forEach((tenantId, vectors) -> {
+            if (vectors.isDone() && !behind.contains(tenantId)) {
+                appliedThrough.put(tenantId, startedAt);
+            }
+        });
+    }
+
+    void flush() {
+        tenants.forEach((tenantId, vectors) -> {
+            Long through = appliedThrough.get(tenantId);
+            if (through != null && vectors.isDone() && !vectors.isCompletedExceptionally()) {
+                try {
+                    vectors.join().flush(through);
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Failed to flush semantic index for tenant {}", tenantId, e);
+                }
+            }
+        });
+    }
+
+    private CompletableFuture<TenantVectors> vectorsFor(String tenantId) {
+        CompletableFuture<TenantVectors> created = new CompletableFuture<>();
+        CompletableFuture<TenantVectors> existing = tenants.putIfAbsent(tenantId, created);
+        if (existing != null) {
+            return existing;
+        }
+        builder.execute(() -> {
+            try {
+                created.complete(open(tenantId));
+            } catch (RuntimeException e) {
+                logger.error("Failed to open semantic index for tenant {}", tenantId, e);
+                // The next query retries
+                appliedThrough.remove(tenantId);
+                tenants.remove(tenantId, created);
+                created.completeExceptionally(e);
+            }
+        });
+        return created;
+    }
+
+    private TenantVectors open(String tenantId) {
+        long start = System.nanoTime();
+        try {
+            TenantVectors vectors = TenantVectors.open(
+                indexRoot.resolve(SearchIndexService.directoryName(tenantId)),
+                embedding.name(), embedding.dimensions(), settings.getM(), settings.getEfConstruction());
+            long checkpoint = vectors.checkpoint();
+            if (checkpoint >= 0) {
+                Instant since = Instant.ofEpochMilli(checkpoint).minus(CATCH_UP_MARGIN);
+                List<Note> changed = noteRepository.findByTenantIdAndUpdatedAtAfter(tenantId, since);
+                for (Note note : changed) {
+                    put(vectors, note);
+                }
+                logger.info("Opened semantic index for tenant {} with {} notes, replayed {} in {} ms",
+                    tenantId, vectors.size(), changed.size(), elapsedMillis(start));
+                return vectors;
+            }
+
+            long buildStartedAt = System.currentTimeMillis();
+            vectors.beginBulk();
+            int embedded = 0;
+            try (Stream<Note> notes = noteRepository.streamByTenantId(tenantId)) {
+                for (Note note : (Iterable<Note>) notes::iterator) {
+                    put(vectors, note);
+                    if (++embedded % BUILD_PROGRESS_INTERVAL == 0) {
+                        logger.info("Embedded {} notes for tenant {}", embedded, tenantId);
+                    }
+                }
+            }
+            vectors.endBulk(buildStartedAt);
+            logger.info("Built semantic index for tenant {} with {} notes in {} ms",
+                tenantId, vectors.size(), elapsedMillis(start));
+            return vectors;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open semantic index for tenant " + tenantId, e);
+        }
+    }
+
+    private void put(TenantVectors vectors, Note note) throws IOException {
+        put(vectors, note.getId(), note.getTitle(), noteContentStore.loadContent(note));
+    }
+
+    private void put(TenantVectors vectors, String noteId, String title, String content) throws IOException {
+        float[] vector = embedding.embed(text(title, content));
+        if (isZero(vector)) {
+            vectors.remove(noteId);
+        } else {
+            vectors.put(noteId, vector);
+        }
+    }
+
+    private static String text(String title, String content) {
+        if (title == null) {
+            return content;
+        }
+        return content == null ? title : title + "\n" + content;
+    }
+
+    private static boolean isZero(float[] vector) {
+        for (float value : vector) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,216 @@
+package com.beetexting.workspace.search;
+
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.model.NoteSignature;
+import com.beetexting.workspace.repository.NoteRepository;
+import com.beetexting.workspace.repository.NoteSignatureRepository;
+import com.beetexting.workspace.storage.NoteContentStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Content-based similar notes. Every saved note gets a {@link MinHash}
+ * signature, persisted in {@code note_signatures} with the note's update time;
+ * a tenant's {@link LshIndex} is loaded from those on first use and then kept
+ * current as signatures change. Saves are queued and hashed on their own
+ * refresh, so signatures stay current whether or not any index has the
+ * tenant open. Signatures missing, or older than their note, are rehashed
+ * when the tenant loads.
+ */
+@Service
+public class SimilarityIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(SimilarityIndexService.class);
+    public static final int MAX_SIMILAR = 50;
+    private static final int BACKFILL_BATCH = 500;
+
+    private final NoteSignatureRepository signatureRepository;
+    private final NoteRepository noteRepository;
+    private final NoteContentStore noteContentStore;
+    private final Map<String, LshIndex> tenants = new ConcurrentHashMap<>();
+    private final Map<String, Note> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+
+    @Autowired
+    public SimilarityIndexService(
+            NoteSignatureRepository signatureRepository,
+            NoteRepository noteRepository,
+            NoteContentStore noteContentStore,
+            AppProperties appProperties) {
+        this.signatureRepository = signatureRepository;
+        this.noteRepository = noteRepository;
+        this.noteContentStore = noteContentStore;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(daemon("similarity-index-refresh"));
+        long interval = appProperties.getSearch().getRefreshInterval().toMillis();
+        refresher.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Saves still queued are rehashed when their tenant next loads, as their signatures are stale
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    // Notes of the same tenant ranked by estimated Jaccard similarity of their content, as the hit score
+    public List<SearchHit> similar(String tenantId, String noteId, int limit) {
+        LshIndex index = tenant(tenantId);
+        synchronized (index) {
+            return index.similar(noteId, Math.min(limit, MAX_SIMILAR));
+        }
+    }
+
+    public void enqueue(Note note) {
+        if (note.getId() != null && note.getTenantId() != null) {
+            pending.put(note.getId(), note);
+        }
+    }
+
+    // Tenants loaded on this node
+    Set<String> openTenants() {
+        return new HashSet<>(tenants.keySet());
+    }
+
+    public void onNoteDeleted(String noteId) {
+        pending.remove(noteId);
+        signatureRepository.deleteById(noteId);
+        for (LshIndex index : tenants.values()) {
+            synchronized (index) {
+                index.remove(noteId);
+            }
+        }
+    }
+
+    void refresh() {
+        for (String noteId : new ArrayList<>(pending.keySet())) {
+            Note note = pending.remove(noteId);
+            if (note == null) {
+                continue;
+            }
+            try {
+                update(note);
+            } catch (RuntimeException e) {
+                // Left stale; the next save or the tenant's next load rehashes it
+                logger.error("Failed to hash note {}", noteId, e);
+            }
+        }
+    }
+
+    private void update(Note note) {
+        NoteText text = NoteText.read(note, noteContentStore);
+        int[] signature = MinHash.signature(text.content);
+        Instant updatedAt = text.fields.updatedAt != NoteFields.NO_TIMESTAMP
+            ? Instant.ofEpochMilli(text.fields.updatedAt) : null;
+        save(note.getTenantId(), note.getId(), signature, updatedAt);
+        // Unloaded tenants read the saved signature when they load
+        LshIndex index = tenants.get(note.getTenantId());
+        if (index != null) {
+            synchronized (index) {
+                apply(index, note.getId(), signature);
+            }
+        }
+    }
+
+    private LshIndex tenant(String tenantId) {
+        LshIndex existing = tenants.get(tenantId);
+        if (existing != null) {
+            return existing;
+        }
+        LshIndex created = new LshIndex();
+        // Hold the monitor before publishing so updates wait for the load instead of racing it
+        synchronized (created) {
+            existing = tenants.putIfAbsent(tenantId, created);
+            if (existing != null) {
+                return existing;
+            }
+            try {
+                load(tenantId, created);
+            } catch (RuntimeException e) {
+                tenants.remove(tenantId, created);
+                throw e;
+            }
+            return created;
+        }
+    }
+
+    private void load(String tenantId, LshIndex index) {
+        Map<String, Instant> hashedAt = new HashMap<>();
+        try (Stream<NoteSignature> signatures =
+                 signatureRepository.streamByTenantIdAndVersion(tenantId, MinHash.VERSION)) {
+            signatures.forEach(signature -> {
+                hashedAt.put(signature.getId(), signature.getUpdatedAt());
+                apply(index, signature.getId(), signature.getMinHash());
+            });
+        }
+
+        // Notes saved before signatures existed, under an older MinHash version, or since their last hash
+        List<String> stale = new ArrayList<>();
+        try (Stream<Note> notes = noteRepository.streamUpdateTimesByTenantId(tenantId)) {
+            notes.forEach(note -> {
+                if (!hashedAt.containsKey(note.getId()) || !sameTime(hashedAt.get(note.getId()), note.getUpdatedAt())) {
+                    stale.add(note.getId());
+                }
+            });
+        }
+        for (int from = 0; from < stale.size(); from += BACKFILL_BATCH) {
+            List<String> batch = stale.subList(from, Math.min(from + BACKFILL_BATCH, stale.size()));
+            for (Note note : noteRepository.findAllById(batch)) {
+                int[] signature = MinHash.signature(noteContentStore.loadContent(note));
+                save(tenantId, note.getId(), signature, note.getUpdatedAt());
+                apply(index, note.getId(), signature);
+            }
+        }
+        logger.info("Loaded similarity index for tenant {} with {} notes, rehashed {} missing or stale signatures",
+            tenantId, index.size(), stale.size());
+    }
+
+    private void save(String tenantId, String noteId, int[] signature, Instant updatedAt) {
+        NoteSignature stored = new NoteSignature();
+        stored.setId(noteId);
+        stored.setTenantId(tenantId);
+        stored.setVersion(MinHash.VERSION);
+        stored.setMinHash(signature != null ? signature : new int[0]);
+        stored.setUpdatedAt(updatedAt);
+        signatureRepository.save(stored);
+    }
+
+    // Stored times have millisecond precision
+    private static boolean sameTime(Instant hashed, Instant updated) {
+        if (hashed == null || updated == null) {
+            return hashed == updated;
+        }
+        return hashed.toEpochMilli() == updated.toEpochMilli();
+    }
+
+    private static void apply(LshIndex index, String noteId, int[] signature) {
+        if (signature != null && signature.length == MinHash.NUM_HASHES) {
+            index.put(noteId, signature);
+        } else {
+            index.remove(noteId);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
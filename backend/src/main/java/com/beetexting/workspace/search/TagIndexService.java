@@ -0,0 +1,124 @@
+package com.beetexting.workspace.search;
+
+import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.repository.NoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tag autocomplete backed by a {@link TagTrie} per tenant. A tenant's trie is
+ * loaded from a tags-only projection on first use and then adjusted on every
+ * note save, local or picked up by the {@link NoteChangeFeed}, by diffing the
+ * note's tags against the last ones seen.
+ */
+@Service
+public class TagIndexService {
+    private static final Logger logger = LoggerFactory.getLogger(TagIndexService.class);
+    static final int MAX_COMPLETIONS = 10;
+
+    private final NoteRepository noteRepository;
+    private final Map<String, TenantTags> tenants = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TagIndexService(NoteRepository noteRepository) {
+        this.noteRepository = noteRepository;
+    }
+
+    public List<String> suggest(String tenantId, String prefix, int limit) {
+        TenantTags tags = tenant(tenantId);
+        synchronized (tags) {
+            return tags.trie.complete(prefix, Math.min(limit, MAX_COMPLETIONS)).stream()
+                .map(completion -> completion.tag)
+                .collect(Collectors.toList());
+        }
+    }
+
+    public void onNoteSaved(Note note) {
+        if (note.getId() == null || note.getTenantId() == null) {
+            return;
+        }
+        // Unloaded tenants pick the save up from MongoDB when they load
+        TenantTags tags = tenants.get(note.getTenantId());
+        if (tags == null) {
+            return;
+        }
+        Set<String> current = note.getTags() != null ? new HashSet<>(note.getTags()) : Collections.emptySet();
+        synchronized (tags) {
+            tags.update(note.getId(), current);
+        }
+    }
+
+    // Tenants loaded on this node
+    Set<String> openTenants() {
+        return new HashSet<>(tenants.keySet());
+    }
+
+    public void onNoteDeleted(String noteId) {
+        for (TenantTags tags : tenants.values()) {
+            synchronized (tags) {
+                tags.update(noteId, Collections.emptySet());
+            }
+        }
+    }
+
+    private TenantTags tenant(String tenantId) {
+        TenantTags existing = tenants.get(tenantId);
+        if (existing != null) {
+            return existing;
+        }
+        TenantTags created = new TenantTags();
+        // Hold the monitor before publishing so saves wait for the load instead of racing it
+        synchronized (created) {
+            existing = tenants.putIfAbsent(tenantId, created);
+            if (existing != null) {
+                return existing;
+            }
+            try (Stream<Note> notes = noteRepository.streamTagsByTenantId(tenantId)) {
+                notes.forEach(note -> created.update(note.getId(),
+                    note.getTags() != null ? new HashSet<>(note.getTags()) : Collections.emptySet()));
+            } catch (RuntimeException e) {
+                tenants.remove(tenantId, created);
+                throw e;
+            }
+            logger.debug("Loaded tag index for tenant {} with {} notes", tenantId, created.noteTags.size());
+            return created;
+        }
+    }
+
+    private static final class TenantTags {
+        final TagTrie trie = new TagTrie(MAX_COMPLETIONS);
+        final Map<String, Set<String>> noteTags = new HashMap<>();
+
+        void update(String noteId, Set<String> tags) {
+            Set<String> previous = tags.isEmpty() ? noteTags.remove(noteId) : noteTags.put(noteId, tags);
+            if (previous == null) {
+                previous = Collections.emptySet();
+            }
+            if (previous.equals(tags)) {
+                return;
+            }
+            for (String tag : previous) {
+                if (!tags.contains(tag)) {
+                    trie.add(tag, -1);
+                }
+            }
+            for (String tag : tags) {
+                if (!previous.contains(tag)) {
+                    trie.add(tag, 1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.beetexting.workspace.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Radix trie over lower-cased tags with a usage count per tag. Every node
+ * caches the top completions of its subtree, so a lookup is a walk down the
+ * prefix followed by a copy of a short list. Count changes refresh the caches
+ * along the tag's path only.
+ *
+ * Not thread-safe; callers serialize access per tenant.
+ */
+final class TagTrie {
+    private final int cacheSize;
+    private final Node root = new Node("");
+
+    TagTrie(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    static final class Completion {
+        final String tag;
+        final long count;
+
+        Completion(String tag, long count) {
+            this.tag = tag;
+            this.count = count;
+        }
+    }
+
+    // Adds delta to the tag's count; a tag whose count reaches zero is removed
+    void add(String tag, long delta) {
+        String key = tag.toLowerCase(Locale.ROOT);
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                if (delta <= 0) {
+                    return;
+                }
+                child = new Node(key.substring(i));
+                node.children.put(key.charAt(i), child);
+                node = child;
+                path.add(node);
+                i = key.length();
+                break;
+            }
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                if (delta <= 0) {
+                    return;
+                }
+                child = split(node, child, common);
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+
+        node.count = Math.max(0, node.count + delta);
+        if (node.count > 0 && (node.tag == null || delta > 0)) {
+            // Keep the spelling most recently added, so a fixed typo in casing wins over time
+            node.tag = tag;
+        }
+        if (node.count == 0) {
+            node.tag = null;
+        }
+
+        for (int p = path.size() - 1; p >= 0; p--) {
+            Node current = path.get(p);
+            if (p > 0 && current.count == 0 && current.children.isEmpty()) {
+                path.get(p - 1).children.remove(current.label.charAt(0));
+            } else if (p > 0 && current.count == 0 && current.children.size() == 1) {
+                // Re-compress a pass-through node left behind by a removal
+                Node only = current.children.values().iterator().next();
+                only.label = current.label + only.label;
+                path.get(p - 1).children.put(only.label.charAt(0), only);
+            } else {
+                refreshTop(current);
+            }
+        }
+    }
+
+    List<Completion> complete(String prefix, int limit) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                return Collections.emptyList();
+            }
+            int common = commonPrefix(child.label, key, i);
+            if (i + common < key.length() && common < child.label.length()) {
+                return Collections.emptyList();
+            }
+            node = child;
+            i += common;
+        }
+        List<Completion> top = node.top;
+        return top.size() > limit ? new ArrayList<>(top.subList(0, limit)) : new ArrayList<>(top);
+    }
+
+    long count(String tag) {
+        String key = tag.toLowerCase(Locale.ROOT);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null || !key.startsWith(child.label, i)) {
+                return 0;
+            }
+            node = child;
+            i += child.label.length();
+        }
+        return node.count;
+    }
+
+    private Node split(Node parent, Node child, int at) {
+        Node middle = new Node(child.label.substring(0, at));
+        child.label = child.label.substring(at);
+        middle.children.put(child.label.charAt(0), child);
+        parent.children.put(middle.label.charAt(0), middle);
+        refreshTop(middle);
+        return middle;
+    }
+
+    private void refreshTop(Node node) {
+        List<Completion> merged = new ArrayList<>();
+        if (node.count > 0) {
+            merged.add(new Completion(node.tag, node.count));
+        }
+        for (Node child : node.children.values()) {
+            merged.addAll(child.top);
+        }
+        merged.sort((a, b) -> a.count != b.count ? Long.compare(b.count, a.count) : a.tag.compareTo(b.tag));
+        node.top = merged.size() > cacheSize ? new ArrayList<>(merged.subList(0, cacheSize)) : merged;
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int n = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < n && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final class Node {
+        String label;
+        String tag;
+        long count;
+        final Map<Character, Node> children = new TreeMap<>();
+        List<Completion> top = Collections.emptyList();
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+}
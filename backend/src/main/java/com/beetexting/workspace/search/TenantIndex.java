@@ -0,0 +1,583 @@
+package com.beetexting.workspace.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Positional inverted index over one tenant's notes, ranked with BM25.
+ *
+ * Recent updates go to a small heap {@link WriteBuffer}; full buffers are
+ * written out as immutable memory-mapped {@link IndexSegment}s, and a
+ * background merge folds small segments together once there are too many. An
+ * updated note is appended as a new doc and its previous doc is marked deleted
+ * in whichever segment holds it; merges drop deleted docs. Document
+ * frequencies still count deleted docs until they are merged away, which only
+ * nudges idf slightly.
+ */
+final class TenantIndex {
+    private static final Logger logger = LoggerFactory.getLogger(TenantIndex.class);
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private final int mergeFactor;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object flushLock = new Object();
+    // Oldest first; buffers being flushed sit between the segments and the active buffer
+    private final List<SegmentState> segments = new ArrayList<>();
+    private final List<SegmentState> flushing = new ArrayList<>();
+    private SegmentState buffer;
+    private long bufferStartedAt;
+    private long generation;
+    private long checkpoint;
+    private int nextSegment;
+    private boolean merging;
+    private int maxBufferedDocs;
+    private Path directory;
+
+    private TenantIndex(Path directory, int maxBufferedDocs, int mergeFactor) {
+        this.directory = directory;
+        this.maxBufferedDocs = maxBufferedDocs;
+        this.mergeFactor = mergeFactor;
+        this.buffer = new SegmentState(new WriteBuffer(), new BitSet());
+        this.bufferStartedAt = System.currentTimeMillis();
+        this.checkpoint = -1;
+    }
+
+    static TenantIndex open(Path directory, int maxBufferedDocs, int mergeFactor) throws IOException {
+        Files.createDirectories(directory);
+        TenantIndex index = new TenantIndex(directory, maxBufferedDocs, mergeFactor);
+        SegmentManifest manifest = SegmentManifest.read(directory);
+        Set<String> live = new HashSet<>();
+        // An initial build that never finished has no checkpoint; its segments are discarded
+        if (manifest != null && manifest.checkpoint >= 0) {
+            for (SegmentManifest.Entry entry : manifest.segments) {
+                IndexSegment segment = IndexSegment.open(directory.resolve(entry.name));
+                index.segments.add(new SegmentState(segment, entry.deleted));
+                live.add(entry.name);
+            }
+            index.generation = manifest.generation;
+            index.checkpoint = manifest.checkpoint;
+            index.nextSegment = manifest.nextSegment;
+        }
+        // Leftovers from a flush or merge that never committed
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "seg_*")) {
+            for (Path file : files) {
+                if (!live.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        return index;
+    }
+
+    // Epoch millis up to which MongoDB changes are on disk, or -1 if never committed
+    long checkpoint() {
+        lock.readLock().lock();
+        try {
+            return checkpoint;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void upsert(String noteId, String title, String content, NoteFields fields) {
+        // Analysis happens outside the lock; only the buffer append is serialized
+        upsert(new WriteBuffer.AnalyzedNote(noteId, title, content, fields));
+    }
+
+    void upsert(WriteBuffer.AnalyzedNote analyzed) {
+        lock.writeLock().lock();
+        try {
+            deleteLocked(analyzed.noteId);
+            ((WriteBuffer) buffer.reader).add(analyzed);
+            buffer.liveDocs++;
+            buffer.liveLength += analyzed.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean remove(String noteId) {
+        lock.writeLock().lock();
+        try {
+            return deleteLocked(noteId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            int live = 0;
+            for (SegmentState state : allStates()) {
+                live += state.liveDocs;
+            }
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    SearchResult search(NoteQuery query, int offset, int limit) {
+        return search(query, offset, limit, null);
+    }
+
+    /**
+     * The {@code limit} hits ranked immediately after {@code after}, which must be
+     * a hit from an earlier page of the same text query. Ties on score are broken
+     * by note id, so the order is stable across flushes and merges and pages
+     * neither skip nor repeat notes whose score is unchanged.
+     */
+    SearchResult searchAfter(NoteQuery query, SearchHit after, int limit) {
+        return search(query, 0, limit, after);
+    }
+
+    /**
+     * Runs a query segment by segment. Filters are resolved first into a
+     * candidate set, most selective clause first, so a segment with no
+     * candidates is skipped outright and text postings only accumulate scores
+     * for docs that passed. Without text, matches rank newest first.
+     */
+    private SearchResult search(NoteQuery query, int offset, int limit, SearchHit after) {
+        Set<String> terms = query.hasText() ? new LinkedHashSet<>(TextAnalyzer.terms(query.getText())) : Set.of();
+        List<FilterClause> clauses = FilterClause.plan(query);
+        int wanted = offset + limit;
+        lock.readLock().lock();
+        try {
+            List<SegmentState> states = allStates();
+            long liveDocs = 0;
+            long liveLength = 0;
+            for (SegmentState state : states) {
+                liveDocs += state.liveDocs;
+                liveLength += state.liveLength;
+            }
+            boolean empty = query.hasText() ? terms.isEmpty() : clauses.isEmpty();
+            if (empty || liveDocs == 0 || wanted <= 0) {
+                return new SearchResult(List.of(), 0);
+            }
+            float avgLength = (float) liveLength / liveDocs;
+            float[] idfs = new float[terms.size()];
+            int t = 0;
+            for (String term : terms) {
+                long docFreq = 0;
+                for (SegmentState state : states) {
+                    docFreq += state.reader.docFreq(term);
+                }
+                idfs[t++] = (float) Math.log(1 + (liveDocs - docFreq + 0.5) / (docFreq + 0.5));
+            }
+
+            // Min-heap of the best offset + limit docs across all segments
+            PriorityQueue<ScoredDoc> top = new PriorityQueue<>(ScoredDoc.ORDER);
+            int totalHits = 0;
+            for (SegmentState state : states) {
+                BitSet candidates = clauses.isEmpty() ? null : FilterClause.apply(clauses, state.reader, state.deleted);
+                if (candidates != null && candidates.isEmpty()) {
+                    continue;
+                }
+                if (terms.isEmpty()) {
+                    for (int doc = candidates.nextSetBit(0); doc >= 0; doc = candidates.nextSetBit(doc + 1)) {
+                        totalHits++;
+                        offer(top, new ScoredDoc(0, state.reader.updatedAt(doc), state.reader, doc), wanted);
+                    }
+                    continue;
+                }
+
+                float[] scores = null;
+                BitSet matched = null;
+                t = 0;
+                for (String term : terms) {
+                    float idf = idfs[t++];
+                    SegmentReader.PostingsCursor cursor = state.reader.postings(term);
+                    if (cursor == null) {
+                        continue;
+                    }
+                    if (scores == null) {
+                        scores = new float[state.reader.maxDoc()];
+                        matched = new BitSet(scores.length);
+                    }
+                    while (cursor.next()) {
+                        int doc = cursor.doc();
+                        if (candidates != null ? !candidates.get(doc) : state.deleted.get(doc)) {
+                            continue;
+                        }
+                        int freq = cursor.freq();
+                        float norm = K1 * (1 - B + B * state.reader.docLength(doc) / avgLength);
+                        scores[doc] += idf * freq * (K1 + 1) / (freq + norm);
+                        matched.set(doc);
+                    }
+                }
+                if (scores == null) {
+                    continue;
+                }
+                for (int doc = matched.nextSetBit(0); doc >= 0; doc = matched.nextSetBit(doc + 1)) {
+                    totalHits++;
+                    ScoredDoc candidate = new ScoredDoc(scores[doc], 0, state.reader, doc);
+                    if (after == null || candidate.isAfter(after)) {
+                        offer(top, candidate, wanted);
+                    }
+                }
+            }
+
+            ScoredDoc[] ranked = new ScoredDoc[top.size()];
+            for (int i = ranked.length - 1; i >= 0; i--) {
+                ranked[i] = top.poll();
+            }
+            int pageSize = Math.max(0, ranked.length - offset);
+            int[] passages = null;
+            if (!terms.isEmpty() && pageSize > 0) {
+                // Passages only for the page being returned, while its segments are still held
+                SegmentReader[] readers = new SegmentReader[pageSize];
+                int[] docs = new int[pageSize];
+                for (int i = 0; i < pageSize; i++) {
+                    readers[i] = ranked[offset + i].reader;
+                    docs[i] = ranked[offset + i].doc;
+                }
+                passages = PassageSelector.select(readers, docs, terms.toArray(new String[0]), idfs);
+            }
+            List<SearchHit> page = new ArrayList<>(pageSize);
+            for (int i = 0; i < pageSize; i++) {
+                ScoredDoc scored = ranked[offset + i];
+                page.add(passages == null
+                    ? new SearchHit(scored.noteId(), scored.score)
+                    : new SearchHit(scored.noteId(), scored.score, passages[i * 2], passages[i * 2 + 1]));
+            }
+            return new SearchResult(page, totalHits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void offer(PriorityQueue<ScoredDoc> top, ScoredDoc candidate, int wanted) {
+        if (top.size() < wanted) {
+            top.add(candidate);
+        } else if (ScoredDoc.ORDER.compare(candidate, top.peek()) > 0) {
+            top.poll();
+            top.add(candidate);
+        }
+    }
+
+    boolean needsFlush(long now, long maxBufferAgeMillis) {
+        lock.readLock().lock();
+        try {
+            int docs = buffer.reader.maxDoc();
+            return docs >= maxBufferedDocs || (docs > 0 && now - bufferStartedAt >= maxBufferAgeMillis)
+                || !flushing.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean isBufferFull() {
+        lock.readLock().lock();
+        try {
+            return buffer.reader.maxDoc() >= maxBufferedDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // An initial build raises the limit to write fewer, larger segments, then restores it
+    void setMaxBufferedDocs(int maxBufferedDocs) {
+        lock.writeLock().lock();
+        try {
+            this.maxBufferedDocs = maxBufferedDocs;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // After the directory is renamed; callers ensure no merge is running
+    void relocate(Path directory) {
+        synchronized (flushLock) {
+            lock.writeLock().lock();
+            try {
+                this.directory = directory;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    void flush() throws IOException {
+        flush(true);
+    }
+
+    // Records that everything saved before the given time is on disk
+    void commitCheckpoint(long checkpointMillis) throws IOException {
+        lock.writeLock().lock();
+        try {
+            checkpoint = checkpointMillis;
+            commitLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the active buffer out as a segment and commits. The buffer stays
+     * searchable while it is written; docs deleted in the meantime keep their
+     * doc ids, so the deletes carry straight over to the new segment. An
+     * initial build passes false so a crash mid-build leaves no checkpoint.
+     */
+    void flush(boolean advanceCheckpoint) throws IOException {
+        synchronized (flushLock) {
+            long frozenAt;
+            lock.writeLock().lock();
+            try {
+                frozenAt = System.currentTimeMillis();
+                if (buffer.reader.maxDoc() > 0) {
+                    flushing.add(buffer);
+                    buffer = new SegmentState(new WriteBuffer(), new BitSet());
+                    bufferStartedAt = frozenAt;
+                }
+                if (flushing.isEmpty()) {
+                    return;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // Retries any buffer a previous flush failed to write
+            while (true) {
+                SegmentState frozen;
+                String name;
+                lock.readLock().lock();
+                try {
+                    if (flushing.isEmpty()) {
+                        return;
+                    }
+                    frozen = flushing.get(0);
+                } finally {
+                    lock.readLock().unlock();
+                }
+                synchronized (this) {
+                    name = segmentName(nextSegment++);
+                }
+                int maxDoc = frozen.reader.maxDoc();
+                int[] identity = new int[maxDoc];
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    identity[doc] = doc;
+                }
+                Path file = directory.resolve(name);
+                IndexSegment segment;
+                try {
+                    SegmentWriter.write(file, List.of(frozen.reader), List.of(identity), maxDoc);
+                    segment = IndexSegment.open(file);
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(file);
+                    throw e;
+                }
+
+                lock.writeLock().lock();
+                try {
+                    SegmentState flushed = new SegmentState(segment, (BitSet) frozen.deleted.clone());
+                    flushing.remove(0);
+                    segments.add(flushed);
+                    if (flushing.isEmpty() && advanceCheckpoint) {
+                        checkpoint = frozenAt;
+                    }
+                    commitLocked();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    // Claims the smallest segments for a merge when there are too many; null when none is due
+    List<SegmentState> claimMerge() {
+        lock.writeLock().lock();
+        try {
+            if (merging || segments.size() <= mergeFactor) {
+                return null;
+            }
+            List<SegmentState> candidates = new ArrayList<>(segments);
+            candidates.sort(Comparator.comparingInt(state -> state.liveDocs));
+            List<SegmentState> claimed = new ArrayList<>(candidates.subList(0, mergeFactor));
+            for (SegmentState state : claimed) {
+                state.mergeSnapshot = (BitSet) state.deleted.clone();
+            }
+            merging = true;
+            return claimed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the claimed segments into one, dropping deleted docs. Docs deleted
+     * while the merge ran are carried over through the doc id remap.
+     */
+    void merge(List<SegmentState> sources) throws IOException {
+        String name;
+        synchronized (this) {
+            name = segmentName(nextSegment++);
+        }
+        Path file = directory.resolve(name);
+        try {
+            List<SegmentReader> readers = new ArrayList<>(sources.size());
+            List<int[]> remaps = new ArrayList<>(sources.size());
+            int next = 0;
+            for (SegmentState source : sources) {
+                int[] remap = new int[source.reader.maxDoc()];
+                for (int doc = 0; doc < remap.length; doc++) {
+                    remap[doc] = source.mergeSnapshot.get(doc) ? -1 : next++;
+                }
+                readers.add(source.reader);
+                remaps.add(remap);
+            }
+            SegmentWriter.write(file, readers, remaps, next);
+            IndexSegment merged = IndexSegment.open(file);
+
+            lock.writeLock().lock();
+            try {
+                BitSet deleted = new BitSet(next);
+                for (int s = 0; s < sources.size(); s++) {
+                    SegmentState source = sources.get(s);
+                    int[] remap = remaps.get(s);
+                    for (int doc = 0; doc < remap.length; doc++) {
+                        if (remap[doc] >= 0 && source.deleted.get(doc)) {
+                            deleted.set(remap[doc]);
+                        }
+                    }
+                }
+                SegmentState state = new SegmentState(merged, deleted);
+                int insertAt = segments.indexOf(sources.get(0));
+                segments.removeAll(sources);
+                segments.add(Math.min(insertAt, segments.size()), state);
+                commitLocked();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // Mapped buffers stay readable after unlink, so in-flight searches are unaffected
+            for (SegmentState source : sources) {
+                Files.deleteIfExists(directory.resolve(((IndexSegment) source.reader).name()));
+            }
+            logger.debug("Merged {} segments into {} with {} docs", sources.size(), name, next);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                merging = false;
+                for (SegmentState source : sources) {
+                    source.mergeSnapshot = null;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private boolean deleteLocked(String noteId) {
+        // At most one live doc per note, so stop at the first hit
+        List<SegmentState> states = allStates();
+        for (int i = states.size() - 1; i >= 0; i--) {
+            SegmentState state = states.get(i);
+            int doc = state.reader.findDoc(noteId);
+            if (doc >= 0 && !state.deleted.get(doc)) {
+                state.deleted.set(doc);
+                state.liveDocs--;
+                state.liveLength -= state.reader.docLength(doc);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<SegmentState> allStates() {
+        List<SegmentState> states = new ArrayList<>(segments.size() + flushing.size() + 1);
+        states.addAll(segments);
+        states.addAll(flushing);
+        states.add(buffer);
+        return states;
+    }
+
+    private void commitLocked() throws IOException {
+        SegmentManifest manifest = new SegmentManifest();
+        manifest.generation = ++generation;
+        manifest.checkpoint = checkpoint;
+        synchronized (this) {
+            manifest.nextSegment = nextSegment;
+        }
+        for (SegmentState state : segments) {
+            manifest.segments.add(new SegmentManifest.Entry(
+                ((IndexSegment) state.reader).name(), (BitSet) state.deleted.clone()));
+        }
+        manifest.write(directory);
+    }
+
+    private static String segmentName(int number) {
+        return String.format("seg_%06d.idx", number);
+    }
+
+    static final class SegmentState {
+        final SegmentReader reader;
+        final BitSet deleted;
+        int liveDocs;
+        long liveLength;
+        BitSet mergeSnapshot;
+
+        SegmentState(SegmentReader reader, BitSet deleted) {
+            this.reader = reader;
+            this.deleted = deleted;
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                if (!deleted.get(doc)) {
+                    liveDocs++;
+                    liveLength += reader.docLength(doc);
+                }
+            }
+        }
+    }
+
+    private static final class ScoredDoc {
+        // Greater is better: higher score, then more recent, then lower note id. Ids are only read on ties.
+        static final Comparator<ScoredDoc> ORDER = Comparator.<ScoredDoc>comparingDouble(d -> d.score)
+            .thenComparingLong(d -> d.recency)
+            .thenComparing(ScoredDoc::noteId, Comparator.reverseOrder());
+
+        final float score;
+        final long recency;  // only set when there is no text to score
+        final SegmentReader reader;
+        final int doc;
+        private String noteId;
+
+        ScoredDoc(float score, long recency, SegmentReader reader, int doc) {
+            this.score = score;
+            this.recency = recency;
+            this.reader = reader;
+            this.doc = doc;
+        }
+
+        String noteId() {
+            if (noteId == null) {
+                noteId = reader.noteId(doc);
+            }
+            return noteId;
+        }
+
+        boolean isAfter(SearchHit hit) {
+            if (score != hit.getScore()) {
+                return score < hit.getScore();
+            }
+            return noteId().compareTo(hit.getNoteId()) > 0;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.beetexting.workspace.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One tenant's {@link HnswIndex} and its files. The graph is saved whole to
+ * {@code hnsw.bin} now and then; in between, every change is appended to
+ * {@code vectors.log} and replayed on open, so an edit costs one short
+ * append rather than rewriting every vector. Checkpoint records in the log
+ * mark the time up to which it is complete, which tells the caller which
+ * notes to re-embed after a crash.
+ */
+final class TenantVectors {
+    private static final Logger logger = LoggerFactory.getLogger(TenantVectors.class);
+    private static final int MAGIC = 0x484e5357;  // "HNSW"
+    private static final int VERSION = 1;
+    private static final String SNAPSHOT = "hnsw.bin";
+    private static final String LOG = "vectors.log";
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CHECKPOINT = 3;
+    // Snapshot once the log holds this share of the graph's nodes
+    private static final int SNAPSHOT_DIVISOR = 4;
+    private static final int MIN_SNAPSHOT_RECORDS = 1000;
+
+    private final Path directory;
+    private final String embedding;
+    private final int m;
+    private final int efConstruction;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes flushes, which write the log and snapshot holding only the read lock
+    private final Object flushLock = new Object();
+    private HnswIndex index;
+    private DataOutputStream log;
+    private long logRecords;
+    private volatile long checkpoint = -1;
+    private boolean bulk;
+
+    private TenantVectors(Path directory, String embedding, HnswIndex index, int m, int efConstruction) {
+        this.directory = directory;
+        this.embedding = embedding;
+        this.index = index;
+        this.m = m;
+        this.efConstruction = efConstruction;
+    }
+
+    static TenantVectors open(Path directory, String embedding, int dimensions, int m, int efConstruction)
+            throws IOException {
+        Files.createDirectories(directory);
+        TenantVectors vectors = new TenantVectors(
+            directory, embedding, new HnswIndex(dimensions, m, efConstruction), m, efConstruction);
+        Path snapshot = directory.resolve(SNAPSHOT);
+        if (Files.exists(snapshot) && !vectors.readSnapshot(snapshot, dimensions)) {
+            // Another embedding or format; vectors from it are not comparable
+            logger.info("Discarding semantic index in {} built with a different embedding", directory);
+            Files.delete(snapshot);
+            Files.deleteIfExists(directory.resolve(LOG));
+        }
+        long replayed = vectors.replayLog();
+        HnswIndex current = vectors.index;
+        if (current.size() - current.liveSize() > current.liveSize()) {
+            vectors.rebuild();
+        } else if (replayed > 0) {
+            // Folds the log in, which also drops a torn record at its tail
+            vectors.writeSnapshot(vectors.checkpoint);
+        }
+        vectors.openLog();
+        return vectors;
+    }
+
+    // Time up to which every change is on disk, or -1 for a new index
+    long checkpoint() {
+        return checkpoint;
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return index.liveSize();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<SearchHit> search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            return index.search(query, k, ef);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void put(String noteId, float[] vector) throws IOException {
+        lock.writeLock().lock();
+        try {
+            index.put(noteId, vector);
+            if (!bulk) {
+                log.writeByte(OP_PUT);
+                log.writeUTF(noteId);
+                for (float value : vector) {
+                    log.writeFloat(value);
+                }
+                logRecords++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String noteId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!index.contains(noteId)) {
+                return;
+            }
+            index.remove(noteId);
+            if (!bulk) {
+                log.writeByte(OP_REMOVE);
+                log.writeUTF(noteId);
+                logRecords++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Puts skip the log until endBulk saves the whole graph
+    void beginBulk() {
+        lock.writeLock().lock();
+        try {
+            bulk = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void endBulk(long checkpoint) throws IOException {
+        lock.writeLock().lock();
+        try {
+            bulk = false;
+            writeSnapshot(checkpoint);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records that every save before {@code appliedThrough} is durable,
+     * saving the whole graph instead once the log has grown large relative
+     * to it. Only the read lock is held, which keeps writers out while
+     * searches carry on through a long snapshot.
+     */
+    void flush(long appliedThrough) throws IOException {
+        synchronized (flushLock) {
+            lock.readLock().lock();
+            try {
+                if (bulk || log == null) {
+                    return;
+                }
+                if (logRecords >= Math.max(MIN_SNAPSHOT_RECORDS, index.size() / SNAPSHOT_DIVISOR)) {
+                    writeSnapshot(appliedThrough);
+                    return;
+                }
+                log.writeByte(OP_CHECKPOINT);
+                log.writeLong(appliedThrough);
+                log.flush();
+                checkpoint = appliedThrough;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    void close() throws IOException {
+        synchronized (flushLock) {
+            lock.writeLock().lock();
+            try {
+                if (log != null) {
+                    log.close();
+                    log = null;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private boolean readSnapshot(Path snapshot, int dimensions) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(embedding)
+                    || in.readInt() != dimensions) {
+                return false;
+            }
+            long saved = in.readLong();
+            index = HnswIndex.readFrom(in, dimensions);
+            checkpoint = saved;
+            return true;
+        }
+    }
+
+    private long replayLog() throws IOException {
+        Path file = directory.resolve(LOG);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long records = 0;
+        float[] vector = new float[index.dimensions()];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                byte op = in.readByte();
+                if (op == OP_PUT) {
+                    String noteId = in.readUTF();
+                    for (int i = 0; i < vector.length; i++) {
+                        vector[i] = in.readFloat();
+                    }
+                    index.put(noteId, vector);
+                } else if (op == OP_REMOVE) {
+                    index.remove(in.readUTF());
+                } else if (op == OP_CHECKPOINT) {
+                    checkpoint = in.readLong();
+                } else {
+                    throw new IOException("Corrupt semantic index log in " + directory);
+                }
+                records++;
+            }
+        } catch (EOFException e) {
+            // End of the log, or a record torn by a crash; anything after the last checkpoint is re-embedded
+        }
+        return records;
+    }
+
+    // Reinserts the live vectors into a fresh graph, dropping tombstones
+    private void rebuild() throws IOException {
+        HnswIndex fresh = new HnswIndex(index.dimensions(), m, efConstruction);
+        index.forEachLive(fresh::put);
+        logger.info("Rebuilt semantic index in {}: {} nodes down to {}", directory, index.size(), fresh.size());
+        index = fresh;
+        writeSnapshot(checkpoint);
+    }
+
+    private void writeSnapshot(long savedAt) throws IOException {
+        Path temp = directory.resolve(SNAPSHOT + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(embedding);
+            out.writeInt(index.dimensions());
+            out.writeLong(savedAt);
+            index.writeTo(out);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpoint = savedAt;
+        // The snapshot now holds everything the log did
+        boolean reopen = log != null;
+        if (reopen) {
+            log.close();
+        }
+        Files.deleteIfExists(directory.resolve(LOG));
+        logRecords = 0;
+        if (reopen) {
+            openLog();
+        }
+    }
+
+    private void openLog() throws IOException {
+        log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(LOG),
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+}
@@ -0,0 +1,58 @@
+package com.beetexting.workspace.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into lower-cased runs of letters and digits. Used on both the
+ * index and query side, so changing the rules requires a reindex.
+ */
+public final class TextAnalyzer {
+    static final int MAX_TERM_LENGTH = 64;
+
+    private TextAnalyzer() {
+    }
+
+    public interface TokenConsumer {
+        void accept(String term, int position, int startOffset, int endOffset);
+    }
+
+    // Returns the position after the last token so fields can be laid end to end
+    public static int analyze(String text, int firstPosition, TokenConsumer consumer) {
+        int position = firstPosition;
+        if (text == null) {
+            return position;
+        }
+        StringBuilder term = new StringBuilder();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int cp = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(cp)) {
+                i += Character.charCount(cp);
+                continue;
+            }
+            int start = i;
+            term.setLength(0);
+            while (i < length) {
+                cp = text.codePointAt(i);
+                if (!Character.isLetterOrDigit(cp)) {
+                    break;
+                }
+                term.appendCodePoint(Character.toLowerCase(cp));
+                i += Character.charCount(cp);
+            }
+            if (term.length() <= MAX_TERM_LENGTH) {
+                consumer.accept(term.toString(), position, start, i);
+            }
+            position++;
+        }
+        return position;
+    }
+
+    public static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        analyze(text, 0, (term, position, start, end) -> terms.add(term));
+        return terms;
+    }
+}
@@ -0,0 +1,54 @@
+package com.beetexting.workspace.search;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Overlapping three code point grams for substring search. Text is lower
+ * cased and whitespace runs fold to one space, so a fragment matches however
+ * the note wraps or capitalizes it; punctuation is kept, since fragments like
+ * ticket ids depend on it.
+ */
+final class Trigrams {
+    static final int GRAM_LENGTH = 3;
+
+    private Trigrams() {
+    }
+
+    static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isWhitespace(codePoint)) {
+                space = normalized.length() > 0;
+                continue;
+            }
+            if (space) {
+                normalized.append(' ');
+                space = false;
+            }
+            normalized.appendCodePoint(Character.toLowerCase(codePoint));
+        }
+        return normalized.toString();
+    }
+
+    // Distinct grams of the text, each once; empty when it is shorter than a gram
+    static Set<String> of(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (text == null) {
+            return grams;
+        }
+        int[] codePoints = normalize(text).codePoints().toArray();
+        for (int i = 0; i + GRAM_LENGTH <= codePoints.length; i++) {
+            grams.add(new String(codePoints, i, GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    static int length(String text) {
+        String normalized = normalize(text);
+        return normalized.codePointCount(0, normalized.length());
+    }
+}
@@ -0,0 +1,229 @@
+package com.beetexting.workspace.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Heap-resident segment that takes new and updated notes until it is written
+ * out. It is only appended to while it is the active buffer; once frozen for a
+ * flush it is read-only.
+ */
+final class WriteBuffer implements SegmentReader {
+    static final int TITLE_BOOST = 2;
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<String, Integer> docsByNote = new HashMap<>();
+    private String[] noteIds = new String[64];
+    private int[] docLengths = new int[64];
+    private long[] updatedAts = new long[64];
+    private int maxDoc;
+
+    /** Analyzed form of one note, built before taking the index lock. */
+    static final class AnalyzedNote {
+        final String noteId;
+        final Map<String, Occurrences> terms = new HashMap<>();
+        final long updatedAt;
+        int length;
+
+        AnalyzedNote(String noteId, String title, String content, NoteFields fields) {
+            this.noteId = noteId;
+            this.updatedAt = fields.updatedAt;
+            int contentStart = TextAnalyzer.analyze(title, 0, (term, position, start, end) -> {
+                terms.computeIfAbsent(term, t -> new Occurrences()).add(position, TITLE_BOOST, 0, 0);
+                length += TITLE_BOOST;
+            });
+            // Content offsets are kept in code points, the unit MongoDB's $substrCP slices by
+            int[] counted = new int[2];  // chars consumed, code points in them
+            // Leave a gap so a phrase cannot match across the title and body
+            TextAnalyzer.analyze(content, contentStart + 1, (term, position, start, end) -> {
+                int startOffset = counted[1] + Character.codePointCount(content, counted[0], start);
+                counted[0] = start;
+                counted[1] = startOffset;
+                terms.computeIfAbsent(term, t -> new Occurrences())
+                    .add(position, 1, startOffset, Character.codePointCount(content, start, end));
+                length++;
+            });
+            // Filter terms are matched, never scored, so they stay out of the length and carry no positions
+            for (String term : fields.terms()) {
+                terms.computeIfAbsent(term, t -> new Occurrences()).freq = 1;
+            }
+            Set<String> grams = Trigrams.of(title);
+            grams.addAll(Trigrams.of(content));
+            for (String gram : grams) {
+                terms.computeIfAbsent(NoteFields.TRIGRAM + gram, t -> new Occurrences()).freq = 1;
+            }
+        }
+    }
+
+    int add(AnalyzedNote note) {
+        int doc = maxDoc++;
+        if (doc == noteIds.length) {
+            noteIds = Arrays.copyOf(noteIds, doc * 2);
+            docLengths = Arrays.copyOf(docLengths, doc * 2);
+            updatedAts = Arrays.copyOf(updatedAts, doc * 2);
+        }
+        noteIds[doc] = note.noteId;
+        docLengths[doc] = note.length;
+        updatedAts[doc] = note.updatedAt;
+        docsByNote.put(note.noteId, doc);
+        for (Map.Entry<String, Occurrences> entry : note.terms.entrySet()) {
+            Occurrences occurrences = entry.getValue();
+            postings.computeIfAbsent(entry.getKey(), t -> new PostingList()).add(doc, occurrences);
+        }
+        return doc;
+    }
+
+    @Override
+    public int maxDoc() {
+        return maxDoc;
+    }
+
+    @Override
+    public String noteId(int doc) {
+        return noteIds[doc];
+    }
+
+    @Override
+    public int docLength(int doc) {
+        return docLengths[doc];
+    }
+
+    @Override
+    public long updatedAt(int doc) {
+        return updatedAts[doc];
+    }
+
+    @Override
+    public int docFreq(String term) {
+        PostingList list = postings.get(term);
+        return list != null ? list.size : 0;
+    }
+
+    @Override
+    public PostingsCursor postings(String term) {
+        PostingList list = postings.get(term);
+        return list != null ? list.cursor() : null;
+    }
+
+    @Override
+    public Iterator<String> terms() {
+        List<String> terms = new ArrayList<>(postings.keySet());
+        terms.sort(SegmentWriter.TERM_ORDER);
+        return terms.iterator();
+    }
+
+    // The latest doc for a note; earlier ones in this buffer are already deleted
+    @Override
+    public int findDoc(String noteId) {
+        Integer doc = docsByNote.get(noteId);
+        return doc != null ? doc : -1;
+    }
+
+    static final class PostingList {
+        int[] docs = new int[2];
+        int[] freqs = new int[2];
+        int[] positionStarts = new int[3];
+        int[] positions = new int[4];
+        int[] startOffsets = new int[4];
+        int[] offsetLengths = new int[4];
+        int size;
+
+        void add(int doc, Occurrences occurrences) {
+            if (size + 1 == docs.length) {
+                docs = Arrays.copyOf(docs, docs.length * 2);
+                freqs = Arrays.copyOf(freqs, freqs.length * 2);
+                positionStarts = Arrays.copyOf(positionStarts, docs.length + 1);
+            }
+            int start = positionStarts[size];
+            int count = occurrences.count;
+            if (start + count > positions.length) {
+                int capacity = Math.max(positions.length * 2, start + count);
+                positions = Arrays.copyOf(positions, capacity);
+                startOffsets = Arrays.copyOf(startOffsets, capacity);
+                offsetLengths = Arrays.copyOf(offsetLengths, capacity);
+            }
+            System.arraycopy(occurrences.positions, 0, positions, start, count);
+            System.arraycopy(occurrences.startOffsets, 0, startOffsets, start, count);
+            System.arraycopy(occurrences.offsetLengths, 0, offsetLengths, start, count);
+            docs[size] = doc;
+            freqs[size] = occurrences.freq;
+            size++;
+            positionStarts[size] = start + count;
+        }
+
+        PostingsCursor cursor() {
+            return new PostingsCursor() {
+                private int index = -1;
+                private int position;
+                private int current;
+
+                @Override
+                public boolean next() {
+                    if (index + 1 >= size) {
+                        return false;
+                    }
+                    index++;
+                    position = positionStarts[index];
+                    return true;
+                }
+
+                @Override
+                public int doc() {
+                    return docs[index];
+                }
+
+                @Override
+                public int freq() {
+                    return freqs[index];
+                }
+
+                @Override
+                public int positionCount() {
+                    return positionStarts[index + 1] - positionStarts[index];
+                }
+
+                @Override
+                public int nextPosition() {
+                    current = position++;
+                    return positions[current];
+                }
+
+                @Override
+                public int startOffset() {
+                    return startOffsets[current];
+                }
+
+                @Override
+                public int offsetLength() {
+                    return offsetLengths[current];
+                }
+            };
+        }
+    }
+
+    static final class Occurrences {
+        int[] positions = new int[2];
+        int[] startOffsets = new int[2];
+        int[] offsetLengths = new int[2];
+        int count;
+        int freq;
+
+        void add(int position, int weight, int startOffset, int offsetLength) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+                startOffsets = Arrays.copyOf(startOffsets, count * 2);
+                offsetLengths = Arrays.copyOf(offsetLengths, count * 2);
+            }
+            positions[count] = position;
+            startOffsets[count] = startOffset;
+            offsetLengths[count] = offsetLength;
+            count++;
+            freq += weight;
+        }
+    }
+}
@@ -28,17 +28,20 @@ public class AnalyticsService {
     private final NoteRepository noteRepository;
     private final UserRepository userRepository;
     private final AmazonComprehend comprehendClient;
+    private final TagUsageService tagUsageService;
 
     @Autowired
     public AnalyticsService(
             AnalyticsRepository analyticsRepository,
             NoteRepository noteRepository,
             UserRepository userRepository,
-            AmazonComprehend comprehendClient) {
+            AmazonComprehend comprehendClient,
+            TagUsageService tagUsageService) {
         this.analyticsRepository = analyticsRepository;
         this.noteRepository = noteRepository;
         this.userRepository = userRepository;
         this.comprehendClient = comprehendClient;
+        this.tagUsageService = tagUsageService;
     }
 
     public Analytics getUserActivityMetrics(String tenantId) {
@@ -87,18 +90,14 @@ public class AnalyticsService {
                     .filter(note -> note.getCreatedAt().isAfter(today))
                     .count());
 
-            // Calculate tag distribution
-            Map<String, Integer> tagCounts = new HashMap<>();
-            allNotes.forEach(note -> {
-                note.getTags().forEach(tag -> 
-                    tagCounts.merge(tag, 1, Integer::sum)
-                );
-            });
+            // Tag distribution comes from the materialized counters
+            Map<String, Integer> tagCounts = new LinkedHashMap<>();
+            tagUsageService.getTagCounts(tenantId).forEach((tag, count) -> tagCounts.put(tag, count.intValue()));
             metrics.setDocumentsByTag(tagCounts);
 
             // Calculate average document length
             double avgLength = allNotes.stream()
-                    .mapToInt(note -> note.getContent().length())
+                    .mapToInt(note -> note.getContent() != null ? note.getContent().length() : note.getContentLength())
                     .average()
                     .orElse(0.0);
             metrics.setAverageDocumentLength(avgLength);
@@ -0,0 +1,60 @@
+package com.beetexting.workspace.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last row on a keyset page: its sort key and note id, URL-safe
+ * base64 encoded so clients treat it as opaque. The kind prefix stops a token
+ * from one ordering being replayed against another.
+ */
+final class ContinuationToken {
+    static final String KIND_RELEVANCE = "r";
+    static final String KIND_UPDATED = "u";
+
+    private static final char SEPARATOR = ':';
+
+    final String kind;
+    final String sortKey;  // empty when the last row had no sort value
+    final String id;
+
+    ContinuationToken(String kind, String sortKey, String id) {
+        this.kind = kind;
+        this.sortKey = sortKey;
+        this.id = id;
+    }
+
+    String encode() {
+        String raw = kind + SEPARATOR + sortKey + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Which ordering issued the token, without validating the rest of it
+    static boolean isKind(String token, String kind) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            return raw.startsWith(kind + SEPARATOR);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    static ContinuationToken decode(String token, String expectedKind) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+        int first = raw.indexOf(SEPARATOR);
+        int second = first < 0 ? -1 : raw.indexOf(SEPARATOR, first + 1);
+        if (second < 0 || second == raw.length() - 1) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        String kind = raw.substring(0, first);
+        if (!kind.equals(expectedKind)) {
+            throw new IllegalArgumentException("Cursor belongs to a different query");
+        }
+        return new ContinuationToken(kind, raw.substring(first + 1, second), raw.substring(second + 1));
+    }
+}
@@ -0,0 +1,149 @@
+package com.beetexting.workspace.service;
+
+import com.beetexting.workspace.diff.TextDiff;
+import com.beetexting.workspace.model.DiffHunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+@Service
+public class DiffService {
+    private static final Logger logger = LoggerFactory.getLogger(DiffService.class);
+    private static final int MAX_CACHED_DIFFS = 64;
+    // Diffs with more hunk text than this are streamed but not kept
+    private static final int MAX_CACHED_DIFF_CHARS = 256 * 1024;
+    private static final int MAX_CONTEXT_LINES = 20;
+    private static final Duration DIFF_TIMEOUT = Duration.ofMillis(750);
+
+    private final DocumentService documentService;
+    private final Map<String, List<DiffHunk>> recentDiffs;
+
+    @Autowired
+    public DiffService(DocumentService documentService) {
+        this.documentService = documentService;
+        this.recentDiffs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<DiffHunk>> eldest) {
+                return size() > MAX_CACHED_DIFFS;
+            }
+        };
+    }
+
+    public List<DiffHunk> diffRevisions(String documentId, long fromRevision, Long toRevision,
+            String granularity, int context) {
+        List<DiffHunk> hunks = new ArrayList<>();
+        prepareDiff(documentId, fromRevision, toRevision, granularity, context).forEachHunk(hunks::add);
+        return hunks;
+    }
+
+    /**
+     * Validates the request and loads both revisions, so bad input fails before
+     * a response is started. The hunks themselves are computed as the returned
+     * diff is iterated. Revisions are immutable, so cached results never need
+     * invalidating.
+     */
+    public RevisionDiff prepareDiff(String documentId, long fromRevision, Long toRevision,
+            String granularity, int context) {
+        boolean words;
+        if ("word".equalsIgnoreCase(granularity)) {
+            words = true;
+        } else if (granularity == null || "line".equalsIgnoreCase(granularity)) {
+            words = false;
+        } else {
+            throw new IllegalArgumentException("Unknown diff granularity: " + granularity);
+        }
+
+        long to = toRevision != null ? toRevision : documentService.getDocument(documentId).getRevision();
+        int contextLines = Math.min(Math.max(context, 0), MAX_CONTEXT_LINES);
+        String key = documentId + ":" + fromRevision + ":" + to + ":" + (words ? "word" : "line") + ":" + contextLines;
+        synchronized (recentDiffs) {
+            List<DiffHunk> cached = recentDiffs.get(key);
+            if (cached != null) {
+                return new RevisionDiff(key, null, null, contextLines, words, cached);
+            }
+        }
+
+        String oldContent = documentService.getRevisionContent(documentId, fromRevision);
+        String newContent = documentService.getRevisionContent(documentId, to);
+        return new RevisionDiff(key, oldContent, newContent, contextLines, words, null);
+    }
+
+    private void cache(String key, List<DiffHunk> hunks) {
+        synchronized (recentDiffs) {
+            recentDiffs.put(key, hunks);
+        }
+    }
+
+    private static int textLength(DiffHunk hunk) {
+        int chars = 0;
+        for (List<String> lines : List.of(hunk.getContextBefore(), hunk.getDeleted(), hunk.getInserted(),
+                hunk.getContextAfter())) {
+            for (String line : lines) {
+                chars += line.length();
+            }
+        }
+        if (hunk.getWords() != null) {
+            for (DiffHunk.Segment segment : hunk.getWords()) {
+                chars += segment.getText().length();
+            }
+        }
+        return chars;
+    }
+
+    public class RevisionDiff {
+        private final String key;
+        private final String oldContent;
+        private final String newContent;
+        private final int context;
+        private final boolean words;
+        private final List<DiffHunk> cached;
+
+        private RevisionDiff(String key, String oldContent, String newContent, int context, boolean words,
+                List<DiffHunk> cached) {
+            this.key = key;
+            this.oldContent = oldContent;
+            this.newContent = newContent;
+            this.context = context;
+            this.words = words;
+            this.cached = cached;
+        }
+
+        // Hunks in document order, each handed over as soon as it is built
+        public void forEachHunk(Consumer<DiffHunk> action) {
+            if (cached != null) {
+                cached.forEach(action);
+                return;
+            }
+
+            long start = System.nanoTime();
+            List<DiffHunk> kept = new ArrayList<>();
+            int[] keptChars = {0};
+            int[] count = {0};
+            TextDiff.diff(oldContent, newContent, context, words, DIFF_TIMEOUT.toNanos(), hunk -> {
+                count[0]++;
+                if (keptChars[0] <= MAX_CACHED_DIFF_CHARS) {
+                    keptChars[0] += textLength(hunk);
+                    if (keptChars[0] <= MAX_CACHED_DIFF_CHARS) {
+                        kept.add(hunk);
+                    } else {
+                        kept.clear();
+                    }
+                }
+                action.accept(hunk);
+            });
+            logger.debug("Diffed {} into {} hunks in {} ms", key, count[0], (System.nanoTime() - start) / 1_000_000);
+
+            if (keptChars[0] <= MAX_CACHED_DIFF_CHARS) {
+                cache(key, kept);
+            }
+        }
+    }
+}
@@ -1,10 +1,22 @@
 package com.beetexting.workspace.service;
 
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.metrics.CollaborationMetrics;
+import com.beetexting.workspace.metrics.DocumentHotnessSketch;
+import com.beetexting.workspace.metrics.OpAppliedEvent;
+import com.beetexting.workspace.metrics.PersistenceFlushEvent;
+import com.beetexting.workspace.metrics.PresenceWriteEvent;
 import com.beetexting.workspace.model.Note;
 import com.beetexting.workspace.model.DocumentChange;
+import com.beetexting.workspace.model.DocumentHotness;
 import com.beetexting.workspace.model.CursorInfo;
+import com.beetexting.workspace.model.DocumentSnapshot;
+import com.beetexting.workspace.model.NoteRevision;
 import com.beetexting.workspace.model.PresenceInfo;
 import com.beetexting.workspace.repository.NoteRepository;
+import com.beetexting.workspace.storage.ChunkedContent;
+import com.beetexting.workspace.storage.NoteContentStore;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,10 +26,14 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
 
 @Service
 public class DocumentService {
@@ -28,40 +44,180 @@ public class DocumentService {
 
     private final NoteRepository noteRepository;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final NoteContentStore noteContentStore;
+    private final VersionHistoryService versionHistoryService;
+    private final CollaborationMetrics collaborationMetrics;
+    private final DocumentHotnessSketch hotness;
     private final Map<String, Note> activeDocuments;
+    private final Map<String, ChunkedContent> chunkedContents;
 
     @Autowired
     public DocumentService(
             NoteRepository noteRepository,
-            RedisTemplate<String, Object> redisTemplate) {
+            RedisTemplate<String, Object> redisTemplate,
+            NoteContentStore noteContentStore,
+            VersionHistoryService versionHistoryService,
+            CollaborationMetrics collaborationMetrics,
+            AppProperties appProperties) {
         this.noteRepository = noteRepository;
         this.redisTemplate = redisTemplate;
+        this.noteContentStore = noteContentStore;
+        this.versionHistoryService = versionHistoryService;
+        this.collaborationMetrics = collaborationMetrics;
         this.activeDocuments = new ConcurrentHashMap<>();
+        this.chunkedContents = new ConcurrentHashMap<>();
+        AppProperties.Metrics metrics = appProperties.getMetrics();
+        this.hotness = new DocumentHotnessSketch(metrics.getHotDocuments(), metrics.getHotnessHalfLife());
+        collaborationMetrics.registerDocumentGauges(activeDocuments::size, this::residentContentBytes);
+        collaborationMetrics.registerHotnessGauges(hotness);
     }
 
     @Transactional
     public Note applyChange(String documentId, DocumentChange change) {
-        Note note = getOrLoadDocument(documentId);
-        synchronized (note) {
-            // Validate change version
-            if (change.getVersion() != note.getVersion()) {
-                throw new IllegalStateException("Version mismatch");
+        Timer.Sample sample = collaborationMetrics.startTimer();
+        OpAppliedEvent event = new OpAppliedEvent();
+        event.begin();
+        String outcome = CollaborationMetrics.OUTCOME_ERROR;
+        try {
+            Note note = applyChangeLocked(documentId, change, event);
+            outcome = CollaborationMetrics.OUTCOME_APPLIED;
+            // Rejected and stale changes never reach the document, so they do not count towards its heat
+            hotness.recordOp(documentId, utf8Length(change.getText()));
+            return note;
+        } catch (VersionMismatchException e) {
+            outcome = CollaborationMetrics.OUTCOME_VERSION_MISMATCH;
+            collaborationMetrics.recordVersionMismatch(documentId);
+            throw e;
+        } finally {
+            collaborationMetrics.recordApply(sample, documentId, change.getOperation(), outcome);
+            event.end();
+            if (event.shouldCommit()) {
+                event.changeId = change.getId();
+                event.documentId = documentId;
+                event.operation = change.getOperation();
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    private Note applyChangeLocked(String documentId, DocumentChange change, OpAppliedEvent event) {
+        while (true) {
+            Note note = getOrLoadDocument(documentId);
+            long lockRequested = System.nanoTime();
+            synchronized (note) {
+                event.lockWait = System.nanoTime() - lockRequested;
+                // Evicted between the lookup and the lock; edit the reloaded copy instead
+                if (activeDocuments.get(documentId) != note) {
+                    continue;
+                }
+
+                // Validate change version
+                if (change.getVersion() != note.getVersion()) {
+                    throw new VersionMismatchException();
+                }
+
+                // Apply the change
+                ChunkedContent chunked = chunkedContents.get(documentId);
+                long applyStart = System.nanoTime();
+                if (chunked != null) {
+                    applyChangeToContent(chunked, change);
+                } else {
+                    applyChangeToContent(note, change);
+                }
+                event.applyTime = System.nanoTime() - applyStart;
+                // Only a change that applied gets a revision number, so a rejected one leaves no gap
+                note.recordEdit(change.getUserId());
+
+                // Persist dirty chunks, the revision and the note
+                PersistenceFlushEvent flush = new PersistenceFlushEvent();
+                flush.begin();
+                long flushStart = System.nanoTime();
+                int length;
+                if (chunked != null) {
+                    List<Note.ContentChunk> index = chunked.flush();
+                    note.setContentChunks(index);
+                    length = chunked.length();
+                    note.setContentLength(length);
+                    flush.blobFlush = System.nanoTime() - flushStart;
+                    versionHistoryService.record(note, change, null, index, length);
+                } else {
+                    length = note.getContent().length();
+                    versionHistoryService.record(note, change, note.getContent(), null, length);
+                }
+                event.documentLength = length;
+                long saveStart = System.nanoTime();
+                flush.revisionWrite = saveStart - flushStart - flush.blobFlush;
+
+                // Save to database
+                note = noteRepository.save(note);
+                flush.noteSave = System.nanoTime() - saveStart;
+                collaborationMetrics.recordSave(flush.noteSave, chunked != null);
+                flush.end();
+                if (flush.shouldCommit()) {
+                    flush.changeId = change.getId();
+                    flush.documentId = documentId;
+                    flush.chunked = chunked != null;
+                    flush.commit();
+                }
+
+                // Once a note has been split into chunks, stop holding its full body
+                if (chunked == null && note.getContent() != null && !note.getContentChunks().isEmpty()) {
+                    note.setContent(null);
+                    chunkedContents.put(documentId, noteContentStore.openChunked(note));
+                }
+
+                // Update cache
+                activeDocuments.put(documentId, note);
+                return note;
             }
+        }
+    }
 
-            // Apply the change
-            applyChangeToContent(note, change);
-            note.addVersion(note.getContent(), change.getUserId(), change.getChangeType(), change.getDescription());
+    // Reads a slice of the document, fetching only the chunks that overlap it
+    public String readContent(String documentId, int start, int end) {
+        return withDocument(documentId, (note, chunked) -> {
+            if (chunked != null) {
+                return chunked.read(Math.max(start, 0), Math.min(end, chunked.length()));
+            }
+            String content = note.getContent() != null ? note.getContent() : "";
+            return content.substring(Math.max(start, 0), Math.min(end, content.length()));
+        });
+    }
 
-            // Save to database
-            note = noteRepository.save(note);
+    public int getContentLength(String documentId) {
+        return withDocument(documentId, (note, chunked) -> {
+            if (chunked != null) {
+                return chunked.length();
+            }
+            return note.getContent() != null ? note.getContent().length() : 0;
+        });
+    }
 
-            // Update cache
-            activeDocuments.put(documentId, note);
+    // Encoded size of an edit's text without allocating the encoding
+    private static int utf8Length(String text) {
+        if (text == null) {
+            return 0;
         }
-        return note;
+        int bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
     }
 
-    private void applyChangeToContent(Note note, DocumentChange change) {
+    static void applyChangeToContent(Note note, DocumentChange change) {
         String content = note.getContent();
         StringBuilder newContent = new StringBuilder(content);
 
@@ -82,22 +238,57 @@ public class DocumentService {
         note.setContent(newContent.toString());
     }
 
+    static void applyChangeToContent(ChunkedContent content, DocumentChange change) {
+        switch (change.getOperation()) {
+            case "INSERT":
+                content.insert(change.getStartPosition(), change.getText());
+                break;
+            case "DELETE":
+                content.delete(change.getStartPosition(), change.getEndPosition());
+                break;
+            case "REPLACE":
+                content.replace(change.getStartPosition(), change.getEndPosition(), change.getText());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + change.getOperation());
+        }
+    }
+
+    public List<DocumentHotness> getHotDocuments(int limit) {
+        return hotness.top(limit);
+    }
+
+    public void recordSubscribers(String documentId, int subscribers) {
+        hotness.recordSubscribers(documentId, subscribers);
+    }
+
     public void updatePresence(String documentId, String userId, boolean active) {
         String presenceKey = PRESENCE_KEY_PREFIX + documentId;
         PresenceInfo presence = new PresenceInfo(userId);
         presence.setActive(active);
 
         // Update Redis
+        PresenceWriteEvent event = new PresenceWriteEvent();
+        event.begin();
         redisTemplate.opsForHash().put(presenceKey, userId, presence);
         redisTemplate.expire(presenceKey, PRESENCE_TIMEOUT);
+        event.end();
+        if (event.shouldCommit()) {
+            event.documentId = documentId;
+            event.userId = userId;
+            event.active = active;
+            event.commit();
+        }
 
         // Update note
-        Note note = getOrLoadDocument(documentId);
-        if (active) {
-            note.addCollaborator(userId);
-        } else {
-            note.removeCollaborator(userId);
-        }
+        withDocument(documentId, (note, chunked) -> {
+            if (active) {
+                note.addCollaborator(userId);
+            } else {
+                note.removeCollaborator(userId);
+            }
+            return null;
+        });
     }
 
     public void updateCursor(String documentId, String userId, CursorInfo cursor) {
@@ -116,8 +307,10 @@ public class DocumentService {
         redisTemplate.opsForHash().delete(cursorKey, userId);
 
         // Update note
-        Note note = getOrLoadDocument(documentId);
-        note.removeCollaborator(userId);
+        withDocument(documentId, (note, chunked) -> {
+            note.removeCollaborator(userId);
+            return null;
+        });
     }
 
     @Transactional(readOnly = true)
@@ -125,24 +318,154 @@ public class DocumentService {
         return getOrLoadDocument(documentId);
     }
 
+    // Builds the open-document payload from the active in-memory copy
+    public DocumentSnapshot getSnapshot(String documentId, int maxContentLength) {
+        DocumentSnapshot snapshot = new DocumentSnapshot();
+        snapshot.setDocumentId(documentId);
+        withDocument(documentId, (note, chunked) -> {
+            snapshot.setTitle(note.getTitle());
+            snapshot.setVersion(note.getVersion());
+            snapshot.setCollaborators(new HashSet<>(note.getCollaborators()));
+
+            if (chunked != null) {
+                int end = Math.min(maxContentLength, chunked.length());
+                snapshot.setContent(chunked.read(0, end));
+                snapshot.setContentLength(chunked.length());
+                snapshot.setComplete(end == chunked.length());
+            } else {
+                String content = note.getContent() != null ? note.getContent() : "";
+                snapshot.setContent(content);
+                snapshot.setContentLength(content.length());
+                snapshot.setComplete(true);
+            }
+            return snapshot;
+        });
+        snapshot.setPresence(getPresence(documentId));
+        snapshot.setCursors(getCursors(documentId));
+        return snapshot;
+    }
+
+    // Owning tenant, checked by the document endpoints before anything is read
+    public String getTenantId(String documentId) {
+        return getOrLoadDocument(documentId).getTenantId();
+    }
+
+    public Long getDocumentVersion(String documentId) {
+        return getOrLoadDocument(documentId).getVersion();
+    }
+
+    // Copied under the note monitor; the live set is mutated by presence updates
+    public Set<String> getCollaborators(String documentId) {
+        return withDocument(documentId, (note, chunked) -> new HashSet<>(note.getCollaborators()));
+    }
+
+    public List<PresenceInfo> getPresence(String documentId) {
+        List<PresenceInfo> presence = new ArrayList<>();
+        for (Object value : redisTemplate.opsForHash().values(PRESENCE_KEY_PREFIX + documentId)) {
+            if (value instanceof PresenceInfo) {
+                presence.add((PresenceInfo) value);
+            }
+        }
+        return presence;
+    }
+
+    public List<CursorInfo> getCursors(String documentId) {
+        List<CursorInfo> cursors = new ArrayList<>();
+        for (Object value : redisTemplate.opsForHash().values(CURSOR_KEY_PREFIX + documentId)) {
+            if (value instanceof CursorInfo) {
+                cursors.add((CursorInfo) value);
+            }
+        }
+        return cursors;
+    }
+
     @Transactional(readOnly = true)
     public List<Note.NoteVersion> getVersionHistory(String documentId) {
         Note note = getOrLoadDocument(documentId);
         return note.getVersions();
     }
 
+    public List<NoteRevision> listRevisions(String documentId, Long beforeRevision, int size) {
+        return versionHistoryService.listRevisions(documentId, beforeRevision, size);
+    }
+
+    public String getRevisionContent(String documentId, long revision) {
+        Note note = getOrLoadDocument(documentId);
+        if (revision < 1 || revision > note.getRevision()) {
+            throw new IllegalArgumentException("Revision " + revision + " not found for document " + documentId);
+        }
+        return versionHistoryService.reconstruct(documentId, revision);
+    }
+
     private Note getOrLoadDocument(String documentId) {
         return activeDocuments.computeIfAbsent(documentId, id -> {
             Optional<Note> doc = noteRepository.findById(id);
-            return doc.orElseThrow(() -> new IllegalArgumentException("Document not found: " + id));
+            Note note = doc.orElseThrow(() -> new IllegalArgumentException("Document not found: " + id));
+
+            // Chunked notes stay on the blob store until an edit or read touches a chunk
+            if (noteContentStore.isChunked(note)) {
+                chunkedContents.put(id, noteContentStore.openChunked(note));
+                return note;
+            }
+            return noteContentStore.hydrate(note);
         });
     }
 
+    /**
+     * Runs {@code action} under the monitor of the document's active copy, with
+     * its chunked body if it has one. Cleanup evicts under the same monitor, so a
+     * copy found evicted once locked is looked up again rather than used with
+     * chunks that may already belong to its reloaded replacement.
+     */
+    private <T> T withDocument(String documentId, BiFunction<Note, ChunkedContent, T> action) {
+        while (true) {
+            Note note = getOrLoadDocument(documentId);
+            synchronized (note) {
+                if (activeDocuments.get(documentId) == note) {
+                    return action.apply(note, chunkedContents.get(documentId));
+                }
+            }
+        }
+    }
+
+    // UTF-16 estimate of the document bodies currently held in memory
+    private long residentContentBytes() {
+        long chars = 0;
+        for (Map.Entry<String, Note> entry : activeDocuments.entrySet()) {
+            Note note = entry.getValue();
+            synchronized (note) {
+                if (activeDocuments.get(entry.getKey()) != note) {
+                    continue;
+                }
+                ChunkedContent chunked = chunkedContents.get(entry.getKey());
+                if (chunked != null) {
+                    chars += chunked.loadedChars();
+                } else if (note.getContent() != null) {
+                    chars += note.getContent().length();
+                }
+            }
+        }
+        return chars * 2;
+    }
+
     public void cleanupInactiveDocuments() {
         Instant threshold = Instant.now().minus(PRESENCE_TIMEOUT);
-        activeDocuments.entrySet().removeIf(entry -> {
+        for (Map.Entry<String, Note> entry : activeDocuments.entrySet()) {
             Note doc = entry.getValue();
-            return doc.getCollaborators().isEmpty();
-        });
+            // Evicted under the note monitor so no edit or read holding it sees its chunks vanish
+            synchronized (doc) {
+                if (doc.getCollaborators().isEmpty() && activeDocuments.remove(entry.getKey(), doc)) {
+                    chunkedContents.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    static class VersionMismatchException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        VersionMismatchException() {
+            super("Version mismatch");
+        }
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.beetexting.workspace.service;
+
+import com.beetexting.workspace.model.CursorInfo;
+import com.beetexting.workspace.model.DocumentSnapshot;
+import com.beetexting.workspace.model.PresenceInfo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class DocumentSnapshotService {
+    private static final Logger logger = LoggerFactory.getLogger(DocumentSnapshotService.class);
+    private static final int MAX_CACHED_SNAPSHOTS = 256;
+    public static final int MAX_SNAPSHOT_CONTENT = 64 * 1024;
+
+    private final DocumentService documentService;
+    private final ObjectMapper objectMapper;
+    private final Map<String, EncodedSnapshot> encodedSnapshots;
+
+    @Autowired
+    public DocumentSnapshotService(DocumentService documentService, ObjectMapper objectMapper) {
+        this.documentService = documentService;
+        this.objectMapper = objectMapper;
+        this.encodedSnapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, EncodedSnapshot> eldest) {
+                return size() > MAX_CACHED_SNAPSHOTS;
+            }
+        };
+    }
+
+    // Cheap check for repeat opens: no content is read or serialized
+    public String currentETag(String documentId) {
+        return etag(documentId,
+            documentService.getDocumentVersion(documentId),
+            documentService.getCollaborators(documentId),
+            documentService.getPresence(documentId),
+            documentService.getCursors(documentId));
+    }
+
+    public EncodedSnapshot getEncodedSnapshot(String documentId) {
+        return getEncodedSnapshot(documentId, currentETag(documentId));
+    }
+
+    // For callers that already computed the current tag for a conditional request
+    public EncodedSnapshot getEncodedSnapshot(String documentId, String etag) {
+        synchronized (encodedSnapshots) {
+            EncodedSnapshot cached = encodedSnapshots.get(documentId);
+            if (cached != null && cached.getETag().equals(etag)) {
+                return cached;
+            }
+        }
+
+        DocumentSnapshot snapshot = documentService.getSnapshot(documentId, MAX_SNAPSHOT_CONTENT);
+        EncodedSnapshot encoded = encode(snapshot);
+        synchronized (encodedSnapshots) {
+            encodedSnapshots.put(documentId, encoded);
+        }
+        return encoded;
+    }
+
+    private EncodedSnapshot encode(DocumentSnapshot snapshot) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(snapshot);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(json.length / 4, 64));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(json);
+            }
+            String etag = etag(snapshot.getDocumentId(), snapshot.getVersion(), snapshot.getCollaborators(),
+                snapshot.getPresence(), snapshot.getCursors());
+            logger.debug("Encoded snapshot for document {}: {} bytes, {} gzipped",
+                snapshot.getDocumentId(), json.length, out.size());
+            return new EncodedSnapshot(etag, json, out.toByteArray());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize snapshot", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compress snapshot", e);
+        }
+    }
+
+    // Covers the head version and the roster, but not timestamps that change on every heartbeat
+    private String etag(String documentId, Long version, Collection<String> collaborators,
+            List<PresenceInfo> presence, List<CursorInfo> cursors) {
+        CRC32 crc = new CRC32();
+        StringBuilder roster = new StringBuilder();
+        new TreeSet<>(collaborators).forEach(userId -> roster.append(userId).append(','));
+        roster.append('|');
+        presence.stream()
+            .sorted(Comparator.comparing(PresenceInfo::getUserId, Comparator.nullsFirst(Comparator.naturalOrder())))
+            .forEach(p -> roster.append(p.getUserId()).append(':').append(p.getStatus()).append(','));
+        roster.append('|');
+        cursors.stream()
+            .sorted(Comparator.comparing(CursorInfo::getUserId, Comparator.nullsFirst(Comparator.naturalOrder())))
+            .forEach(c -> roster.append(c.getUserId()).append(':').append(c.getLine()).append(':')
+                .append(c.getColumn()).append(','));
+        crc.update(roster.toString().getBytes(StandardCharsets.UTF_8));
+        return "\"" + documentId + "-" + version + "-" + Long.toHexString(crc.getValue()) + "\"";
+    }
+
+    public static class EncodedSnapshot {
+        private final String eTag;
+        private final byte[] json;
+        private final byte[] gzipped;
+
+        EncodedSnapshot(String eTag, byte[] json, byte[] gzipped) {
+            this.eTag = eTag;
+            this.json = json;
+            this.gzipped = gzipped;
+        }
+
+        public String getETag() { return eTag; }
+        public byte[] getJson() { return json; }
+        public byte[] getGzipped() { return gzipped; }
+    }
+}
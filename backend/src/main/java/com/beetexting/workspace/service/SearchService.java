@@ -4,49 +4,458 @@ import com.amazonaws.services.comprehend.AmazonComprehend;
 import com.amazonaws.services.comprehend.model.DetectEntitiesRequest;
 import com.amazonaws.services.comprehend.model.DetectEntitiesResult;
 import com.amazonaws.services.comprehend.model.Entity;
+import com.beetexting.workspace.model.CursorPage;
 import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.model.NoteSummary;
 import com.beetexting.workspace.repository.NoteRepository;
+import com.beetexting.workspace.search.SearchHit;
+import com.beetexting.workspace.search.NoteQuery;
+import com.beetexting.workspace.search.ReindexStatus;
+import com.beetexting.workspace.search.SearchIndexService;
+import com.beetexting.workspace.search.SearchResult;
+import com.beetexting.workspace.search.SearchResultCache;
+import com.beetexting.workspace.search.SemanticIndexService;
+import com.beetexting.workspace.search.SimilarityIndexService;
+import com.beetexting.workspace.search.TagIndexService;
+import com.beetexting.workspace.search.TextAnalyzer;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoExpression;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class SearchService {
     private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
     private static final double RELEVANCE_THRESHOLD = 0.5;
+    private static final int SNIPPET_LENGTH = 200;
+    // First batch of substring candidates checked against the stored text
+    private static final int VERIFY_BATCH = 100;
+    private static final int EXPORT_BATCH = 500;
+    private static final String NOTES_COLLECTION = "notes";
     private static final Set<String> ENTITY_TYPES = new HashSet<>(Arrays.asList(
         "PERSON", "ORGANIZATION", "LOCATION", "COMMERCIAL_ITEM", "EVENT", "TITLE", "QUANTITY"
     ));
 
     private final NoteRepository noteRepository;
+    private final MongoTemplate mongoTemplate;
     private final AmazonComprehend comprehendClient;
+    private final SearchIndexService searchIndexService;
+    private final TagIndexService tagIndexService;
+    private final SimilarityIndexService similarityIndexService;
+    private final SemanticIndexService semanticIndexService;
+    private final TagUsageService tagUsageService;
+    private final SearchResultCache searchResultCache;
 
     @Autowired
-    public SearchService(NoteRepository noteRepository, AmazonComprehend comprehendClient) {
+    public SearchService(NoteRepository noteRepository, MongoTemplate mongoTemplate,
+            AmazonComprehend comprehendClient, SearchIndexService searchIndexService,
+            TagIndexService tagIndexService, SimilarityIndexService similarityIndexService,
+            SemanticIndexService semanticIndexService, TagUsageService tagUsageService,
+            SearchResultCache searchResultCache) {
         this.noteRepository = noteRepository;
+        this.mongoTemplate = mongoTemplate;
         this.comprehendClient = comprehendClient;
+        this.searchIndexService = searchIndexService;
+        this.tagIndexService = tagIndexService;
+        this.similarityIndexService = similarityIndexService;
+        this.semanticIndexService = semanticIndexService;
+        this.tagUsageService = tagUsageService;
+        this.searchResultCache = searchResultCache;
     }
 
-    public Page<Note> searchNotes(String tenantId, String query, Set<String> tags, 
-            String sentiment, Pageable pageable) {
-        if (tags != null && !tags.isEmpty() && sentiment != null) {
-            return noteRepository.findByTenantIdAndTagsInAndSentiment(
-                tenantId, tags, sentiment, pageable);
-        } else if (tags != null && !tags.isEmpty()) {
-            return noteRepository.findByTenantIdAndTagsIn(tenantId, tags, pageable);
-        } else if (sentiment != null) {
-            return noteRepository.findByTenantIdAndSentiment(tenantId, sentiment, pageable);
-        } else if (query != null && !query.trim().isEmpty()) {
-            return noteRepository.searchByTenantIdAndContent(tenantId, query, pageable);
-        } else {
-            return noteRepository.findByTenantId(tenantId, pageable);
+    /**
+     * Picks an execution path for the query. Anything with text, and filtered
+     * listings in the default order, run in the local index, which intersects
+     * the filters before scoring. Unfiltered listings and listings with an
+     * explicit sort go to MongoDB with every filter folded into one query, as
+     * does everything while the tenant's index is still being built.
+     */
+    public Page<NoteSummary> searchNotes(String tenantId, NoteQuery query, Pageable pageable) {
+        return searchResultCache.get(tenantId, "page|" + query.normalized() + "|" + pageKey(pageable),
+            () -> plan(tenantId, query, pageable));
+    }
+
+    private Page<NoteSummary> plan(String tenantId, NoteQuery query, Pageable pageable) {
+        if (usesIndex(query, pageable) && searchIndexService.isReady(tenantId)) {
+            return searchIndexed(tenantId, query, pageable);
+        }
+        Query mongoQuery = mongoQuery(tenantId, query, pageable);
+        List<NoteSummary> notes = findSummaries(mongoQuery);
+        return PageableExecutionUtils.getPage(notes, pageable,
+            () -> mongoTemplate.count(Query.of(mongoQuery).limit(-1).skip(-1), Note.class));
+    }
+
+    /**
+     * Same plan as {@link #searchNotes} without the count query; whether a
+     * next page exists is found by over-fetching one row.
+     */
+    public Slice<NoteSummary> searchNotesSlice(String tenantId, NoteQuery query, Pageable pageable) {
+        return searchResultCache.get(tenantId, "slice|" + query.normalized() + "|" + pageKey(pageable),
+            () -> planSlice(tenantId, query, pageable));
+    }
+
+    private Slice<NoteSummary> planSlice(String tenantId, NoteQuery query, Pageable pageable) {
+        if (usesIndex(query, pageable) && searchIndexService.isReady(tenantId)) {
+            Page<NoteSummary> page = searchIndexed(tenantId, query, pageable);
+            return new SliceImpl<>(page.getContent(), pageable, page.hasNext());
+        }
+        Query mongoQuery = mongoQuery(tenantId, query, pageable);
+        mongoQuery.limit(pageable.getPageSize() + 1);
+        List<NoteSummary> notes = findSummaries(mongoQuery);
+        boolean hasNext = notes.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? notes.subList(0, pageable.getPageSize()) : notes, pageable, hasNext);
+    }
+
+    /**
+     * Keyset-paginated variant of {@link #searchNotes}. Each page seeks past the
+     * previous page's last row instead of skipping over earlier rows, so page
+     * 5,000 costs the same as page 1. Text queries page by relevance, everything
+     * else by most recently updated. A text scroll started while the tenant's
+     * index was being built pages MongoDB's matches by update time to the end,
+     * so its cursors stay valid once the index is ready.
+     */
+    public CursorPage<NoteSummary> scrollNotes(String tenantId, NoteQuery query, String cursor, int size) {
+        return searchResultCache.get(tenantId, "scroll|" + query.normalized() + "|" + cursor + "|" + size, () -> {
+            boolean indexed = cursor != null
+                ? !ContinuationToken.isKind(cursor, ContinuationToken.KIND_UPDATED)
+                : searchIndexService.isReady(tenantId);
+            if (query.hasText() && indexed) {
+                return scrollIndexed(tenantId, query, cursor, size);
+            }
+            return scrollByUpdated(tenantId, query, cursor, size);
+        });
+    }
+
+    /**
+     * Hands every note matching the query to the consumer, in the order a
+     * scroll returns them. Filter-only queries read a single MongoDB cursor;
+     * text queries are ranked once in the index and the ranked hits are
+     * loaded from MongoDB a batch at a time, so only the hit list itself is
+     * held in full. Either way a consumer blocked on a slow client stops the
+     * reads until it catches up. Exports bypass the response cache. While
+     * the tenant's index is being built, text matches come from MongoDB's text
+     * index in update order instead.
+     */
+    public void exportNotes(String tenantId, NoteQuery query, Consumer<NoteSummary> consumer) {
+        if (!query.hasText() || !searchIndexService.isReady(tenantId)) {
+            Query cursor = Query.query(filterCriteria(tenantId, query))
+                .with(Sort.by(Sort.Direction.DESC, "updatedAt", "_id"))
+                .cursorBatchSize(EXPORT_BATCH);
+            if (query.hasText()) {
+                cursor.addCriteria(textCriteria(query));
+            }
+            try (Stream<NoteSummary> notes = mongoTemplate.stream(
+                    summaryFields(cursor, List.of()), NoteSummary.class, NOTES_COLLECTION)) {
+                notes.forEach(consumer);
+            }
+            return;
+        }
+        // Fixed-size keyset batches hold one batch of hits at a time; each pass rescores the matches to rank it
+        SearchHit after = null;
+        while (true) {
+            List<SearchHit> hits = (after == null
+                ? searchIndexService.search(tenantId, query, 0, EXPORT_BATCH)
+                : searchIndexService.searchAfter(tenantId, query, after, EXPORT_BATCH)).getHits();
+            if (hits.isEmpty()) {
+                return;
+            }
+            loadHits(query.hasSubstring() ? verify(hits, query.getSubstring()) : hits, query).forEach(consumer);
+            if (hits.size() < EXPORT_BATCH) {
+                return;
+            }
+            after = hits.get(hits.size() - 1);
+        }
+    }
+
+    private static String pageKey(Pageable pageable) {
+        return pageable.getPageNumber() + "," + pageable.getPageSize() + "," + pageable.getSort();
+    }
+
+    private static boolean usesIndex(NoteQuery query, Pageable pageable) {
+        return query.hasText() || (query.hasFilters() && pageable.getSort().isUnsorted());
+    }
+
+    // Ranks in the local index and only goes to MongoDB for the notes on the page
+    private Page<NoteSummary> searchIndexed(String tenantId, NoteQuery query, Pageable pageable) {
+        if (query.hasSubstring()) {
+            return searchVerified(tenantId, query, pageable);
+        }
+        SearchResult result = searchIndexService.search(
+            tenantId, query, (int) pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(loadHits(result.getHits(), query), pageable, result.getTotalHits());
+    }
+
+    /**
+     * Trigram candidates may still lack the substring, so hits are taken from
+     * the index in growing batches and checked against the stored text until
+     * the page is full. The total is exact once every candidate has been
+     * checked; before that it also counts the unchecked candidates, so it is
+     * an upper bound until the last page.
+     */
+    private Page<NoteSummary> searchVerified(String tenantId, NoteQuery query, Pageable pageable) {
+        int wanted = (int) pageable.getOffset() + pageable.getPageSize();
+        List<SearchHit> verified = new ArrayList<>();
+        int checked = 0;
+        int batch = Math.max(wanted + 1, VERIFY_BATCH);
+        long candidates;
+        while (true) {
+            SearchResult result = searchIndexService.search(tenantId, query, checked, batch);
+            candidates = result.getTotalHits();
+            verified.addAll(verify(result.getHits(), query.getSubstring()));
+            checked += result.getHits().size();
+            if (verified.size() > wanted || checked >= candidates || result.getHits().isEmpty()) {
+                break;
+            }
+            batch *= 2;
+        }
+        List<SearchHit> page = verified.subList(
+            Math.min((int) pageable.getOffset(), verified.size()), Math.min(wanted, verified.size()));
+        return new PageImpl<>(loadHits(page, query), pageable, verified.size() + Math.max(0, candidates - checked));
+    }
+
+    private CursorPage<NoteSummary> scrollIndexed(String tenantId, NoteQuery query, String cursor, int size) {
+        SearchHit after = null;
+        if (cursor != null) {
+            ContinuationToken token = ContinuationToken.decode(cursor, ContinuationToken.KIND_RELEVANCE);
+            float score = Float.intBitsToFloat(Integer.parseUnsignedInt(token.sortKey, 16));
+            after = new SearchHit(token.id, score);
+        }
+        List<SearchHit> hits = new ArrayList<>();
+        while (true) {
+            SearchResult result = after == null
+                ? searchIndexService.search(tenantId, query, 0, size + 1)
+                : searchIndexService.searchAfter(tenantId, query, after, size + 1);
+            List<SearchHit> candidates = result.getHits();
+            hits.addAll(query.hasSubstring() ? verify(candidates, query.getSubstring()) : candidates);
+            if (hits.size() > size || candidates.size() <= size) {
+                break;
+            }
+            after = candidates.get(candidates.size() - 1);
+        }
+        String next = null;
+        if (hits.size() > size) {
+            hits = hits.subList(0, size);
+            SearchHit last = hits.get(size - 1);
+            next = new ContinuationToken(ContinuationToken.KIND_RELEVANCE,
+                Integer.toHexString(Float.floatToIntBits(last.getScore())), last.getNoteId()).encode();
+        }
+        return new CursorPage<>(loadHits(hits, query), next);
+    }
+
+    // Newest first with the id as tie-break, served by the tenant_updated index
+    private CursorPage<NoteSummary> scrollByUpdated(String tenantId, NoteQuery query, String cursor, int size) {
+        Criteria filter = filterCriteria(tenantId, query);
+        Criteria criteria = filter;
+        if (cursor != null) {
+            ContinuationToken token = ContinuationToken.decode(cursor, ContinuationToken.KIND_UPDATED);
+            // A String is only converted to ObjectId for equality, so the range bound must be typed
+            if (!ObjectId.isValid(token.id)) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            ObjectId lastId = new ObjectId(token.id);
+            Criteria after;
+            if (token.sortKey.isEmpty()) {
+                after = Criteria.where("updatedAt").is(null).and("_id").lt(lastId);
+            } else {
+                Instant updatedAt = Instant.ofEpochMilli(Long.parseLong(token.sortKey));
+                // Missing timestamps sort after every real one in descending order
+                after = new Criteria().orOperator(
+                    Criteria.where("updatedAt").lt(updatedAt),
+                    Criteria.where("updatedAt").is(updatedAt).and("_id").lt(lastId),
+                    Criteria.where("updatedAt").is(null));
+            }
+            criteria = new Criteria().andOperator(filter, after);
+        }
+        Query mongoQuery = Query.query(criteria)
+            .with(Sort.by(Sort.Direction.DESC, "updatedAt", "_id"))
+            .limit(size + 1);
+        if (query.hasText()) {
+            mongoQuery.addCriteria(textCriteria(query));
+        }
+        List<NoteSummary> notes = findSummaries(mongoQuery);
+        String next = null;
+        if (notes.size() > size) {
+            notes = notes.subList(0, size);
+            NoteSummary last = notes.get(size - 1);
+            String sortKey = last.getUpdatedAt() != null ? String.valueOf(last.getUpdatedAt().toEpochMilli()) : "";
+            next = new ContinuationToken(ContinuationToken.KIND_UPDATED, sortKey, last.getId()).encode();
+        }
+        return new CursorPage<>(notes, next);
+    }
+
+    private List<NoteSummary> loadHits(List<SearchHit> hits, NoteQuery query) {
+        List<String> ids = hits.stream().map(SearchHit::getNoteId).collect(Collectors.toList());
+        List<SearchHit> withPassages = hits.stream().filter(SearchHit::hasPassage).collect(Collectors.toList());
+        Map<String, NoteSummary> notesById = new HashMap<>();
+        findSummaries(Query.query(Criteria.where("_id").in(ids)), withPassages)
+            .forEach(note -> notesById.put(note.getId(), note));
+
+        Set<String> terms = query.hasText() ? new HashSet<>(TextAnalyzer.terms(query.getText())) : Set.of();
+        List<NoteSummary> notes = new ArrayList<>(ids.size());
+        for (SearchHit hit : hits) {
+            NoteSummary note = notesById.get(hit.getNoteId());
+            if (note != null) {
+                note.setScore(hit.getScore());
+                if (!terms.isEmpty()) {
+                    note.setHighlights(highlight(note.getSnippet(), terms));
+                }
+                notes.add(note);
+            }
+        }
+        return notes;
+    }
+
+    private List<NoteSummary> findSummaries(Query query) {
+        return findSummaries(query, List.of());
+    }
+
+    private List<NoteSummary> findSummaries(Query query, List<SearchHit> passages) {
+        return mongoTemplate.find(summaryFields(query, passages), NoteSummary.class, NOTES_COLLECTION);
+    }
+
+    /**
+     * Only the summary fields leave MongoDB, and the snippet is cut
+     * server-side: the passage the index chose for a hit, or the start of
+     * the content otherwise. Passages are code point ranges, the unit
+     * $substrCP slices by, so they are passed through unconverted.
+     */
+    private static Query summaryFields(Query query, List<SearchHit> passages) {
+        String snippet = "{ $substrCP: [ { $ifNull: [ '$content', '' ] }, 0, " + SNIPPET_LENGTH + " ] }";
+        Object[] arguments = new Object[passages.size() * 3];
+        if (!passages.isEmpty()) {
+            StringBuilder branches = new StringBuilder();
+            for (int i = 0; i < passages.size(); i++) {
+                SearchHit hit = passages.get(i);
+                String id = hit.getNoteId();
+                // Match _id as stored; expressions bypass the id conversion applied to query criteria
+                arguments[i * 3] = ObjectId.isValid(id) ? new ObjectId(id) : id;
+                arguments[i * 3 + 1] = hit.getPassageStart();
+                arguments[i * 3 + 2] = hit.getPassageEnd() - hit.getPassageStart();
+                branches.append(i == 0 ? "" : ", ")
+                    .append("{ case: { $eq: [ '$_id', ?").append(i * 3)
+                    .append(" ] }, then: [ ?").append(i * 3 + 1).append(", ?").append(i * 3 + 2).append(" ] }");
+            }
+            snippet = "{ $let: { vars: { range: { $switch: { branches: [ " + branches
+                + " ], default: [ 0, " + SNIPPET_LENGTH + " ] } } }, in: { $substrCP: [ "
+                + "{ $ifNull: [ '$content', '' ] }, { $arrayElemAt: [ '$$range', 0 ] }, "
+                + "{ $arrayElemAt: [ '$$range', 1 ] } ] } } }";
         }
+        query.fields()
+            .include("title", "tags", "updatedAt")
+            .project(MongoExpression.create(snippet, arguments))
+            .as("snippet")
+            .project(MongoExpression.create("{ $ifNull: [ '$sentiment.primarySentiment', null ] }"))
+            .as("sentiment");
+        return query;
+    }
+
+    // The hits whose title or content does contain the substring, in rank order
+    private List<SearchHit> verify(List<SearchHit> hits, String substring) {
+        if (hits.isEmpty()) {
+            return hits;
+        }
+        List<String> ids = hits.stream().map(SearchHit::getNoteId).collect(Collectors.toList());
+        Query query = Query.query(new Criteria().andOperator(
+            Criteria.where("_id").in(ids),
+            new Criteria().orOperator(
+                substringCriteria(substring),
+                // Offloaded bodies are not in MongoDB; for those the trigram match stands
+                Criteria.where("content").is(null).orOperator(
+                    Criteria.where("contentRef").ne(null),
+                    Criteria.where("contentChunks.0").exists(true)))));
+        query.fields().include("_id");
+        Set<String> matching = mongoTemplate.find(query, NoteSummary.class, NOTES_COLLECTION).stream()
+            .map(NoteSummary::getId)
+            .collect(Collectors.toSet());
+        return hits.stream().filter(hit -> matching.contains(hit.getNoteId())).collect(Collectors.toList());
+    }
+
+    // Case-insensitive match of the fragment in the title or content, however whitespace wraps it
+    private static Criteria substringCriteria(String substring) {
+        String regex = Arrays.stream(substring.trim().split("\\s+"))
+            .map(Pattern::quote)
+            .collect(Collectors.joining("\\s+"));
+        Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+        return new Criteria().orOperator(
+            Criteria.where("title").regex(pattern),
+            Criteria.where("content").regex(pattern));
+    }
+
+    // Re-tokenizes the short snippet, so spans line up with its text whatever the index offsets were
+    private static List<int[]> highlight(String snippet, Set<String> terms) {
+        List<int[]> spans = new ArrayList<>();
+        TextAnalyzer.analyze(snippet, 0, (term, position, start, end) -> {
+            if (terms.contains(term)) {
+                spans.add(new int[] {start, end});
+            }
+        });
+        return spans;
+    }
+
+    // Text goes to the $text index and ranks by its score unless the page asks for another order
+    private static Query mongoQuery(String tenantId, NoteQuery query, Pageable pageable) {
+        if (!query.hasText()) {
+            return Query.query(filterCriteria(tenantId, query)).with(pageable);
+        }
+        TextQuery textQuery = TextQuery.queryText(textCriteria(query));
+        if (pageable.getSort().isUnsorted()) {
+            textQuery.sortByScore();
+        }
+        return textQuery.addCriteria(filterCriteria(tenantId, query)).with(pageable);
+    }
+
+    private static TextCriteria textCriteria(NoteQuery query) {
+        return TextCriteria.forDefaultLanguage().matching(query.getText());
+    }
+
+    private static Criteria filterCriteria(String tenantId, NoteQuery query) {
+        Criteria criteria = Criteria.where("tenantId").is(tenantId);
+        if (query.hasSubstring()) {
+            // Explicitly sorted listings and filter-only scrolls; the regex scans the tenant's notes
+            criteria = criteria.andOperator(substringCriteria(query.getSubstring()));
+        }
+        if (query.getTags() != null && !query.getTags().isEmpty()) {
+            criteria = query.getTagMode() == NoteQuery.TagMode.ALL
+                ? criteria.and("tags").all(query.getTags())
+                : criteria.and("tags").in(query.getTags());
+        }
+        if (query.getSentiment() != null) {
+            criteria = criteria.and("sentiment.primarySentiment").is(query.getSentiment());
+        }
+        if (query.getAuthors() != null && !query.getAuthors().isEmpty()) {
+            criteria = criteria.and("createdBy").in(query.getAuthors());
+        }
+        if (query.getUpdatedFrom() != null || query.getUpdatedTo() != null) {
+            Criteria updatedAt = criteria.and("updatedAt");
+            if (query.getUpdatedFrom() != null) {
+                updatedAt.gte(query.getUpdatedFrom());
+            }
+            if (query.getUpdatedTo() != null) {
+                updatedAt.lt(query.getUpdatedTo());
+            }
+        }
+        return criteria;
     }
 
     public Set<String> generateTags(String content) {
@@ -70,24 +479,42 @@ public class SearchService {
     }
 
     public List<String> suggestTags(String tenantId, String prefix) {
-        return noteRepository.findTopTags(tenantId, prefix, 10);
+        return tagIndexService.suggest(tenantId, prefix, 10);
     }
 
     public Map<String, Long> getTagUsageStats(String tenantId) {
-        return noteRepository.getTagUsageStats(tenantId);
+        return tagUsageService.getTagCounts(tenantId);
     }
 
-    public List<Note> findSimilarNotes(String tenantId, String noteId) {
-        Optional<Note> noteOpt = noteRepository.findById(noteId);
-        if (!noteOpt.isPresent()) {
-            return Collections.emptyList();
-        }
+    // Rebuilds the tenant's search index in the background; the live one serves until the swap
+    public ReindexStatus reindex(String tenantId) {
+        return searchIndexService.reindex(tenantId);
+    }
 
-        Note note = noteOpt.get();
-        Set<String> tags = note.getTags();
-        String sentiment = note.getSentiment() != null ? 
-            note.getSentiment().getPrimarySentiment() : null;
+    public Optional<ReindexStatus> getReindexStatus(String tenantId) {
+        return searchIndexService.reindexStatus(tenantId);
+    }
+
+    /**
+     * Notes whose content overlaps this one's, best first, with the estimated
+     * Jaccard similarity of their word shingles as the score. Answered from
+     * the tenant's LSH buckets, so it never scans the tenant.
+     */
+    public List<NoteSummary> findSimilarNotes(String tenantId, String noteId, int limit) {
+        return loadHits(similarityIndexService.similar(tenantId, noteId, limit), new NoteQuery());
+    }
 
-        return noteRepository.findSimilarNotes(tenantId, noteId, tags, sentiment);
+    /**
+     * Notes about the text rather than containing it: nearest neighbours of
+     * its embedding, scored by cosine similarity. Embeddings are computed in
+     * process, so neither the query nor any content leaves the server.
+     * Empty while the tenant's index is still being opened or built.
+     */
+    public Optional<List<NoteSummary>> semanticSearch(String tenantId, String text, int limit) {
+        if (!semanticIndexService.isReady(tenantId)) {
+            return Optional.empty();
+        }
+        return Optional.of(searchResultCache.get(tenantId, "semantic|" + text.trim() + "|" + limit,
+            () -> loadHits(semanticIndexService.search(tenantId, text, limit), new NoteQuery(text))));
     }
 } 
\ No newline at end of file
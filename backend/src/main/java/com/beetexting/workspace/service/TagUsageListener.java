@@ -0,0 +1,47 @@
+package com.beetexting.workspace.service;
+
+import com.beetexting.workspace.model.Note;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeDeleteEvent;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TagUsageListener extends AbstractMongoEventListener<Note> {
+
+    private final TagUsageService tagUsageService;
+
+    @Autowired
+    public TagUsageListener(TagUsageService tagUsageService) {
+        this.tagUsageService = tagUsageService;
+    }
+
+    @Override
+    public void onAfterConvert(AfterConvertEvent<Note> event) {
+        tagUsageService.onNoteLoaded(event.getSource());
+    }
+
+    @Override
+    public void onAfterSave(AfterSaveEvent<Note> event) {
+        tagUsageService.onNoteSaved(event.getSource());
+    }
+
+    @Override
+    public void onBeforeDelete(BeforeDeleteEvent<Note> event) {
+        Object id = event.getSource().get("_id");
+        if (id != null) {
+            tagUsageService.onBeforeDelete(id.toString());
+        }
+    }
+
+    @Override
+    public void onAfterDelete(AfterDeleteEvent<Note> event) {
+        Object id = event.getSource().get("_id");
+        if (id != null) {
+            tagUsageService.onNoteDeleted(id.toString());
+        }
+    }
+}
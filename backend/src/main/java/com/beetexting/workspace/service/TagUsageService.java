@@ -0,0 +1,193 @@
+package com.beetexting.workspace.service;
+
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.model.TagUsage;
+import com.beetexting.workspace.repository.NoteRepository;
+import com.beetexting.workspace.repository.TagUsageRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-tenant tag counts materialized in {@code tag_usage}. Saves and deletes
+ * apply +1/-1 deltas for the tags that changed, so reading a tenant's stats
+ * costs one document per distinct tag instead of an unwind over every note.
+ *
+ * Deltas are derived from the tags a note instance was loaded with, so a
+ * replacement saved without loading the stored note first can drift. A
+ * background job recounts every tenant from the notes and rewrites only the
+ * counts that differ.
+ */
+@Service
+public class TagUsageService {
+    private static final Logger logger = LoggerFactory.getLogger(TagUsageService.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final TagUsageRepository tagUsageRepository;
+    private final NoteRepository noteRepository;
+    private final Map<String, Note> deleting = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reconciler;
+
+    @Autowired
+    public TagUsageService(
+            MongoTemplate mongoTemplate,
+            TagUsageRepository tagUsageRepository,
+            NoteRepository noteRepository,
+            AppProperties appProperties) {
+        this.mongoTemplate = mongoTemplate;
+        this.tagUsageRepository = tagUsageRepository;
+        this.noteRepository = noteRepository;
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tag-usage-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = appProperties.getTags().getReconcileInterval().toMillis();
+        reconciler.scheduleWithFixedDelay(this::reconcileAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconciler.shutdownNow();
+    }
+
+    /**
+     * Tag counts for a tenant, most used first.
+     */
+    public Map<String, Long> getTagCounts(String tenantId) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        tagUsageRepository.findByTenantId(tenantId).stream()
+            .sorted((a, b) -> Long.compare(b.getCount(), a.getCount()))
+            .forEach(usage -> counts.put(usage.getTag(), usage.getCount()));
+        return counts;
+    }
+
+    public void onNoteLoaded(Note note) {
+        note.setPersistedTags(copyOf(note.getTags()));
+    }
+
+    public void onNoteSaved(Note note) {
+        if (note.getTenantId() == null) {
+            return;
+        }
+        Set<String> current = copyOf(note.getTags());
+        Set<String> previous = note.getPersistedTags() != null ? note.getPersistedTags() : Collections.emptySet();
+        if (!current.equals(previous)) {
+            Map<String, Integer> deltas = new HashMap<>();
+            previous.stream().filter(tag -> !current.contains(tag)).forEach(tag -> deltas.put(tag, -1));
+            current.stream().filter(tag -> !previous.contains(tag)).forEach(tag -> deltas.put(tag, 1));
+            applyDeltas(note.getTenantId(), deltas);
+        }
+        note.setPersistedTags(current);
+    }
+
+    public void onBeforeDelete(String noteId) {
+        // The after-delete event only carries the id, so capture the tags while they still exist
+        noteRepository.findTagsById(noteId).ifPresent(note -> deleting.put(noteId, note));
+    }
+
+    public void onNoteDeleted(String noteId) {
+        Note note = deleting.remove(noteId);
+        if (note == null || note.getTenantId() == null || note.getTags() == null || note.getTags().isEmpty()) {
+            return;
+        }
+        Map<String, Integer> deltas = new HashMap<>();
+        note.getTags().forEach(tag -> deltas.put(tag, -1));
+        applyDeltas(note.getTenantId(), deltas);
+    }
+
+    void applyDeltas(String tenantId, Map<String, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            Instant now = Instant.now();
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TagUsage.class);
+            deltas.forEach((tag, delta) -> ops.upsert(
+                tagQuery(tenantId, tag),
+                new Update().inc("count", delta).set("updatedAt", now)));
+            ops.execute();
+            if (deltas.containsValue(-1)) {
+                tagUsageRepository.deleteEmptyByTenantId(tenantId);
+            }
+        } catch (RuntimeException e) {
+            // Counts are repaired by the next reconcile; a failed delta must not fail the save
+            logger.error("Failed to update tag counts for tenant {}: {}", tenantId, e.getMessage());
+        }
+    }
+
+    void reconcileAll() {
+        Set<String> tenants = new HashSet<>(mongoTemplate.findDistinct(new Query(), "tenantId", Note.class, String.class));
+        tenants.addAll(mongoTemplate.findDistinct(new Query(), "tenantId", TagUsage.class, String.class));
+        for (String tenantId : tenants) {
+            try {
+                reconcile(tenantId);
+            } catch (RuntimeException e) {
+                logger.error("Failed to reconcile tag counts for tenant {}", tenantId, e);
+            }
+        }
+    }
+
+    /**
+     * Recounts a tenant's tags from its notes and rewrites the counts that drifted.
+     * A delta landing between the recount and the rewrite can be overwritten; the
+     * next pass corrects it.
+     */
+    public int reconcile(String tenantId) {
+        Map<String, Long> actual = new HashMap<>();
+        noteRepository.aggregateTagCounts(tenantId).forEach(count -> actual.put(count.getTag(), count.getCount()));
+        Map<String, Long> stored = new HashMap<>();
+        mongoTemplate.find(Query.query(Criteria.where("tenantId").is(tenantId)), TagUsage.class)
+            .forEach(usage -> stored.put(usage.getTag(), usage.getCount()));
+
+        Instant now = Instant.now();
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, TagUsage.class);
+        int repaired = 0;
+        for (Map.Entry<String, Long> entry : actual.entrySet()) {
+            if (!entry.getValue().equals(stored.get(entry.getKey()))) {
+                ops.upsert(tagQuery(tenantId, entry.getKey()),
+                    new Update().set("count", entry.getValue()).set("updatedAt", now));
+                repaired++;
+            }
+        }
+        for (String tag : stored.keySet()) {
+            if (!actual.containsKey(tag)) {
+                ops.remove(tagQuery(tenantId, tag));
+                repaired++;
+            }
+        }
+        if (repaired > 0) {
+            ops.execute();
+            logger.info("Repaired {} tag counts for tenant {}", repaired, tenantId);
+        }
+        return repaired;
+    }
+
+    private static Query tagQuery(String tenantId, String tag) {
+        return Query.query(Criteria.where("tenantId").is(tenantId).and("tag").is(tag));
+    }
+
+    private static Set<String> copyOf(Set<String> tags) {
+        return tags != null ? new HashSet<>(tags) : new HashSet<>();
+    }
+}
@@ -0,0 +1,148 @@
+package com.beetexting.workspace.service;
+
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.model.DocumentChange;
+import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.model.NoteRevision;
+import com.beetexting.workspace.repository.NoteRevisionRepository;
+import com.beetexting.workspace.storage.NoteContentStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class VersionHistoryService {
+    private static final Logger logger = LoggerFactory.getLogger(VersionHistoryService.class);
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private final NoteRevisionRepository revisionRepository;
+    private final MongoTemplate mongoTemplate;
+    private final NoteContentStore noteContentStore;
+    private final int keyframeInterval;
+
+    @Autowired
+    public VersionHistoryService(
+            NoteRevisionRepository revisionRepository,
+            MongoTemplate mongoTemplate,
+            NoteContentStore noteContentStore,
+            AppProperties appProperties) {
+        this.revisionRepository = revisionRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.noteContentStore = noteContentStore;
+        this.keyframeInterval = Math.max(1, appProperties.getHistory().getKeyframeInterval());
+    }
+
+    public boolean isKeyframe(long revision) {
+        return revision == 1 || (revision - 1) % keyframeInterval == 0;
+    }
+
+    // Called under the note lock after the change has been applied; note.getRevision() is the new revision.
+    // Written before the note is saved, so it replaces any revision of the same number left by a failed save.
+    public NoteRevision record(Note note, DocumentChange change, String content, List<Note.ContentChunk> chunks,
+            int contentLength) {
+        NoteRevision revision = new NoteRevision();
+        revision.setNoteId(note.getId());
+        revision.setTenantId(note.getTenantId());
+        revision.setRevision(note.getRevision());
+        revision.setNoteVersion(note.getVersion());
+        revision.setUserId(change.getUserId());
+        revision.setTimestamp(Instant.now());
+        revision.setChangeType(change.getOperation());
+        revision.setContentLength(contentLength);
+
+        if (isKeyframe(note.getRevision())) {
+            revision.setKeyframe(true);
+            if (chunks != null) {
+                revision.setContentChunks(new ArrayList<>(chunks));
+            } else if (noteContentStore.shouldOffload(content)) {
+                revision.setContentChunks(noteContentStore.storeChunks(content));
+            } else {
+                revision.setContent(content);
+            }
+        } else {
+            NoteRevision.Operation operation = new NoteRevision.Operation();
+            operation.setOperation(change.getOperation());
+            operation.setStartPosition(change.getStartPosition());
+            operation.setEndPosition(change.getEndPosition());
+            operation.setText(change.getText());
+            revision.setOperations(List.of(operation));
+        }
+        Query existing = new Query(Criteria.where("noteId").is(note.getId()).and("revision").is(note.getRevision()));
+        return mongoTemplate.findAndReplace(existing, revision, FindAndReplaceOptions.options().upsert().returnNew());
+    }
+
+    // Loads the nearest keyframe at or below the target and replays at most keyframeInterval - 1 deltas
+    public String reconstruct(String noteId, long targetRevision) {
+        NoteRevision keyframe = revisionRepository
+            .findFirstByNoteIdAndKeyframeTrueAndRevisionLessThanEqualOrderByRevisionDesc(noteId, targetRevision)
+            .orElseThrow(() -> new IllegalArgumentException(
+                "Revision " + targetRevision + " not found for document " + noteId));
+
+        StringBuilder content = new StringBuilder(keyframeBody(keyframe));
+        if (keyframe.getRevision() == targetRevision) {
+            return content.toString();
+        }
+
+        List<NoteRevision> deltas = revisionRepository.findRevisionRange(noteId, keyframe.getRevision(), targetRevision);
+        long expected = keyframe.getRevision() + 1;
+        for (NoteRevision delta : deltas) {
+            if (delta.getRevision() != expected++) {
+                throw new IllegalStateException("Gap in revision chain of document " + noteId
+                    + " before revision " + delta.getRevision());
+            }
+            if (delta.isKeyframe()) {
+                content = new StringBuilder(keyframeBody(delta));
+                continue;
+            }
+            for (NoteRevision.Operation operation : delta.getOperations()) {
+                applyOperation(content, operation);
+            }
+        }
+        if (expected != targetRevision + 1) {
+            throw new IllegalArgumentException("Revision " + targetRevision + " not found for document " + noteId);
+        }
+        logger.debug("Reconstructed revision {} of document {} from keyframe {} with {} deltas",
+            targetRevision, noteId, keyframe.getRevision(), deltas.size());
+        return content.toString();
+    }
+
+    // Newest first, without bodies or deltas; pass the last revision seen as beforeRevision for the next page
+    public List<NoteRevision> listRevisions(String noteId, Long beforeRevision, int size) {
+        long before = beforeRevision != null ? beforeRevision : Long.MAX_VALUE;
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        return revisionRepository.findSummariesBefore(noteId, before, PageRequest.of(0, pageSize));
+    }
+
+    private String keyframeBody(NoteRevision keyframe) {
+        if (keyframe.getContentChunks() != null && !keyframe.getContentChunks().isEmpty()) {
+            return noteContentStore.loadChunks(keyframe.getContentChunks());
+        }
+        return keyframe.getContent() != null ? keyframe.getContent() : "";
+    }
+
+    private void applyOperation(StringBuilder content, NoteRevision.Operation operation) {
+        switch (operation.getOperation()) {
+            case "INSERT":
+                content.insert(operation.getStartPosition(), operation.getText());
+                break;
+            case "DELETE":
+                content.delete(operation.getStartPosition(), operation.getEndPosition());
+                break;
+            case "REPLACE":
+                content.replace(operation.getStartPosition(), operation.getEndPosition(), operation.getText());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: " + operation.getOperation());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.beetexting.workspace.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content-addressed storage for large note bodies. Keys are the SHA-256 of the
+ * stored bytes, so writing the same content twice stores it once.
+ */
+public interface BlobStore {
+
+    // Stores the bytes if not already present and returns their content key
+    String put(byte[] data) throws IOException;
+
+    // Callers are responsible for closing the returned stream
+    InputStream open(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    default String put(String content) throws IOException {
+        return put(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String keyFor(byte[] data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static void validateKey(String key) {
+        if (key == null || key.length() != 64 || !key.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+    }
+}
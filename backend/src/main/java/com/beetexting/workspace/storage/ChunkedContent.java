@@ -0,0 +1,235 @@
+package com.beetexting.workspace.storage;
+
+import com.beetexting.workspace.model.Note;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Note body held as a list of fixed-size chunks. Chunks are fetched from the
+ * blob store only when a read or edit touches them and clean chunks are dropped
+ * again once more than {@code maxLoadedChunks} are resident. Not thread-safe;
+ * callers synchronize on the owning note.
+ */
+public class ChunkedContent {
+
+    private final NoteContentStore contentStore;
+    private final int chunkSize;
+    private final int maxLoadedChunks;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int length;
+    private long accessClock;
+
+    ChunkedContent(NoteContentStore contentStore, List<Note.ContentChunk> index, int chunkSize, int maxLoadedChunks) {
+        this.contentStore = contentStore;
+        this.chunkSize = chunkSize;
+        this.maxLoadedChunks = maxLoadedChunks;
+        for (Note.ContentChunk entry : index) {
+            chunks.add(new Chunk(entry.getRef(), entry.getLength(), null));
+            length += entry.getLength();
+        }
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public String read(int start, int end) {
+        checkRange(start, end);
+        StringBuilder sb = new StringBuilder(end - start);
+        int offset = 0;
+        for (Chunk chunk : chunks) {
+            int chunkEnd = offset + chunk.length;
+            if (chunkEnd > start && offset < end) {
+                String text = load(chunk);
+                sb.append(text, Math.max(start - offset, 0), Math.min(end, chunkEnd) - offset);
+            }
+            if (chunkEnd >= end) {
+                break;
+            }
+            offset = chunkEnd;
+        }
+        trimLoaded();
+        return sb.toString();
+    }
+
+    public void insert(int position, String text) {
+        checkRange(position, position);
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        if (chunks.isEmpty()) {
+            chunks.add(new Chunk(null, 0, ""));
+        }
+
+        // Insert at a boundary goes to the end of the preceding chunk
+        int offset = 0;
+        int index = 0;
+        while (index < chunks.size() - 1 && offset + chunks.get(index).length < position) {
+            offset += chunks.get(index).length;
+            index++;
+        }
+
+        Chunk chunk = chunks.get(index);
+        String current = load(chunk);
+        int at = position - offset;
+        chunk.setText(current.substring(0, at) + text + current.substring(at));
+        length += text.length();
+
+        if (chunk.length > 2 * chunkSize) {
+            chunks.remove(index);
+            List<String> pieces = split(chunk.text, chunkSize);
+            for (int i = 0; i < pieces.size(); i++) {
+                chunks.add(index + i, new Chunk(null, pieces.get(i).length(), pieces.get(i)));
+            }
+        }
+        trimLoaded();
+    }
+
+    public void delete(int start, int end) {
+        checkRange(start, end);
+        int offset = 0;
+        for (int i = 0; i < chunks.size() && offset < end; ) {
+            Chunk chunk = chunks.get(i);
+            int chunkEnd = offset + chunk.length;
+            if (chunkEnd <= start) {
+                offset = chunkEnd;
+                i++;
+                continue;
+            }
+
+            int from = Math.max(start, offset) - offset;
+            int to = Math.min(end, chunkEnd) - offset;
+            if (from == 0 && to == chunk.length) {
+                // Fully covered chunks are dropped without fetching them
+                chunks.remove(i);
+            } else {
+                String text = load(chunk);
+                chunk.setText(text.substring(0, from) + text.substring(to));
+                i++;
+            }
+            length -= to - from;
+            offset = chunkEnd;
+        }
+        coalesce();
+        trimLoaded();
+    }
+
+    public void replace(int start, int end, String text) {
+        delete(start, end);
+        insert(start, text);
+    }
+
+    // Writes dirty chunks to the blob store and returns the resulting chunk index
+    public List<Note.ContentChunk> flush() {
+        List<Note.ContentChunk> index = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            if (chunk.ref == null) {
+                chunk.ref = contentStore.store(chunk.text);
+            }
+            Note.ContentChunk entry = new Note.ContentChunk();
+            entry.setRef(chunk.ref);
+            entry.setLength(chunk.length);
+            index.add(entry);
+        }
+        trimLoaded();
+        return index;
+    }
+
+    public int loadedChars() {
+        int loaded = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.text != null) {
+                loaded += chunk.length;
+            }
+        }
+        return loaded;
+    }
+
+    private String load(Chunk chunk) {
+        if (chunk.text == null) {
+            chunk.text = contentStore.loadBlob(chunk.ref);
+        }
+        chunk.lastAccess = ++accessClock;
+        return chunk.text;
+    }
+
+    // Merges an edited chunk with its neighbour while both fit in one chunk, so
+    // repeated deletes do not leave a trail of tiny blobs behind
+    private void coalesce() {
+        for (int i = 0; i + 1 < chunks.size(); ) {
+            Chunk chunk = chunks.get(i);
+            Chunk next = chunks.get(i + 1);
+            if ((chunk.ref == null || next.ref == null) && chunk.length + next.length < chunkSize) {
+                chunk.setText(load(chunk) + load(next));
+                chunks.remove(i + 1);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    // Evicts least recently used chunks that are already persisted
+    private void trimLoaded() {
+        int loaded = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk.text != null) {
+                loaded++;
+            }
+        }
+        while (loaded > maxLoadedChunks) {
+            Chunk victim = null;
+            for (Chunk chunk : chunks) {
+                if (chunk.text != null && chunk.ref != null
+                        && (victim == null || chunk.lastAccess < victim.lastAccess)) {
+                    victim = chunk;
+                }
+            }
+            if (victim == null) {
+                return;
+            }
+            victim.text = null;
+            loaded--;
+        }
+    }
+
+    private void checkRange(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") outside content of length " + length);
+        }
+    }
+
+    static List<String> split(String content, int chunkSize) {
+        List<String> pieces = new ArrayList<>();
+        int start = 0;
+        while (start < content.length()) {
+            int end = Math.min(start + chunkSize, content.length());
+            // Never separate a surrogate pair across chunks
+            if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+                end--;
+            }
+            pieces.add(content.substring(start, end));
+            start = end;
+        }
+        return pieces;
+    }
+
+    private static class Chunk {
+        private String ref;
+        private int length;
+        private String text;
+        private long lastAccess;
+
+        Chunk(String ref, int length, String text) {
+            this.ref = ref;
+            this.length = length;
+            this.text = text;
+        }
+
+        void setText(String text) {
+            this.text = text;
+            this.length = text.length();
+            this.ref = null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.beetexting.workspace.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public class LocalFileBlobStore implements BlobStore {
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileBlobStore.class);
+
+    private final Path root;
+
+    public LocalFileBlobStore(Path root) throws IOException {
+        this.root = root;
+        Files.createDirectories(root);
+    }
+
+    @Override
+    public String put(byte[] data) throws IOException {
+        String key = BlobStore.keyFor(data);
+        Path target = pathFor(key);
+        if (Files.exists(target)) {
+            return key;
+        }
+
+        // Write to a temp file and move it into place so readers never see a partial blob
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), key, ".tmp");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        logger.debug("Stored blob {} ({} bytes)", key, data.length);
+        return key;
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            return Files.newInputStream(pathFor(key));
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("Blob not found: " + key, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(pathFor(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(pathFor(key));
+    }
+
+    private Path pathFor(String key) {
+        BlobStore.validateKey(key);
+        // Fan out by hash prefix to keep directories small
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+}
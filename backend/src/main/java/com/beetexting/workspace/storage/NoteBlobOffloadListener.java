@@ -0,0 +1,58 @@
+package com.beetexting.workspace.storage;
+
+import com.beetexting.workspace.model.Note;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeSaveEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+public class NoteBlobOffloadListener extends AbstractMongoEventListener<Note> {
+
+    private final NoteContentStore noteContentStore;
+
+    @Autowired
+    public NoteBlobOffloadListener(NoteContentStore noteContentStore) {
+        this.noteContentStore = noteContentStore;
+    }
+
+    @Override
+    public void onBeforeConvert(BeforeConvertEvent<Note> event) {
+        Note note = event.getSource();
+        noteContentStore.offloadVersions(note);
+
+        // A null body means the note is chunked or was loaded without hydrating, so keep its index
+        String content = note.getContent();
+        if (content != null) {
+            note.setContentLength(content.length());
+            note.setContentRef(null);
+            if (!noteContentStore.shouldOffload(content)) {
+                note.setContentChunks(new ArrayList<>());
+                note.setStoredBody(null);
+                return;
+            }
+            // Only valid while the chunk index is the one stored with it; the chunked edit path replaces the list
+            Note.StoredBody stored = note.getStoredBody();
+            List<Note.ContentChunk> chunks = stored != null && stored.getChunks() == note.getContentChunks()
+                ? noteContentStore.storeChunks(content, stored.getContent(), stored.getChunks())
+                : noteContentStore.storeChunks(content);
+            note.setContentChunks(chunks);
+            note.setStoredBody(new Note.StoredBody(content, chunks));
+        }
+    }
+
+    @Override
+    public void onBeforeSave(BeforeSaveEvent<Note> event) {
+        // The in-memory note keeps its body for editing; only the stored document drops it
+        Note note = event.getSource();
+        boolean offloaded = note.getContentRef() != null
+            || (note.getContentChunks() != null && !note.getContentChunks().isEmpty());
+        if (offloaded && event.getDocument() != null) {
+            event.getDocument().remove("content");
+        }
+    }
+}
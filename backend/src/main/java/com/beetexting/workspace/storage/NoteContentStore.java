@@ -0,0 +1,227 @@
+package com.beetexting.workspace.storage;
+
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.model.Note;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+@Component
+public class NoteContentStore {
+    private static final Logger logger = LoggerFactory.getLogger(NoteContentStore.class);
+
+    private final BlobStore blobStore;
+    private final int offloadThreshold;
+    private final int chunkSize;
+    private final int maxLoadedChunks;
+
+    @Autowired
+    public NoteContentStore(BlobStore blobStore, AppProperties appProperties) {
+        this.blobStore = blobStore;
+        this.offloadThreshold = appProperties.getStorage().getOffloadThreshold();
+        this.chunkSize = appProperties.getStorage().getChunkSize();
+        this.maxLoadedChunks = appProperties.getStorage().getMaxLoadedChunks();
+    }
+
+    public boolean shouldOffload(String content) {
+        return content != null && content.length() > offloadThreshold;
+    }
+
+    public String store(String content) {
+        try {
+            return blobStore.put(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store note content", e);
+        }
+    }
+
+    // Splits a large body into chunk blobs; unchanged chunks dedupe across saves
+    public List<Note.ContentChunk> storeChunks(String content) {
+        return ChunkedContent.split(content, chunkSize).stream()
+            .map(piece -> {
+                Note.ContentChunk chunk = new Note.ContentChunk();
+                chunk.setRef(store(piece));
+                chunk.setLength(piece.length());
+                return chunk;
+            })
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Stores a new version of a body previously stored as the given chunks.
+     * Leading and trailing chunks whose text is unchanged keep their refs, so
+     * an edit only hashes and uploads the stretch between them, kept as one
+     * chunk up to twice the chunk size like an edited {@link ChunkedContent}.
+     */
+    public List<Note.ContentChunk> storeChunks(String content, String previous, List<Note.ContentChunk> previousChunks) {
+        int previousLength = previousChunks.stream().mapToInt(Note.ContentChunk::getLength).sum();
+        if (previousLength != previous.length()) {
+            return storeChunks(content);
+        }
+        int head = 0;
+        int headEnd = 0;
+        while (head < previousChunks.size()) {
+            int length = previousChunks.get(head).getLength();
+            if (headEnd + length > content.length() || !content.regionMatches(headEnd, previous, headEnd, length)) {
+                break;
+            }
+            headEnd += length;
+            head++;
+        }
+        int shift = content.length() - previous.length();
+        int tail = previousChunks.size();
+        int tailStart = previous.length();
+        while (tail > head) {
+            int length = previousChunks.get(tail - 1).getLength();
+            int start = tailStart - length + shift;
+            // Never separate a surrogate pair across chunks
+            if (start < headEnd || (start > 0 && Character.isHighSurrogate(content.charAt(start - 1)))
+                    || !content.regionMatches(start, previous, tailStart - length, length)) {
+                break;
+            }
+            tailStart -= length;
+            tail--;
+        }
+
+        List<Note.ContentChunk> chunks = new ArrayList<>(previousChunks.subList(0, head));
+        String changed = content.substring(headEnd, tailStart + shift);
+        if (changed.length() > 2 * chunkSize) {
+            chunks.addAll(storeChunks(changed));
+        } else if (!changed.isEmpty()) {
+            Note.ContentChunk chunk = new Note.ContentChunk();
+            chunk.setRef(store(changed));
+            chunk.setLength(changed.length());
+            chunks.add(chunk);
+        }
+        chunks.addAll(previousChunks.subList(tail, previousChunks.size()));
+        return chunks;
+    }
+
+    public boolean isChunked(Note note) {
+        return note.getContent() == null && note.getContentChunks() != null && !note.getContentChunks().isEmpty();
+    }
+
+    public ChunkedContent openChunked(Note note) {
+        return new ChunkedContent(this, note.getContentChunks(), chunkSize, maxLoadedChunks);
+    }
+
+    // Moves large version bodies out of the entity; identical bodies share one blob
+    public void offloadVersions(Note note) {
+        for (Note.NoteVersion version : note.getVersions()) {
+            if (version.getContentRef() == null && version.getContentChunks() == null
+                    && shouldOffload(version.getContent())) {
+                version.setContentRef(store(version.getContent()));
+                version.setContent(null);
+            }
+        }
+    }
+
+    public Reader openContent(Note note) {
+        if (isChunked(note)) {
+            return openChunks(note.getContentChunks());
+        }
+        if (note.getContent() != null || note.getContentRef() == null) {
+            return new StringReader(note.getContent() != null ? note.getContent() : "");
+        }
+        return openBlob(note.getContentRef());
+    }
+
+    public Reader openVersionContent(Note.NoteVersion version) {
+        if (version.getContentChunks() != null && !version.getContentChunks().isEmpty()) {
+            return openChunks(version.getContentChunks());
+        }
+        if (version.getContent() != null || version.getContentRef() == null) {
+            return new StringReader(version.getContent() != null ? version.getContent() : "");
+        }
+        return openBlob(version.getContentRef());
+    }
+
+    public String loadContent(Note note) {
+        return readFully(openContent(note));
+    }
+
+    public String loadVersionContent(Note.NoteVersion version) {
+        return readFully(openVersionContent(version));
+    }
+
+    // Pulls the head content back inline before a note is edited in memory
+    public Note hydrate(Note note) {
+        if (note.getContent() == null && note.getContentRef() != null) {
+            logger.debug("Loading offloaded content {} for note {}", note.getContentRef(), note.getId());
+            note.setContent(loadContent(note));
+        }
+        return note;
+    }
+
+    public String loadChunks(List<Note.ContentChunk> chunks) {
+        return readFully(openChunks(chunks));
+    }
+
+    public String loadBlob(String key) {
+        return readFully(openBlob(key));
+    }
+
+    // Chunks are opened one at a time as the reader advances
+    private Reader openChunks(List<Note.ContentChunk> chunks) {
+        Iterator<Note.ContentChunk> it = chunks.iterator();
+        Enumeration<InputStream> streams = new Enumeration<>() {
+            @Override
+            public boolean hasMoreElements() {
+                return it.hasNext();
+            }
+
+            @Override
+            public InputStream nextElement() {
+                if (!it.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String key = it.next().getRef();
+                try {
+                    return blobStore.open(key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to open blob " + key, e);
+                }
+            }
+        };
+        return new InputStreamReader(new SequenceInputStream(streams), StandardCharsets.UTF_8);
+    }
+
+    private Reader openBlob(String key) {
+        try {
+            InputStream in = blobStore.open(key);
+            return new InputStreamReader(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open blob " + key, e);
+        }
+    }
+
+    private String readFully(Reader reader) {
+        try (Reader r = reader) {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = r.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+            return sb.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read note content", e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.beetexting.workspace.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.InputStream;
+
+public class S3BlobStore implements BlobStore {
+    private static final Logger logger = LoggerFactory.getLogger(S3BlobStore.class);
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String prefix;
+
+    public S3BlobStore(S3Client s3Client, String bucket, String prefix) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.prefix = prefix != null ? prefix : "";
+    }
+
+    @Override
+    public String put(byte[] data) {
+        String key = BlobStore.keyFor(data);
+        if (exists(key)) {
+            return key;
+        }
+
+        s3Client.putObject(PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(objectKey(key))
+                .contentType("text/plain; charset=utf-8")
+                .build(),
+            RequestBody.fromBytes(data));
+        logger.debug("Stored blob {} ({} bytes) in bucket {}", key, data.length, bucket);
+        return key;
+    }
+
+    @Override
+    public InputStream open(String key) {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(objectKey(key))
+                .build());
+        } catch (NoSuchKeyException e) {
+            throw new IllegalArgumentException("Blob not found: " + key, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try {
+            s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(bucket)
+                .key(objectKey(key))
+                .build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        s3Client.deleteObject(DeleteObjectRequest.builder()
+            .bucket(bucket)
+            .key(objectKey(key))
+            .build());
+    }
+
+    private String objectKey(String key) {
+        BlobStore.validateKey(key);
+        return prefix + key.substring(0, 2) + "/" + key;
+    }
+}
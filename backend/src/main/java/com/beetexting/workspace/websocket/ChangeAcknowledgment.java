@@ -0,0 +1,17 @@
+package com.beetexting.workspace.websocket;
+
+class ChangeAcknowledgment {
+    private String changeId;
+    private boolean success;
+
+    public ChangeAcknowledgment(String changeId, boolean success) {
+        this.changeId = changeId;
+        this.success = success;
+    }
+
+    // Getters and setters
+    public String getChangeId() { return changeId; }
+    public void setChangeId(String changeId) { this.changeId = changeId; }
+    public boolean isSuccess() { return success; }
+    public void setSuccess(boolean success) { this.success = success; }
+}
@@ -0,0 +1,17 @@
+package com.beetexting.workspace.websocket;
+
+class ChangeError {
+    private String changeId;
+    private String error;
+
+    public ChangeError(String changeId, String error) {
+        this.changeId = changeId;
+        this.error = error;
+    }
+
+    // Getters and setters
+    public String getChangeId() { return changeId; }
+    public void setChangeId(String changeId) { this.changeId = changeId; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
@@ -1,5 +1,7 @@
 package com.beetexting.workspace.websocket;
 
+import com.beetexting.workspace.metrics.BroadcastEvent;
+import com.beetexting.workspace.metrics.CollaborationMetrics;
 import com.beetexting.workspace.model.Note;
 import com.beetexting.workspace.model.DocumentChange;
 import com.beetexting.workspace.service.DocumentService;
@@ -21,15 +23,21 @@ public class CollaborationHandler {
     private final SimpMessagingTemplate messagingTemplate;
     private final DocumentService documentService;
     private final ObjectMapper objectMapper;
+    private final SubscriptionTracker subscriptionTracker;
+    private final CollaborationMetrics collaborationMetrics;
 
     @Autowired
     public CollaborationHandler(
             SimpMessagingTemplate messagingTemplate,
             DocumentService documentService,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper,
+            SubscriptionTracker subscriptionTracker,
+            CollaborationMetrics collaborationMetrics) {
         this.messagingTemplate = messagingTemplate;
         this.documentService = documentService;
         this.objectMapper = objectMapper;
+        this.subscriptionTracker = subscriptionTracker;
+        this.collaborationMetrics = collaborationMetrics;
     }
 
     @MessageMapping("/document/{documentId}/edit")
@@ -45,10 +53,7 @@ public class CollaborationHandler {
             Note updatedNote = documentService.applyChange(documentId, change);
 
             // Broadcast the change to all connected clients except the sender
-            messagingTemplate.convertAndSend(
-                "/topic/document/" + documentId + "/changes",
-                change
-            );
+            broadcast(documentId, "changes", change, change.getId());
 
             // Send acknowledgment to the sender
             messagingTemplate.convertAndSendToUser(
@@ -77,10 +82,7 @@ public class CollaborationHandler {
         position.setUserId(userId);
 
         // Broadcast cursor position to all connected clients
-        messagingTemplate.convertAndSend(
-            "/topic/document/" + documentId + "/cursors",
-            position
-        );
+        broadcast(documentId, "cursors", position, null);
     }
 
     @MessageMapping("/document/{documentId}/presence")
@@ -95,66 +97,28 @@ public class CollaborationHandler {
         documentService.updatePresence(documentId, userId, status.isActive());
 
         // Broadcast presence update to all connected clients
-        messagingTemplate.convertAndSend(
-            "/topic/document/" + documentId + "/presence",
-            status
-        );
-    }
-}
-
-class ChangeAcknowledgment {
-    private String changeId;
-    private boolean success;
-
-    public ChangeAcknowledgment(String changeId, boolean success) {
-        this.changeId = changeId;
-        this.success = success;
+        broadcast(documentId, "presence", status, null);
     }
 
-    // Getters and setters
-    public String getChangeId() { return changeId; }
-    public void setChangeId(String changeId) { this.changeId = changeId; }
-    public boolean isSuccess() { return success; }
-    public void setSuccess(boolean success) { this.success = success; }
-}
-
-class ChangeError {
-    private String changeId;
-    private String error;
-
-    public ChangeError(String changeId, String error) {
-        this.changeId = changeId;
-        this.error = error;
+    private void broadcast(String documentId, String channel, Object payload, String changeId) {
+        String destination = "/topic/document/" + documentId + "/" + channel;
+        BroadcastEvent event = new BroadcastEvent();
+        event.begin();
+        long start = System.nanoTime();
+        messagingTemplate.convertAndSend(destination, payload);
+        long elapsed = System.nanoTime() - start;
+        int fanOut = subscriptionTracker.subscriberCount(destination);
+        collaborationMetrics.recordBroadcast(channel, fanOut, elapsed);
+        if (changeId != null) {
+            documentService.recordSubscribers(documentId, fanOut);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.changeId = changeId;
+            event.documentId = documentId;
+            event.channel = channel;
+            event.fanOut = fanOut;
+            event.commit();
+        }
     }
-
-    // Getters and setters
-    public String getChangeId() { return changeId; }
-    public void setChangeId(String changeId) { this.changeId = changeId; }
-    public String getError() { return error; }
-    public void setError(String error) { this.error = error; }
-}
-
-class CursorPosition {
-    private String userId;
-    private int line;
-    private int column;
-
-    // Getters and setters
-    public String getUserId() { return userId; }
-    public void setUserId(String userId) { this.userId = userId; }
-    public int getLine() { return line; }
-    public void setLine(int line) { this.line = line; }
-    public int getColumn() { return column; }
-    public void setColumn(int column) { this.column = column; }
-}
-
-class PresenceStatus {
-    private String userId;
-    private boolean active;
-
-    // Getters and setters
-    public String getUserId() { return userId; }
-    public void setUserId(String userId) { this.userId = userId; }
-    public boolean isActive() { return active; }
-    public void setActive(boolean active) { this.active = active; }
 }
@@ -0,0 +1,15 @@
+package com.beetexting.workspace.websocket;
+
+class CursorPosition {
+    private String userId;
+    private int line;
+    private int column;
+
+    // Getters and setters
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+    public int getLine() { return line; }
+    public void setLine(int line) { this.line = line; }
+    public int getColumn() { return column; }
+    public void setColumn(int column) { this.column = column; }
+}
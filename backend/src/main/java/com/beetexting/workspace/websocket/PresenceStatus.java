@@ -0,0 +1,12 @@
+package com.beetexting.workspace.websocket;
+
+class PresenceStatus {
+    private String userId;
+    private boolean active;
+
+    // Getters and setters
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+    public boolean isActive() { return active; }
+    public void setActive(boolean active) { this.active = active; }
+}
@@ -0,0 +1,152 @@
+package com.beetexting.workspace.diff;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MyersDiffTest {
+
+    private static final long NO_TIMEOUT = Long.MAX_VALUE / 2;
+
+    @Test
+    void diff_BothEmpty_ShouldMarkNothing() {
+        MyersDiff.Result result = MyersDiff.diff(new int[0], new int[0], NO_TIMEOUT);
+
+        assertCommonSubsequence(new int[0], new int[0], result, 0);
+    }
+
+    @Test
+    void diff_FromEmpty_ShouldInsertEverything() {
+        int[] b = {1, 2, 3};
+
+        MyersDiff.Result result = MyersDiff.diff(new int[0], b, NO_TIMEOUT);
+
+        for (int j = 0; j < b.length; j++) {
+            assertTrue(result.isInserted(j));
+        }
+    }
+
+    @Test
+    void diff_ToEmpty_ShouldDeleteEverything() {
+        int[] a = {1, 2, 3};
+
+        MyersDiff.Result result = MyersDiff.diff(a, new int[0], NO_TIMEOUT);
+
+        for (int i = 0; i < a.length; i++) {
+            assertTrue(result.isDeleted(i));
+        }
+    }
+
+    @Test
+    void diff_Identical_ShouldMarkNothing() {
+        int[] a = {4, 1, 4, 2, 4};
+
+        MyersDiff.Result result = MyersDiff.diff(a, a.clone(), NO_TIMEOUT);
+
+        assertCommonSubsequence(a, a, result, a.length);
+    }
+
+    @Test
+    void diff_AppendedSuffix_ShouldOnlyInsertSuffix() {
+        int[] a = {1, 2, 3};
+        int[] b = {1, 2, 3, 4, 5};
+
+        MyersDiff.Result result = MyersDiff.diff(a, b, NO_TIMEOUT);
+
+        assertCommonSubsequence(a, b, result, 3);
+        assertFalse(result.isInserted(2));
+        assertTrue(result.isInserted(3));
+        assertTrue(result.isInserted(4));
+    }
+
+    @Test
+    void diff_RemovedPrefix_ShouldOnlyDeletePrefix() {
+        int[] a = {7, 8, 1, 2, 3};
+        int[] b = {1, 2, 3};
+
+        MyersDiff.Result result = MyersDiff.diff(a, b, NO_TIMEOUT);
+
+        assertCommonSubsequence(a, b, result, 3);
+        assertTrue(result.isDeleted(0));
+        assertTrue(result.isDeleted(1));
+        assertFalse(result.isDeleted(2));
+    }
+
+    @Test
+    void diff_RandomInputs_ShouldFindLongestCommonSubsequence() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            int[] a = randomTokens(random, random.nextInt(40), 1 + random.nextInt(6));
+            int[] b = randomTokens(random, random.nextInt(40), 1 + random.nextInt(6));
+
+            MyersDiff.Result result = MyersDiff.diff(a, b, NO_TIMEOUT);
+
+            assertCommonSubsequence(a, b, result, lcsLength(a, b));
+        }
+    }
+
+    @Test
+    void diff_PastDeadline_ShouldReplaceChangedMiddleWholesale() {
+        int[] a = {1, 2, 3, 4, 5, 6, 9};
+        int[] b = {1, 3, 2, 5, 4, 7, 9};
+
+        MyersDiff.Result result = MyersDiff.diff(a, b, 0);
+
+        // The common prefix and suffix are trimmed before any search, so they survive the fallback
+        assertFalse(result.isDeleted(0));
+        assertFalse(result.isInserted(0));
+        assertFalse(result.isDeleted(6));
+        assertFalse(result.isInserted(6));
+        for (int i = 1; i < 6; i++) {
+            assertTrue(result.isDeleted(i));
+            assertTrue(result.isInserted(i));
+        }
+    }
+
+    // Unmarked tokens must pair up in order and number exactly expectedCommon
+    private static void assertCommonSubsequence(int[] a, int[] b, MyersDiff.Result result, int expectedCommon) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (true) {
+            while (i < a.length && result.isDeleted(i)) {
+                i++;
+            }
+            while (j < b.length && result.isInserted(j)) {
+                j++;
+            }
+            if (i == a.length || j == b.length) {
+                break;
+            }
+            assertEquals(a[i], b[j], "common token at " + i + "/" + j);
+            common++;
+            i++;
+            j++;
+        }
+        assertEquals(a.length, i, "unmatched tokens left in a");
+        assertEquals(b.length, j, "unmatched tokens left in b");
+        assertEquals(expectedCommon, common);
+    }
+
+    private static int lcsLength(int[] a, int[] b) {
+        int[][] lengths = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i--) {
+            for (int j = b.length - 1; j >= 0; j--) {
+                lengths[i][j] = a[i] == b[j]
+                    ? lengths[i + 1][j + 1] + 1
+                    : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        return lengths[0][0];
+    }
+
+    private static int[] randomTokens(Random random, int length, int alphabet) {
+        int[] tokens = new int[length];
+        for (int i = 0; i < length; i++) {
+            tokens[i] = random.nextInt(alphabet);
+        }
+        return tokens;
+    }
+}
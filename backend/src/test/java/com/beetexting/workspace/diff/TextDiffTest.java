@@ -0,0 +1,238 @@
+package com.beetexting.workspace.diff;
+
+import com.beetexting.workspace.model.DiffHunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextDiffTest {
+
+    private static final long NO_TIMEOUT = Long.MAX_VALUE / 2;
+
+    @Test
+    void diff_BothEmpty_ShouldReturnNoHunks() {
+        assertTrue(TextDiff.diff("", "", 3, true, NO_TIMEOUT).isEmpty());
+    }
+
+    @Test
+    void diff_Identical_ShouldReturnNoHunks() {
+        String text = "alpha\nbeta\ngamma\n";
+
+        assertTrue(TextDiff.diff(text, text, 3, true, NO_TIMEOUT).isEmpty());
+    }
+
+    @Test
+    void diff_FromEmpty_ShouldInsertAllLines() {
+        List<DiffHunk> hunks = TextDiff.diff("", "one\ntwo\n", 3, false, NO_TIMEOUT);
+
+        assertEquals(1, hunks.size());
+        DiffHunk hunk = hunks.get(0);
+        assertEquals(1, hunk.getOldStart());
+        assertEquals(0, hunk.getOldCount());
+        assertEquals(1, hunk.getNewStart());
+        assertEquals(2, hunk.getNewCount());
+        assertEquals(List.of("one", "two"), hunk.getInserted());
+        assertTrue(hunk.getContextBefore().isEmpty());
+        assertTrue(hunk.getContextAfter().isEmpty());
+    }
+
+    @Test
+    void diff_AppendedLines_ShouldStartHunkAfterLastOldLine() {
+        List<DiffHunk> hunks = TextDiff.diff(lines(1, 6), lines(1, 8), 2, false, NO_TIMEOUT);
+
+        assertEquals(1, hunks.size());
+        DiffHunk hunk = hunks.get(0);
+        assertEquals(7, hunk.getOldStart());
+        assertEquals(0, hunk.getOldCount());
+        assertEquals(7, hunk.getNewStart());
+        assertEquals(List.of("line 5", "line 6"), hunk.getContextBefore());
+        assertEquals(List.of("line 7", "line 8"), hunk.getInserted());
+        assertTrue(hunk.getContextAfter().isEmpty());
+    }
+
+    @Test
+    void diff_RemovedPrefix_ShouldDeleteFromFirstLine() {
+        List<DiffHunk> hunks = TextDiff.diff(lines(1, 6), lines(3, 6), 3, false, NO_TIMEOUT);
+
+        assertEquals(1, hunks.size());
+        DiffHunk hunk = hunks.get(0);
+        assertEquals(1, hunk.getOldStart());
+        assertEquals(2, hunk.getOldCount());
+        assertEquals(1, hunk.getNewStart());
+        assertEquals(0, hunk.getNewCount());
+        assertTrue(hunk.getContextBefore().isEmpty());
+        assertEquals(List.of("line 3", "line 4", "line 5"), hunk.getContextAfter());
+    }
+
+    @Test
+    void diff_SeparateChanges_ShouldProduceOneHunkEach() {
+        String oldText = lines(1, 10);
+        String newText = oldText.replace("line 2\n", "line two\n").replace("line 4\n", "line four\n");
+
+        List<DiffHunk> hunks = TextDiff.diff(oldText, newText, 1, false, NO_TIMEOUT);
+
+        assertEquals(2, hunks.size());
+        assertEquals(2, hunks.get(0).getOldStart());
+        assertEquals(List.of("line 1"), hunks.get(0).getContextBefore());
+        assertEquals(List.of("line 3"), hunks.get(0).getContextAfter());
+        assertEquals(4, hunks.get(1).getOldStart());
+        assertEquals(4, hunks.get(1).getNewStart());
+        assertEquals(List.of("line four"), hunks.get(1).getInserted());
+    }
+
+    @Test
+    void diff_MissingFinalNewline_ShouldReportLastLineChanged() {
+        List<DiffHunk> hunks = TextDiff.diff("a\nb", "a\nb\n", 3, false, NO_TIMEOUT);
+
+        assertEquals(1, hunks.size());
+        assertEquals(2, hunks.get(0).getOldStart());
+        assertEquals(List.of("b"), hunks.get(0).getDeleted());
+        assertEquals(List.of("b"), hunks.get(0).getInserted());
+    }
+
+    @Test
+    void diff_RandomEdits_ShouldRebuildNewTextFromHunks() {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            List<String> oldLines = randomLines(random, random.nextInt(30));
+            List<String> newLines = new ArrayList<>(oldLines);
+            for (int edit = random.nextInt(5); edit >= 0; edit--) {
+                int at = newLines.isEmpty() ? 0 : random.nextInt(newLines.size());
+                if (random.nextBoolean() || newLines.isEmpty()) {
+                    newLines.add(at, "new " + random.nextInt(4));
+                } else {
+                    newLines.remove(at);
+                }
+            }
+
+            List<DiffHunk> hunks = TextDiff.diff(join(oldLines), join(newLines), 2, false, NO_TIMEOUT);
+
+            assertEquals(newLines, applyHunks(oldLines, hunks));
+        }
+    }
+
+    @Test
+    void diff_PastDeadline_ShouldStillRebuildNewText() {
+        List<String> oldLines = List.of("keep", "a", "b", "c", "d", "keep too");
+        List<String> newLines = List.of("keep", "b", "a", "d", "c", "keep too");
+
+        List<DiffHunk> hunks = TextDiff.diff(join(oldLines), join(newLines), 1, true, 0);
+
+        assertEquals(1, hunks.size());
+        assertEquals(List.of("a", "b", "c", "d"), hunks.get(0).getDeleted());
+        assertEquals(List.of("b", "a", "d", "c"), hunks.get(0).getInserted());
+        assertEquals(newLines, applyHunks(oldLines, hunks));
+    }
+
+    @Test
+    void diff_WordGranularity_ShouldSegmentChangedLines() {
+        List<DiffHunk> hunks = TextDiff.diff("the quick fox\nsame\n", "the slow fox\nsame\n", 3, true, NO_TIMEOUT);
+
+        assertEquals(1, hunks.size());
+        List<DiffHunk.Segment> words = hunks.get(0).getWords();
+        assertEquals("the quick fox\n", side(words, "DELETE"));
+        assertEquals("the slow fox\n", side(words, "INSERT"));
+        assertTrue(words.stream().anyMatch(s -> s.getType().equals("DELETE") && s.getText().equals("quick")));
+        assertTrue(words.stream().anyMatch(s -> s.getType().equals("INSERT") && s.getText().equals("slow")));
+    }
+
+    @Test
+    void diff_Unicode_ShouldNotSplitSurrogatePairs() {
+        String oldText = "naïve café 😀 done\n日本語のテキスト\n";
+        String newText = "naïve café 😃 done\n日本語のテキスト\n";
+
+        List<DiffHunk> hunks = TextDiff.diff(oldText, newText, 3, true, NO_TIMEOUT);
+
+        assertEquals(1, hunks.size());
+        List<DiffHunk.Segment> words = hunks.get(0).getWords();
+        assertEquals("naïve café 😀 done\n", side(words, "DELETE"));
+        assertEquals("naïve café 😃 done\n", side(words, "INSERT"));
+        for (DiffHunk.Segment segment : words) {
+            String text = segment.getText();
+            assertFalse(Character.isLowSurrogate(text.charAt(0)), "segment starts inside a surrogate pair");
+            assertFalse(Character.isHighSurrogate(text.charAt(text.length() - 1)), "segment ends inside a surrogate pair");
+        }
+        assertTrue(words.stream().anyMatch(s -> s.getType().equals("DELETE") && s.getText().equals("😀")));
+        assertTrue(words.stream().anyMatch(s -> s.getType().equals("EQUAL") && s.getText().contains("café")));
+    }
+
+    @Test
+    void diffWords_TooManyTokens_ShouldReplaceWholesale() {
+        String oldText = "a ".repeat(30_000);
+        String newText = "b ".repeat(30_000);
+
+        List<DiffHunk.Segment> segments = TextDiff.diffWords(oldText, newText, NO_TIMEOUT);
+
+        assertEquals(2, segments.size());
+        assertEquals("DELETE", segments.get(0).getType());
+        assertEquals(oldText, segments.get(0).getText());
+        assertEquals("INSERT", segments.get(1).getType());
+        assertEquals(newText, segments.get(1).getText());
+    }
+
+    @Test
+    void splitWords_ShouldKeepLettersDigitsAndWhitespaceRuns() {
+        assertEquals(List.of("abc", "  ", "123", ",", "x", "\n"), TextDiff.splitWords("abc  123,x\n"));
+        assertEquals(List.of("a", " ", "😀", "😀", " ", "𝒳yz"), TextDiff.splitWords("a 😀😀 𝒳yz"));
+    }
+
+    // Replays hunks against the old lines; context lines must match what is there
+    private static List<String> applyHunks(List<String> oldLines, List<DiffHunk> hunks) {
+        List<String> result = new ArrayList<>();
+        int next = 0;
+        for (DiffHunk hunk : hunks) {
+            int start = hunk.getOldStart() - 1;
+            assertTrue(start >= next, "hunks out of order");
+            result.addAll(oldLines.subList(next, start));
+            assertEquals(oldLines.subList(Math.max(0, start - hunk.getContextBefore().size()), start),
+                hunk.getContextBefore());
+            assertEquals(oldLines.subList(start, start + hunk.getOldCount()), hunk.getDeleted());
+            assertEquals(result.size() + 1, hunk.getNewStart());
+            result.addAll(hunk.getInserted());
+            next = start + hunk.getOldCount();
+            assertEquals(oldLines.subList(next, Math.min(oldLines.size(), next + hunk.getContextAfter().size())),
+                hunk.getContextAfter());
+        }
+        result.addAll(oldLines.subList(next, oldLines.size()));
+        return result;
+    }
+
+    // The old or new side of a word diff, from its EQUAL segments plus DELETE or INSERT ones
+    private static String side(List<DiffHunk.Segment> segments, String changeType) {
+        StringBuilder sb = new StringBuilder();
+        for (DiffHunk.Segment segment : segments) {
+            if (segment.getType().equals("EQUAL") || segment.getType().equals(changeType)) {
+                sb.append(segment.getText());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static List<String> randomLines(Random random, int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add("line " + random.nextInt(6));
+        }
+        return lines;
+    }
+
+    private static String lines(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i <= to; i++) {
+            sb.append("line ").append(i).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String join(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+}
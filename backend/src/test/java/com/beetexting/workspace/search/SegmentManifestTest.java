@@ -0,0 +1,96 @@
+package com.beetexting.workspace.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentManifestTest {
+
+    private static final int MAGIC = 0x42545347;
+    private static final int VERSION = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void write_ThenRead_ShouldRoundTrip() throws IOException {
+        SegmentManifest manifest = new SegmentManifest();
+        manifest.generation = 7;
+        manifest.checkpoint = 1_700_000_000_000L;
+        manifest.nextSegment = 12;
+        BitSet deleted = new BitSet();
+        deleted.set(3);
+        deleted.set(130);
+        manifest.segments.add(new SegmentManifest.Entry("seg_000004.idx", deleted));
+        manifest.segments.add(new SegmentManifest.Entry("seg_000011.idx", new BitSet()));
+
+        manifest.write(directory);
+        SegmentManifest read = SegmentManifest.read(directory);
+
+        assertEquals(7L, read.generation);
+        assertEquals(1_700_000_000_000L, read.checkpoint);
+        assertEquals(12, read.nextSegment);
+        assertEquals(2, read.segments.size());
+        assertEquals("seg_000004.idx", read.segments.get(0).name);
+        assertEquals(deleted, read.segments.get(0).deleted);
+        assertEquals("seg_000011.idx", read.segments.get(1).name);
+        assertTrue(read.segments.get(1).deleted.isEmpty());
+    }
+
+    @Test
+    void write_ShouldReplacePreviousCommitAndLeaveNoTempFile() throws IOException {
+        SegmentManifest first = new SegmentManifest();
+        first.generation = 1;
+        first.write(directory);
+        SegmentManifest second = new SegmentManifest();
+        second.generation = 2;
+
+        second.write(directory);
+
+        assertEquals(2L, SegmentManifest.read(directory).generation);
+        assertFalse(Files.exists(directory.resolve(SegmentManifest.FILE_NAME + ".tmp")));
+    }
+
+    @Test
+    void read_NeverCommitted_ShouldReturnNull() throws IOException {
+        assertNull(SegmentManifest.read(directory));
+    }
+
+    @Test
+    void read_OlderVersion_ShouldReturnNull() throws IOException {
+        writeHeader(MAGIC, VERSION - 1);
+
+        assertNull(SegmentManifest.read(directory));
+    }
+
+    @Test
+    void read_NewerVersion_ShouldThrow() throws IOException {
+        writeHeader(MAGIC, VERSION + 1);
+
+        assertThrows(IOException.class, () -> SegmentManifest.read(directory));
+    }
+
+    @Test
+    void read_UnrecognizedFile_ShouldThrow() throws IOException {
+        writeHeader(0x12345678, VERSION);
+
+        assertThrows(IOException.class, () -> SegmentManifest.read(directory));
+    }
+
+    private void writeHeader(int magic, int version) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(bytes)) {
+            data.writeInt(magic);
+            data.writeInt(version);
+        }
+        Files.write(directory.resolve(SegmentManifest.FILE_NAME), bytes.toByteArray());
+    }
+}
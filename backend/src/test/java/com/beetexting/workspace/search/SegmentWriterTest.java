@@ -0,0 +1,138 @@
+package com.beetexting.workspace.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void write_ThenOpen_ShouldRoundTripDocs() throws IOException {
+        WriteBuffer buffer = new WriteBuffer();
+        buffer.add(note("n1", "Alpha", "one two two", 1000L));
+        buffer.add(note("n2", "Beta", "two three", 2000L));
+
+        IndexSegment segment = writeAndOpen(List.of(buffer), List.of(new int[]{0, 1}), 2);
+
+        assertEquals(2, segment.maxDoc());
+        for (int doc = 0; doc < 2; doc++) {
+            assertEquals(buffer.noteId(doc), segment.noteId(doc));
+            assertEquals(buffer.docLength(doc), segment.docLength(doc));
+            assertEquals(buffer.updatedAt(doc), segment.updatedAt(doc));
+        }
+        assertEquals(0, segment.findDoc("n1"));
+        assertEquals(1, segment.findDoc("n2"));
+        assertEquals(-1, segment.findDoc("n3"));
+    }
+
+    @Test
+    void write_ThenOpen_ShouldRoundTripPostings() throws IOException {
+        WriteBuffer buffer = new WriteBuffer();
+        buffer.add(note("n1", "Alpha", "one two two", 1000L));
+        buffer.add(note("n2", "Beta", "two three", 2000L));
+
+        IndexSegment segment = writeAndOpen(List.of(buffer), List.of(new int[]{0, 1}), 2);
+
+        assertEquals(toList(buffer.terms()), toList(segment.terms()));
+        for (Iterator<String> terms = buffer.terms(); terms.hasNext(); ) {
+            String term = terms.next();
+            assertEquals(buffer.docFreq(term), segment.docFreq(term), term);
+            assertEquals(describe(buffer.postings(term)), describe(segment.postings(term)), term);
+        }
+        assertEquals(0, segment.docFreq("missing"));
+        assertNull(segment.postings("missing"));
+    }
+
+    @Test
+    void write_WithRemaps_ShouldDropAndRenumberDocs() throws IOException {
+        WriteBuffer first = new WriteBuffer();
+        first.add(note("n1", "", "shared gone", 1000L));
+        first.add(note("n2", "", "shared kept", 2000L));
+        WriteBuffer second = new WriteBuffer();
+        second.add(note("n3", "", "shared kept", 3000L));
+
+        IndexSegment segment = writeAndOpen(List.of(first, second),
+            List.of(new int[]{-1, 0}, new int[]{1}), 2);
+
+        assertEquals(2, segment.maxDoc());
+        assertEquals("n2", segment.noteId(0));
+        assertEquals("n3", segment.noteId(1));
+        assertEquals(3000L, segment.updatedAt(1));
+        assertEquals(-1, segment.findDoc("n1"));
+        assertEquals(0, segment.docFreq("gone"));
+        assertEquals("[0:1@1/0+6|1:1@1/0+6]", describe(segment.postings("shared")));
+    }
+
+    @Test
+    void write_ExistingFile_ShouldFailWithoutOverwriting() throws IOException {
+        Path file = Files.write(directory.resolve("seg_000000.idx"), new byte[]{1, 2, 3});
+        WriteBuffer buffer = new WriteBuffer();
+        buffer.add(note("n1", "", "text", 1000L));
+
+        assertThrows(FileAlreadyExistsException.class,
+            () -> SegmentWriter.write(file, List.of(buffer), List.of(new int[]{0}), 1));
+
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(file));
+    }
+
+    @Test
+    void open_NotASegment_ShouldThrow() throws IOException {
+        Path file = Files.write(directory.resolve("seg_000000.idx"), new byte[SegmentWriter.HEADER_SIZE]);
+
+        assertThrows(IOException.class, () -> IndexSegment.open(file));
+    }
+
+    @Test
+    void termOrder_ShouldSortByCodePoint() {
+        List<String> terms = new ArrayList<>(List.of("\uD83D\uDE00", "\uFFFD", "b", "a", "ab"));
+
+        terms.sort(SegmentWriter.TERM_ORDER);
+
+        // A supplementary character sorts after the BMP, unlike UTF-16 order
+        assertEquals(List.of("a", "ab", "b", "\uFFFD", "\uD83D\uDE00"), terms);
+    }
+
+    private IndexSegment writeAndOpen(List<WriteBuffer> sources, List<int[]> remaps, int docCount)
+            throws IOException {
+        Path file = directory.resolve("seg_000000.idx");
+        SegmentWriter.write(file, sources, remaps, docCount);
+        return IndexSegment.open(file);
+    }
+
+    private static WriteBuffer.AnalyzedNote note(String noteId, String title, String content, long updatedAt) {
+        return new WriteBuffer.AnalyzedNote(noteId, title, content, new NoteFields(List.of(), null, null, updatedAt));
+    }
+
+    // Docs with their freq and positions, as doc:freq@position/start+length
+    private static String describe(SegmentReader.PostingsCursor cursor) {
+        List<String> docs = new ArrayList<>();
+        while (cursor.next()) {
+            StringBuilder doc = new StringBuilder().append(cursor.doc()).append(':').append(cursor.freq());
+            for (int i = 0; i < cursor.positionCount(); i++) {
+                int position = cursor.nextPosition();
+                doc.append('@').append(position).append('/').append(cursor.startOffset())
+                    .append('+').append(cursor.offsetLength());
+            }
+            docs.add(doc.toString());
+        }
+        return docs.toString().replace(", ", "|");
+    }
+
+    private static List<String> toList(Iterator<String> terms) {
+        List<String> list = new ArrayList<>();
+        terms.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,212 @@
+package com.beetexting.workspace.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TenantIndexTest {
+
+    private static final int MAX_BUFFERED_DOCS = 100;
+    private static final int MERGE_FACTOR = 2;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void flush_ThenReopen_ShouldKeepDocsAndCheckpoint() throws IOException {
+        TenantIndex index = open();
+        index.upsert("n1", "Alpha", "shared words", NoteFields.NONE);
+        index.upsert("n2", "Beta", "shared text", NoteFields.NONE);
+        long before = System.currentTimeMillis();
+
+        index.flush();
+
+        TenantIndex reopened = open();
+        assertEquals(2, reopened.size());
+        assertTrue(reopened.checkpoint() >= before);
+        assertEquals(List.of("n1"), noteIds(reopened.search(new NoteQuery("alpha"), 0, 10)));
+    }
+
+    @Test
+    void reopen_AfterUncommittedFlush_ShouldDiscardSegments() throws IOException {
+        TenantIndex index = open();
+        index.upsert("n1", "Alpha", "first", NoteFields.NONE);
+        index.flush(false);
+        assertEquals(1, segmentFiles().size());
+
+        TenantIndex reopened = open();
+
+        assertEquals(-1, reopened.checkpoint());
+        assertEquals(0, reopened.size());
+        assertTrue(segmentFiles().isEmpty());
+    }
+
+    @Test
+    void reopen_WithStraySegmentFile_ShouldDeleteItAndKeepCommittedOnes() throws IOException {
+        TenantIndex index = open();
+        index.upsert("n1", "Alpha", "first", NoteFields.NONE);
+        index.flush();
+        Path stray = Files.createFile(directory.resolve("seg_000099.idx"));
+
+        TenantIndex reopened = open();
+
+        assertFalse(Files.exists(stray));
+        assertEquals(1, reopened.size());
+        assertEquals(1, segmentFiles().size());
+    }
+
+    @Test
+    void flush_AfterFailedWrite_ShouldRetryFrozenBuffer() throws IOException {
+        TenantIndex index = open();
+        index.upsert("n1", "Alpha", "first", NoteFields.NONE);
+        index.upsert("n2", "Beta", "second", NoteFields.NONE);
+        // The writer refuses to overwrite, so the first segment name fails
+        Files.createFile(directory.resolve("seg_000000.idx"));
+
+        assertThrows(IOException.class, index::flush);
+
+        // The frozen buffer stays searchable and still takes deletes
+        assertEquals(List.of("n1"), noteIds(index.search(new NoteQuery("alpha"), 0, 10)));
+        assertTrue(index.needsFlush(System.currentTimeMillis(), Long.MAX_VALUE));
+        assertTrue(index.remove("n2"));
+        index.upsert("n3", "Gamma", "third", NoteFields.NONE);
+
+        index.flush();
+
+        assertFalse(index.needsFlush(System.currentTimeMillis(), Long.MAX_VALUE));
+        TenantIndex reopened = open();
+        assertEquals(2, reopened.size());
+        assertTrue(reopened.search(new NoteQuery("beta"), 0, 10).getHits().isEmpty());
+        assertEquals(List.of("n3"), noteIds(reopened.search(new NoteQuery("gamma"), 0, 10)));
+    }
+
+    @Test
+    void upsert_ExistingNote_ShouldReplaceItsFlushedDoc() throws IOException {
+        TenantIndex index = open();
+        index.upsert("n1", "Alpha", "old body", NoteFields.NONE);
+        index.flush();
+
+        index.upsert("n1", "Alpha", "new body", NoteFields.NONE);
+
+        assertEquals(1, index.size());
+        assertTrue(index.search(new NoteQuery("old"), 0, 10).getHits().isEmpty());
+        assertEquals(List.of("n1"), noteIds(index.search(new NoteQuery("new"), 0, 10)));
+    }
+
+    @Test
+    void claimMerge_AtMergeFactor_ShouldReturnNull() throws IOException {
+        TenantIndex index = open();
+        flushSegment(index, "n1", "n2");
+        flushSegment(index, "n3", "n4");
+
+        assertNull(index.claimMerge());
+    }
+
+    @Test
+    void claimMerge_WhileMerging_ShouldReturnNull() throws IOException {
+        TenantIndex index = open();
+        flushSegment(index, "n1");
+        flushSegment(index, "n2");
+        flushSegment(index, "n3");
+
+        assertNotNull(index.claimMerge());
+        assertNull(index.claimMerge());
+    }
+
+    @Test
+    void merge_ShouldDropDocsDeletedBeforeClaim() throws IOException {
+        TenantIndex index = open();
+        flushSegment(index, "n1", "n2");
+        flushSegment(index, "n3", "n4");
+        flushSegment(index, "n5", "n6", "n7");
+        index.remove("n1");
+
+        index.merge(index.claimMerge());
+
+        SegmentManifest manifest = SegmentManifest.read(directory);
+        assertEquals(2, manifest.segments.size());
+        IndexSegment merged = IndexSegment.open(directory.resolve(manifest.segments.get(0).name));
+        assertEquals(3, merged.maxDoc());
+        assertEquals(-1, merged.findDoc("n1"));
+        assertEquals(2, segmentFiles().size());
+        assertEquals(6, index.size());
+    }
+
+    @Test
+    void merge_WithDeletesDuringMerge_ShouldCarryThemOver() throws IOException {
+        TenantIndex index = open();
+        flushSegment(index, "n1", "n2");
+        flushSegment(index, "n3", "n4");
+        flushSegment(index, "n5", "n6", "n7");
+        List<TenantIndex.SegmentState> claimed = index.claimMerge();
+
+        // Both land after the claim, so the merged segment still holds their docs
+        index.remove("n2");
+        index.upsert("n3", "Note n3", "rewritten", NoteFields.NONE);
+        index.merge(claimed);
+
+        assertEquals(6, index.size());
+        assertTrue(index.search(new NoteQuery("n2"), 0, 10).getHits().isEmpty());
+        assertEquals(List.of("n3"), noteIds(index.search(new NoteQuery("n3"), 0, 10)));
+        assertTrue(index.search(new NoteQuery("body"), 0, 10).getHits().stream()
+            .noneMatch(hit -> hit.getNoteId().equals("n3")));
+
+        index.flush();
+        TenantIndex reopened = open();
+        assertEquals(6, reopened.size());
+        assertTrue(reopened.search(new NoteQuery("n2"), 0, 10).getHits().isEmpty());
+        assertEquals(List.of("n3"), noteIds(reopened.search(new NoteQuery("rewritten"), 0, 10)));
+    }
+
+    @Test
+    void searchAfter_AcrossPages_ShouldNeitherSkipNorRepeat() throws IOException {
+        TenantIndex index = open();
+        for (int i = 0; i < 7; i++) {
+            index.upsert("n" + i, "", "common", NoteFields.NONE);
+            if (i % 3 == 2) {
+                index.flush();
+            }
+        }
+        NoteQuery query = new NoteQuery("common");
+
+        List<String> seen = new ArrayList<>();
+        List<SearchHit> page = index.search(query, 0, 3).getHits();
+        while (!page.isEmpty()) {
+            page.forEach(hit -> seen.add(hit.getNoteId()));
+            page = index.searchAfter(query, page.get(page.size() - 1), 3).getHits();
+        }
+
+        assertEquals(List.of("n0", "n1", "n2", "n3", "n4", "n5", "n6"), seen);
+    }
+
+    private TenantIndex open() throws IOException {
+        return TenantIndex.open(directory, MAX_BUFFERED_DOCS, MERGE_FACTOR);
+    }
+
+    private static void flushSegment(TenantIndex index, String... noteIds) throws IOException {
+        for (String noteId : noteIds) {
+            index.upsert(noteId, "Note " + noteId, "body", NoteFields.NONE);
+        }
+        index.flush();
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "seg_*")) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    private static List<String> noteIds(SearchResult result) {
+        return result.getHits().stream().map(SearchHit::getNoteId).toList();
+    }
+}
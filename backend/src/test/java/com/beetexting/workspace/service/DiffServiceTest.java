@@ -0,0 +1,132 @@
+package com.beetexting.workspace.service;
+
+import com.beetexting.workspace.model.DiffHunk;
+import com.beetexting.workspace.model.Note;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DiffServiceTest {
+
+    private static final String DOCUMENT_ID = "test-document-id";
+
+    @Mock
+    private DocumentService documentService;
+
+    private DiffService diffService;
+
+    @BeforeEach
+    void setUp() {
+        diffService = new DiffService(documentService);
+    }
+
+    @Test
+    void diffRevisions_WithoutTarget_ShouldDiffAgainstHead() {
+        Note head = new Note();
+        head.setRevision(3);
+        when(documentService.getDocument(DOCUMENT_ID)).thenReturn(head);
+        when(documentService.getRevisionContent(DOCUMENT_ID, 1L)).thenReturn("a\nb\n");
+        when(documentService.getRevisionContent(DOCUMENT_ID, 3L)).thenReturn("a\nc\n");
+
+        List<DiffHunk> hunks = diffService.diffRevisions(DOCUMENT_ID, 1, null, "line", 3);
+
+        assertEquals(1, hunks.size());
+        assertEquals(List.of("b"), hunks.get(0).getDeleted());
+        assertEquals(List.of("c"), hunks.get(0).getInserted());
+        assertNull(hunks.get(0).getWords());
+    }
+
+    @Test
+    void prepareDiff_UnknownGranularity_ShouldThrowBeforeLoadingRevisions() {
+        assertThrows(IllegalArgumentException.class,
+            () -> diffService.prepareDiff(DOCUMENT_ID, 1, 2L, "char", 3));
+
+        verify(documentService, never()).getRevisionContent(anyString(), anyLong());
+    }
+
+    @Test
+    void prepareDiff_MissingRevision_ShouldThrowBeforeAnyHunk() {
+        when(documentService.getRevisionContent(DOCUMENT_ID, 1L)).thenReturn("a\n");
+        when(documentService.getRevisionContent(DOCUMENT_ID, 9L))
+            .thenThrow(new IllegalArgumentException("Revision 9 not found for document " + DOCUMENT_ID));
+
+        assertThrows(IllegalArgumentException.class, () -> diffService.prepareDiff(DOCUMENT_ID, 1, 9L, "line", 3));
+    }
+
+    @Test
+    void prepareDiff_ShouldHandOverHunksInDocumentOrder() {
+        String oldText = numberedLines(100, -1);
+        String newText = oldText.replace("line 10\n", "ten\n").replace("line 90\n", "ninety\n");
+        when(documentService.getRevisionContent(DOCUMENT_ID, 1L)).thenReturn(oldText);
+        when(documentService.getRevisionContent(DOCUMENT_ID, 2L)).thenReturn(newText);
+
+        List<Integer> starts = new ArrayList<>();
+        diffService.prepareDiff(DOCUMENT_ID, 1, 2L, "word", 3).forEachHunk(hunk -> starts.add(hunk.getOldStart()));
+
+        assertEquals(List.of(10, 90), starts);
+    }
+
+    @Test
+    void diffRevisions_Repeated_ShouldServeCachedHunks() {
+        when(documentService.getRevisionContent(DOCUMENT_ID, 1L)).thenReturn("a\nb\n");
+        when(documentService.getRevisionContent(DOCUMENT_ID, 2L)).thenReturn("a\nc\n");
+
+        List<DiffHunk> first = diffService.diffRevisions(DOCUMENT_ID, 1, 2L, "line", 3);
+        List<DiffHunk> second = diffService.diffRevisions(DOCUMENT_ID, 1, 2L, "LINE", 3);
+
+        assertEquals(first.size(), second.size());
+        assertSame(first.get(0), second.get(0));
+        verify(documentService, times(1)).getRevisionContent(DOCUMENT_ID, 1L);
+        verify(documentService, times(1)).getRevisionContent(DOCUMENT_ID, 2L);
+    }
+
+    @Test
+    void diffRevisions_LargeResult_ShouldNotBeCached() {
+        String oldText = numberedLines(20_000, 0);
+        String newText = numberedLines(20_000, 1);
+        when(documentService.getRevisionContent(DOCUMENT_ID, 1L)).thenReturn(oldText);
+        when(documentService.getRevisionContent(DOCUMENT_ID, 2L)).thenReturn(newText);
+
+        diffService.diffRevisions(DOCUMENT_ID, 1, 2L, "line", 3);
+        diffService.diffRevisions(DOCUMENT_ID, 1, 2L, "line", 3);
+
+        verify(documentService, times(2)).getRevisionContent(DOCUMENT_ID, 1L);
+    }
+
+    @Test
+    void diffRevisions_ContextAboveLimit_ShouldBeClamped() {
+        when(documentService.getRevisionContent(DOCUMENT_ID, 1L)).thenReturn(numberedLines(100, -1));
+        when(documentService.getRevisionContent(DOCUMENT_ID, 2L))
+            .thenReturn(numberedLines(100, -1).replace("line 50\n", "fifty\n"));
+
+        List<DiffHunk> hunks = diffService.diffRevisions(DOCUMENT_ID, 1, 2L, "line", 1000);
+
+        assertEquals(1, hunks.size());
+        assertEquals(20, hunks.get(0).getContextBefore().size());
+        assertEquals(20, hunks.get(0).getContextAfter().size());
+    }
+
+    // "line 1" .. "line count", with every line suffixed by variant unless it is negative
+    private static String numberedLines(int count, int variant) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            sb.append("line ").append(i);
+            if (variant >= 0) {
+                sb.append(" v").append(variant);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
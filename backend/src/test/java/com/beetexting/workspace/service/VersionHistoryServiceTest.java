@@ -0,0 +1,252 @@
+package com.beetexting.workspace.service;
+
+import com.beetexting.workspace.config.AppProperties;
+import com.beetexting.workspace.model.DocumentChange;
+import com.beetexting.workspace.model.Note;
+import com.beetexting.workspace.model.NoteRevision;
+import com.beetexting.workspace.repository.NoteRevisionRepository;
+import com.beetexting.workspace.storage.NoteContentStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class VersionHistoryServiceTest {
+
+    private static final String NOTE_ID = "test-note-id";
+    private static final String USER_ID = "test-user";
+    private static final int KEYFRAME_INTERVAL = 64;
+
+    @Mock
+    private NoteRevisionRepository revisionRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private NoteContentStore noteContentStore;
+
+    private VersionHistoryService versionHistoryService;
+
+    // Stands in for note_revisions, keyed on revision number like its unique index
+    private final TreeMap<Long, NoteRevision> revisions = new TreeMap<>();
+
+    // Body after each revision; index 0 is the empty note
+    private final List<String> expected = new ArrayList<>();
+
+    private Note note;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getHistory().setKeyframeInterval(KEYFRAME_INTERVAL);
+        versionHistoryService = new VersionHistoryService(revisionRepository, mongoTemplate, noteContentStore, appProperties);
+
+        when(mongoTemplate.findAndReplace(any(Query.class), any(NoteRevision.class), any(FindAndReplaceOptions.class)))
+            .thenAnswer(invocation -> {
+                NoteRevision revision = invocation.getArgument(1);
+                revisions.put(revision.getRevision(), revision);
+                return revision;
+            });
+        when(revisionRepository.findFirstByNoteIdAndKeyframeTrueAndRevisionLessThanEqualOrderByRevisionDesc(
+                eq(NOTE_ID), anyLong()))
+            .thenAnswer(invocation -> {
+                long target = invocation.getArgument(1);
+                return revisions.headMap(target, true).descendingMap().values().stream()
+                    .filter(NoteRevision::isKeyframe)
+                    .findFirst();
+            });
+        when(revisionRepository.findRevisionRange(eq(NOTE_ID), anyLong(), anyLong()))
+            .thenAnswer(invocation -> {
+                long after = invocation.getArgument(1);
+                long to = invocation.getArgument(2);
+                return new ArrayList<>(revisions.subMap(after, false, to, true).values());
+            });
+
+        note = new Note();
+        note.setId(NOTE_ID);
+        note.setTenantId("test-tenant");
+        note.setContent("");
+        expected.add("");
+    }
+
+    @Test
+    void record_ShouldStoreBodyOnlyOnKeyframes() {
+        applyEdits(KEYFRAME_INTERVAL * 2 + 1);
+
+        for (long revision = 1; revision <= note.getRevision(); revision++) {
+            NoteRevision stored = revisions.get(revision);
+            boolean keyframe = revision % KEYFRAME_INTERVAL == 1;
+            assertEquals(keyframe, stored.isKeyframe(), "keyframe flag of revision " + revision);
+            if (keyframe) {
+                assertEquals(expected.get((int) revision), stored.getContent());
+                assertNull(stored.getOperations());
+            } else {
+                assertNull(stored.getContent());
+                assertEquals(1, stored.getOperations().size());
+            }
+        }
+    }
+
+    @Test
+    void reconstruct_OnKeyframe_ShouldNotReplayDeltas() {
+        applyEdits(KEYFRAME_INTERVAL * 2 + 1);
+
+        assertEquals(expected.get(1), versionHistoryService.reconstruct(NOTE_ID, 1));
+        assertEquals(expected.get(KEYFRAME_INTERVAL + 1), versionHistoryService.reconstruct(NOTE_ID, KEYFRAME_INTERVAL + 1));
+        assertEquals(expected.get(2 * KEYFRAME_INTERVAL + 1),
+            versionHistoryService.reconstruct(NOTE_ID, 2 * KEYFRAME_INTERVAL + 1));
+        verify(revisionRepository, never()).findRevisionRange(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    void reconstruct_BetweenKeyframes_ShouldReplayDeltasFromNearestKeyframe() {
+        applyEdits(KEYFRAME_INTERVAL * 2 + 10);
+
+        for (int revision = 1; revision <= note.getRevision(); revision++) {
+            assertEquals(expected.get(revision), versionHistoryService.reconstruct(NOTE_ID, revision),
+                "content of revision " + revision);
+        }
+    }
+
+    @Test
+    void reconstruct_LastRevisionBeforeKeyframe_ShouldReplayFullChain() {
+        applyEdits(KEYFRAME_INTERVAL * 2);
+
+        assertEquals(expected.get(KEYFRAME_INTERVAL), versionHistoryService.reconstruct(NOTE_ID, KEYFRAME_INTERVAL));
+        assertEquals(expected.get(2 * KEYFRAME_INTERVAL),
+            versionHistoryService.reconstruct(NOTE_ID, 2 * KEYFRAME_INTERVAL));
+    }
+
+    @Test
+    void reconstruct_AfterDuplicateRecord_ShouldUseReplacingRevision() {
+        applyEdits(10);
+
+        // Revision 11 is recorded, then the note save fails and the note reloads at revision 10
+        recordWithoutSave(insert(0, "lost "));
+        applyEdit(insert(expected.get(10).length(), " kept"));
+        applyEdits(5);
+
+        assertEquals(16, revisions.size());
+        for (int revision = 1; revision <= note.getRevision(); revision++) {
+            assertEquals(expected.get(revision), versionHistoryService.reconstruct(NOTE_ID, revision),
+                "content of revision " + revision);
+        }
+        assertFalse(versionHistoryService.reconstruct(NOTE_ID, 11).startsWith("lost "));
+    }
+
+    @Test
+    void reconstruct_AfterDuplicateKeyframe_ShouldUseReplacingBody() {
+        applyEdits(KEYFRAME_INTERVAL);
+
+        recordWithoutSave(insert(0, "lost "));
+        applyEdit(insert(0, "kept "));
+        applyEdits(3);
+
+        NoteRevision keyframe = revisions.get((long) KEYFRAME_INTERVAL + 1);
+        assertTrue(keyframe.isKeyframe());
+        assertEquals(expected.get(KEYFRAME_INTERVAL + 1), keyframe.getContent());
+        assertEquals(expected.get(KEYFRAME_INTERVAL + 4), versionHistoryService.reconstruct(NOTE_ID, KEYFRAME_INTERVAL + 4));
+    }
+
+    @Test
+    void reconstruct_PastHead_ShouldThrow() {
+        applyEdits(5);
+
+        assertThrows(IllegalArgumentException.class, () -> versionHistoryService.reconstruct(NOTE_ID, 6));
+    }
+
+    @Test
+    void reconstruct_WithMissingDelta_ShouldThrow() {
+        applyEdits(20);
+        revisions.remove(8L);
+
+        assertThrows(IllegalStateException.class, () -> versionHistoryService.reconstruct(NOTE_ID, 12));
+        assertEquals(expected.get(7), versionHistoryService.reconstruct(NOTE_ID, 7));
+    }
+
+    @Test
+    void reconstruct_WithoutKeyframe_ShouldThrow() {
+        when(revisionRepository.findFirstByNoteIdAndKeyframeTrueAndRevisionLessThanEqualOrderByRevisionDesc(
+                eq(NOTE_ID), anyLong()))
+            .thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> versionHistoryService.reconstruct(NOTE_ID, 1));
+    }
+
+    // Mirrors DocumentService: apply, take the next revision number, then record
+    private void applyEdit(DocumentChange change) {
+        StringBuilder content = new StringBuilder(note.getContent());
+        if (change.getOperation().equals("INSERT")) {
+            content.insert(change.getStartPosition(), change.getText());
+        } else if (change.getOperation().equals("DELETE")) {
+            content.delete(change.getStartPosition(), change.getEndPosition());
+        } else {
+            content.replace(change.getStartPosition(), change.getEndPosition(), change.getText());
+        }
+        note.setContent(content.toString());
+        note.recordEdit(USER_ID);
+        versionHistoryService.record(note, change, note.getContent(), null, note.getContent().length());
+        expected.add(note.getContent());
+    }
+
+    private void recordWithoutSave(DocumentChange change) {
+        String content = note.getContent();
+        long revision = note.getRevision();
+        applyEdit(change);
+        note.setContent(content);
+        note.setRevision(revision);
+        expected.remove(expected.size() - 1);
+    }
+
+    private void applyEdits(int count) {
+        Random random = new Random(note.getRevision() + 42);
+        for (int i = 0; i < count; i++) {
+            int length = note.getContent().length();
+            int start = random.nextInt(length + 1);
+            int end = start + random.nextInt(Math.min(length - start, 8) + 1);
+            switch (length < 20 ? 0 : random.nextInt(3)) {
+                case 0:
+                    applyEdit(insert(start, "edit " + i + " "));
+                    break;
+                case 1:
+                    applyEdit(change("DELETE", start, end, null));
+                    break;
+                default:
+                    applyEdit(change("REPLACE", start, end, "é😀" + i));
+                    break;
+            }
+        }
+    }
+
+    private static DocumentChange insert(int position, String text) {
+        return change("INSERT", position, position, text);
+    }
+
+    private static DocumentChange change(String operation, int start, int end, String text) {
+        DocumentChange change = new DocumentChange();
+        change.setUserId(USER_ID);
+        change.setOperation(operation);
+        change.setStartPosition(start);
+        change.setEndPosition(end);
+        change.setText(text);
+        return change;
+    }
+}